@@ -0,0 +1,162 @@
+package ch.epfl.rigel.bench;
+
+import ch.epfl.rigel.astronomy.AsterismLoader;
+import ch.epfl.rigel.astronomy.HygDatabaseLoader;
+import ch.epfl.rigel.astronomy.OffHeapStarColumns;
+import ch.epfl.rigel.astronomy.StarCatalogue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Non instantiable class, builds the inputs shared by the benchmarks.
+ * The catalogues are derived from the bundled HYG database, truncated or replicated to reach the requested size.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class BenchmarkCatalogues {
+
+    // Resources names, identical to the ones used by the application.
+    private final static String HYG_CATALOGUE_NAME = "/hygdata_v3.csv", AST_CATALOGUE_NAME = "/asterisms.txt";
+
+    // Index of the hipparcos column in the HYG database.
+    private final static int HIP_COLUMN = 1;
+
+
+    /**
+     * Private constructor, avoids instantiation.
+     */
+    private BenchmarkCatalogues() {
+    }
+
+
+    /**
+     * Builds the content of a HYG database containing exactly the given number of stars.
+     * The bundled rows are used in order and replicated if needed. The replicated rows have no hipparcos ID,
+     * so that the asterisms are always resolved to the original stars.
+     *
+     * @param size the number of stars.
+     * @return the bytes of the database, header included.
+     */
+    public static byte[] hygDatabase(int size) {
+        String[] lines = new String(resource(HYG_CATALOGUE_NAME), StandardCharsets.US_ASCII).split("\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, lines[0]);
+
+        int rowCount = lines.length - 1;
+        for (int i = 0; i < size; ++i) {
+            String row = lines[1 + i % rowCount];
+            if (i >= rowCount) {
+                String[] columns = row.split(",", -1);
+                columns[HIP_COLUMN] = "";
+                row = String.join(",", columns);
+            }
+            write(out, row);
+        }
+        return out.toByteArray();
+    }
+
+
+    /**
+     * Getter for the content of the bundled asterisms file.
+     *
+     * @return the bytes of the asterisms file.
+     */
+    public static byte[] asterisms() {
+        return resource(AST_CATALOGUE_NAME);
+    }
+
+
+    /**
+     * Builds a star catalogue containing the given number of stars and all the bundled asterisms.
+     *
+     * @param size the number of stars.
+     * @return the star catalogue.
+     */
+    public static StarCatalogue catalogue(int size) {
+        try {
+            return new StarCatalogue.Builder()
+                    .loadFrom(new ByteArrayInputStream(hygDatabase(size)), HygDatabaseLoader.INSTANCE)
+                    .loadFrom(new ByteArrayInputStream(asterisms()), AsterismLoader.INSTANCE)
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Builds a star catalogue stored by columns outside of the heap, containing the given number of stars
+     * and all the bundled asterisms.
+     *
+     * @param size the number of stars.
+     * @return the star catalogue, sorted by magnitude.
+     */
+    public static StarCatalogue columnarCatalogue(int size) {
+        try {
+            OffHeapStarColumns columns = HygDatabaseLoader.INSTANCE.loadColumns(
+                    Channels.newChannel(new ByteArrayInputStream(hygDatabase(size))));
+            return new StarCatalogue(columns,
+                    AsterismLoader.INSTANCE.loadIndices(new ByteArrayInputStream(asterisms()), columns));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Reads a whole resource of the application.
+     *
+     * @param name the resource name.
+     * @return the bytes of the resource.
+     * @throws UncheckedIOException if there is an input error.
+     */
+    private static byte[] resource(String name) {
+        try (InputStream stream = BenchmarkCatalogues.class.getResourceAsStream(name)) {
+            if (stream == null) throw new IOException("Missing resource " + name + ", is the resources folder on the class path?");
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+
+    /**
+     * Writes a line, terminated by a line feed, in the given stream.
+     *
+     * @param out  the output stream.
+     * @param line the line, possibly ending with a carriage return.
+     */
+    private static void write(ByteArrayOutputStream out, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        int length = (bytes.length > 0 && bytes[bytes.length - 1] == '\r') ? bytes.length - 1 : bytes.length;
+        out.write(bytes, 0, length);
+        out.write('\n');
+    }
+
+
+    /**
+     * Builds pseudo-random query points, used by the benchmarks performing lookups.
+     *
+     * @param count the number of points.
+     * @param low   the lower bound of both coordinates.
+     * @param high  the upper bound of both coordinates.
+     * @return an array containing first the x coordinate and then the y coordinate of each point.
+     */
+    public static double[] queryPoints(int count, double low, double high) {
+        double[] points = new double[2 * count];
+        // Fixed seed, the benchmarks must always query the same points.
+        Random random = new Random(2020);
+        Arrays.setAll(points, i -> low + random.nextDouble() * (high - low));
+        return points;
+    }
+
+}
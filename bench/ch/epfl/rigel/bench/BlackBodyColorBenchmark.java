@@ -0,0 +1,50 @@
+package ch.epfl.rigel.bench;
+
+import ch.epfl.rigel.astronomy.StarCatalogue;
+import ch.epfl.rigel.gui.BlackBodyColor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the star colors computation, applied to all the stars of a catalogue.
+ * Only the JavaFX color class is used, hence no display is needed.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BlackBodyColorBenchmark {
+
+    @Param({"1000", "5067", "100000"})
+    public int catalogueSize;
+
+    private int[] temperatures;
+
+
+    /**
+     * Collects the color temperatures of the stars once per trial.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        StarCatalogue catalogue = BenchmarkCatalogues.catalogue(catalogueSize);
+        temperatures = catalogue.stars().stream().mapToInt(s -> s.colorTemperature()).toArray();
+    }
+
+
+    /**
+     * Computes the color of all the stars.
+     *
+     * @param blackhole consumes the colors.
+     */
+    @Benchmark
+    public void colorForTemperature(Blackhole blackhole) {
+        for (int temperature : temperatures) {
+            blackhole.consume(BlackBodyColor.colorForTemperature(temperature));
+        }
+    }
+
+}
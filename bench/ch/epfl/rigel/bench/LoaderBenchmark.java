@@ -0,0 +1,101 @@
+package ch.epfl.rigel.bench;
+
+import ch.epfl.rigel.astronomy.AsterismLoader;
+import ch.epfl.rigel.astronomy.HygDatabaseLoader;
+import ch.epfl.rigel.astronomy.OffHeapStarColumns;
+import ch.epfl.rigel.astronomy.Star;
+import ch.epfl.rigel.astronomy.StarCatalogue;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the catalogue loaders.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LoaderBenchmark {
+
+    // Number of stars of the catalogue, 5067 being the size of the bundled HYG database.
+    @Param({"1000", "5067", "100000"})
+    public int catalogueSize;
+
+    private byte[] hygDatabase;
+    private byte[] asterisms;
+    private List<Star> stars;
+
+    // Builder only containing the stars, a new one is needed for each asterisms loading.
+    private StarCatalogue.Builder starsBuilder;
+
+
+    /**
+     * Builds the content of the files once per trial.
+     */
+    @Setup(Level.Trial)
+    public void setupFiles() throws IOException {
+        hygDatabase = BenchmarkCatalogues.hygDatabase(catalogueSize);
+        asterisms = BenchmarkCatalogues.asterisms();
+        stars = new StarCatalogue.Builder()
+                .loadFrom(new ByteArrayInputStream(hygDatabase), HygDatabaseLoader.INSTANCE)
+                .stars();
+    }
+
+
+    /**
+     * Builds a builder only containing the stars before each asterisms loading,
+     * as loading asterisms adds them to the builder.
+     */
+    @Setup(Level.Invocation)
+    public void setupBuilder() {
+        starsBuilder = new StarCatalogue.Builder();
+        for (Star star : stars) {
+            starsBuilder.addStar(star);
+        }
+    }
+
+
+    /**
+     * Loads the HYG database in a new builder.
+     *
+     * @return the builder, consumed by JMH.
+     * @throws IOException if there is an input error.
+     */
+    @Benchmark
+    public StarCatalogue.Builder loadHygDatabase() throws IOException {
+        return new StarCatalogue.Builder()
+                .loadFrom(new ByteArrayInputStream(hygDatabase), HygDatabaseLoader.INSTANCE);
+    }
+
+
+    /**
+     * Loads the HYG database into columns stored outside of the heap.
+     *
+     * @return the columns, consumed by JMH.
+     * @throws IOException if there is an input error.
+     */
+    @Benchmark
+    public OffHeapStarColumns loadHygColumns() throws IOException {
+        return HygDatabaseLoader.INSTANCE.loadColumns(Channels.newChannel(new ByteArrayInputStream(hygDatabase)));
+    }
+
+
+    /**
+     * Loads the asterisms in a builder already containing the stars.
+     *
+     * @return the builder, consumed by JMH.
+     * @throws IOException if there is an input error.
+     */
+    @Benchmark
+    public StarCatalogue.Builder loadAsterisms() throws IOException {
+        return starsBuilder.loadFrom(new ByteArrayInputStream(asterisms), AsterismLoader.INSTANCE);
+    }
+
+}
@@ -0,0 +1,68 @@
+package ch.epfl.rigel.bench;
+
+import ch.epfl.rigel.astronomy.Epoch;
+import ch.epfl.rigel.astronomy.Moon;
+import ch.epfl.rigel.astronomy.MoonModel;
+import ch.epfl.rigel.astronomy.PlanetModel;
+import ch.epfl.rigel.coordinates.EclipticToEquatorialConversion;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the planets and Moon models.
+ * The models do not depend on the catalogue, hence these benchmarks are not parameterised by its size.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelBenchmark {
+
+    private final static ZonedDateTime WHEN = ZonedDateTime.of(2020, 4, 17, 21, 0, 0, 0, ZoneOffset.UTC);
+
+    private double daysSinceJ2010;
+    private EclipticToEquatorialConversion eclConversion;
+
+
+    /**
+     * Builds the conversion once per trial.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        daysSinceJ2010 = Epoch.J2010.daysUntil(WHEN);
+        eclConversion = new EclipticToEquatorialConversion(WHEN);
+    }
+
+
+    /**
+     * Computes the model of all the planets, in the same way as the observed sky does.
+     *
+     * @param blackhole consumes the planets.
+     */
+    @Benchmark
+    public void planetModels(Blackhole blackhole) {
+        for (PlanetModel planetModel : PlanetModel.ALL) {
+            if (planetModel != PlanetModel.EARTH) {
+                blackhole.consume(planetModel.at(daysSinceJ2010, eclConversion));
+            }
+        }
+    }
+
+
+    /**
+     * Computes the Moon model.
+     *
+     * @return the Moon, consumed by JMH.
+     */
+    @Benchmark
+    public Moon moonModel() {
+        return MoonModel.MOON.at(daysSinceJ2010, eclConversion);
+    }
+
+}
@@ -0,0 +1,192 @@
+package ch.epfl.rigel.bench;
+
+import ch.epfl.rigel.astronomy.CelestialObject;
+import ch.epfl.rigel.astronomy.MultiSiteSky;
+import ch.epfl.rigel.astronomy.ObservedSky;
+import ch.epfl.rigel.astronomy.SkyInterpolator;
+import ch.epfl.rigel.astronomy.StarCatalogue;
+import ch.epfl.rigel.coordinates.CartesianCoordinates;
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.coordinates.HorizontalCoordinates;
+import ch.epfl.rigel.coordinates.StereographicProjection;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the observed sky construction and of the closest object lookup.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ObservedSkyBenchmark {
+
+    // Observation parameters, identical to the initial ones of the application.
+    private final static ZonedDateTime WHEN = ZonedDateTime.of(2020, 4, 17, 21, 0, 0, 0, ZoneOffset.UTC);
+    private final static GeographicCoordinates WHERE = GeographicCoordinates.ofDeg(6.57, 46.52);
+    private final static HorizontalCoordinates CENTER = HorizontalCoordinates.ofDeg(180.000000000001, 15);
+
+    // Number of distinct query points, and maximum distance of the lookups, in the stereographic plane.
+    private final static int QUERY_COUNT = 1024;
+    private final static double MAX_DISTANCE = 0.01;
+
+    @Param({"1000", "5067", "100000"})
+    public int catalogueSize;
+
+    // Magnitude of the faintest stars visible to the naked eye, used with the catalogue stored by columns.
+    private final static double LIMITING_MAGNITUDE = 6;
+
+    // Angular radius of the view of the 1100x600 canvas of the application, at its narrowest field of view of 30 degrees.
+    private final static double VIEW_RADIUS = Math.toRadians(18);
+
+    // Angular radius of the cone searches, about the field of view of binoculars.
+    private final static double CONE_RADIUS = Math.toRadians(5);
+
+    // Simulated time between two frames at the 3000x acceleration and 60 frames per second, in nanoseconds, and
+    // number of pixels per unit of the stereographic plane of the canvas at its narrowest field of view.
+    private final static long FRAME_STEP = 50_000_000_000L;
+    private final static double DILATATION_FACTOR = 1100 / (2 * Math.tan(Math.toRadians(30) / 4));
+
+    // Number of observation sites of the multi-site benchmarks.
+    private final static int SITE_COUNT = 32;
+
+    private StarCatalogue catalogue, columnarCatalogue;
+    private StereographicProjection projection;
+    private ObservedSky sky;
+    private double[] queryPoints;
+    private int nextQuery;
+    private SkyInterpolator interpolator;
+    private long frame;
+    private List<GeographicCoordinates> sites;
+
+
+    /**
+     * Builds the catalogue and the observed sky once per trial.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        catalogue = BenchmarkCatalogues.catalogue(catalogueSize);
+        columnarCatalogue = BenchmarkCatalogues.columnarCatalogue(catalogueSize);
+        projection = new StereographicProjection(CENTER);
+        sky = new ObservedSky(WHEN, WHERE, projection, catalogue);
+        queryPoints = BenchmarkCatalogues.queryPoints(QUERY_COUNT, -1, 1);
+        catalogue.partition();
+        interpolator = new SkyInterpolator(0.5);
+
+        double[] sitePoints = BenchmarkCatalogues.queryPoints(SITE_COUNT, -1, 1);
+        sites = new ArrayList<>(SITE_COUNT);
+        for (int i = 0; i < SITE_COUNT; ++i) {
+            sites.add(GeographicCoordinates.ofDeg(179 * sitePoints[2 * i], 89 * sitePoints[2 * i + 1]));
+        }
+    }
+
+
+    /**
+     * Builds the observed sky.
+     *
+     * @return the observed sky, consumed by JMH.
+     */
+    @Benchmark
+    public ObservedSky construct() {
+        return new ObservedSky(WHEN, WHERE, projection, catalogue);
+    }
+
+
+    /**
+     * Builds the observed sky, only projecting the stars in the view.
+     *
+     * @return the observed sky, consumed by JMH.
+     */
+    @Benchmark
+    public ObservedSky constructCulled() {
+        return new ObservedSky(WHEN, WHERE, projection, catalogue, Double.POSITIVE_INFINITY, VIEW_RADIUS);
+    }
+
+
+    /**
+     * Computes the frame of the observed sky following the previous one at the 3000x acceleration, by keyframe
+     * interpolation, only projecting the stars in the view.
+     *
+     * @return the frame, consumed by JMH.
+     */
+    @Benchmark
+    public ObservedSky interpolatedFrame() {
+        return interpolator.frameAt(WHEN.plusNanos(FRAME_STEP * frame++), WHERE, projection, catalogue,
+                Double.POSITIVE_INFINITY, VIEW_RADIUS, DILATATION_FACTOR);
+    }
+
+
+    /**
+     * Builds the observed sky of the catalogue stored by columns, up to the naked eye limiting magnitude.
+     *
+     * @return the observed sky, consumed by JMH.
+     */
+    @Benchmark
+    public ObservedSky constructColumnarLimited() {
+        return new ObservedSky(WHEN, WHERE, projection, columnarCatalogue, LIMITING_MAGNITUDE);
+    }
+
+
+    /**
+     * Computes the skies observed from the sites at the same instant, the ephemeris being shared.
+     *
+     * @return the skies, consumed by JMH.
+     */
+    @Benchmark
+    public MultiSiteSky multiSiteBatch() {
+        return MultiSiteSky.compute(WHEN, sites, catalogue, Double.POSITIVE_INFINITY);
+    }
+
+
+    /**
+     * Builds the observed sky of each site at the same instant, as a reference for the batch computation.
+     *
+     * @return the sky of the last site, consumed by JMH.
+     */
+    @Benchmark
+    public ObservedSky multiSiteSeparate() {
+        ObservedSky last = null;
+        for (GeographicCoordinates site : sites) {
+            last = new ObservedSky(WHEN, site, projection, catalogue);
+        }
+        return last;
+    }
+
+
+    /**
+     * Looks for the closest object to one of the query points, a different one at each invocation.
+     *
+     * @return the closest object, consumed by JMH.
+     */
+    @Benchmark
+    public Optional<CelestialObject> objectClosestTo() {
+        int i = nextQuery;
+        nextQuery = (i + 1) % QUERY_COUNT;
+        return sky.objectClosestTo(CartesianCoordinates.of(queryPoints[2 * i], queryPoints[2 * i + 1]), MAX_DISTANCE);
+    }
+
+
+    /**
+     * Looks for the stars around one of the query points, mapped onto the sky, a different one at each invocation.
+     *
+     * @return the indices of the stars, consumed by JMH.
+     */
+    @Benchmark
+    public int[] coneSearch() {
+        int i = nextQuery;
+        nextQuery = (i + 1) % QUERY_COUNT;
+        double ra = (queryPoints[2 * i] + 1) * Math.PI;
+        double dec = Math.asin(queryPoints[2 * i + 1]);
+        return catalogue.coneSearch(EquatorialCoordinates.of(ra, dec), CONE_RADIUS);
+    }
+
+}
@@ -0,0 +1,111 @@
+package ch.epfl.rigel.bench;
+
+import ch.epfl.rigel.astronomy.CelestialObject;
+import ch.epfl.rigel.astronomy.ObservedSky;
+import ch.epfl.rigel.astronomy.Star;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.coordinates.HorizontalCoordinates;
+import ch.epfl.rigel.coordinates.StereographicProjection;
+import ch.epfl.rigel.gui.PickBuffer;
+import ch.epfl.rigel.math.Angle;
+import ch.epfl.rigel.math.ClosedInterval;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the pick buffer of the canvas of the application: its filling with the stars of a frame,
+ * and the lookup of the object under the cursor. No display is needed.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PickBufferBenchmark {
+
+    // Observation parameters and canvas, identical to the initial ones of the application.
+    private final static ZonedDateTime WHEN = ZonedDateTime.of(2020, 4, 17, 21, 0, 0, 0, ZoneOffset.UTC);
+    private final static GeographicCoordinates WHERE = GeographicCoordinates.ofDeg(6.57, 46.52);
+    private final static HorizontalCoordinates CENTER = HorizontalCoordinates.ofDeg(180.000000000001, 15);
+    private final static int WIDTH = 1100, HEIGHT = 600;
+    private final static double FIELD_OF_VIEW_DEG = 100;
+
+    // Size of the disks of the stars, as drawn by the painter, and pick distance of the application, in pixels.
+    private final static double STANDARD_ANG_SIZE = Math.tan(Angle.ofDeg(0.5) / 4);
+    private final static ClosedInterval MAGNITUDE_INTERVAL = ClosedInterval.of(-2, 5);
+    private final static double PICK_DISTANCE = 10;
+
+    // Number of distinct query points.
+    private final static int QUERY_COUNT = 1024;
+
+    @Param({"1000", "5067", "100000"})
+    public int catalogueSize;
+
+    private final PickBuffer pickBuffer = new PickBuffer(PICK_DISTANCE);
+    private List<Star> stars;
+    private double[] coords, radii, queryPoints;
+    private int nextQuery;
+
+
+    /**
+     * Projects the stars on the canvas, computes their radii and fills the buffer once per trial.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        StereographicProjection projection = new StereographicProjection(CENTER);
+        ObservedSky sky = new ObservedSky(WHEN, WHERE, projection, BenchmarkCatalogues.catalogue(catalogueSize));
+        double dilatation = WIDTH / projection.applyToAngle(Angle.ofDeg(FIELD_OF_VIEW_DEG));
+
+        coords = sky.starsPosition();
+        stars = sky.stars();
+        radii = new double[stars.size()];
+        for (int i = 0; i < stars.size(); ++i) {
+            coords[2 * i] = dilatation * coords[2 * i] + WIDTH / 2d;
+            coords[2 * i + 1] = -dilatation * coords[2 * i + 1] + HEIGHT / 2d;
+            radii[i] = dilatation * STANDARD_ANG_SIZE * (99 - 17 * MAGNITUDE_INTERVAL.clip(stars.get(i).magnitude())) / 140;
+        }
+        fill();
+
+        SplittableRandom random = new SplittableRandom(2020);
+        queryPoints = new double[2 * QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; ++i) {
+            queryPoints[2 * i] = random.nextDouble(WIDTH);
+            queryPoints[2 * i + 1] = random.nextDouble(HEIGHT);
+        }
+    }
+
+
+    /**
+     * Empties the buffer and adds all the stars, as done by the painter at each frame.
+     *
+     * @return the buffer, consumed by JMH.
+     */
+    @Benchmark
+    public PickBuffer fill() {
+        pickBuffer.clear(WIDTH, HEIGHT);
+        for (int i = 0; i < stars.size(); ++i) {
+            pickBuffer.add(stars.get(i), coords[2 * i], coords[2 * i + 1], radii[i]);
+        }
+        return pickBuffer;
+    }
+
+
+    /**
+     * Looks for the object under one of the query points, a different one at each invocation.
+     *
+     * @return the object, consumed by JMH.
+     */
+    @Benchmark
+    public CelestialObject objectAt() {
+        int i = nextQuery;
+        nextQuery = (i + 1) % QUERY_COUNT;
+        return pickBuffer.objectAt(queryPoints[2 * i], queryPoints[2 * i + 1]);
+    }
+
+}
@@ -0,0 +1,85 @@
+package ch.epfl.rigel.bench;
+
+import ch.epfl.rigel.astronomy.Star;
+import ch.epfl.rigel.astronomy.StarCatalogue;
+import ch.epfl.rigel.coordinates.CartesianCoordinates;
+import ch.epfl.rigel.coordinates.EquatorialToHorizontalConversion;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.coordinates.HorizontalCoordinates;
+import ch.epfl.rigel.coordinates.StereographicProjection;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the stereographic projection, applied to all the stars of a catalogue.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectionBenchmark {
+
+    private final static ZonedDateTime WHEN = ZonedDateTime.of(2020, 4, 17, 21, 0, 0, 0, ZoneOffset.UTC);
+    private final static GeographicCoordinates WHERE = GeographicCoordinates.ofDeg(6.57, 46.52);
+    private final static HorizontalCoordinates CENTER = HorizontalCoordinates.ofDeg(180.000000000001, 15);
+
+    @Param({"1000", "5067", "100000"})
+    public int catalogueSize;
+
+    private StereographicProjection projection;
+    private HorizontalCoordinates[] horizontalPositions;
+    private CartesianCoordinates[] projectedPositions;
+
+
+    /**
+     * Computes the horizontal and projected positions of the stars once per trial.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        StarCatalogue catalogue = BenchmarkCatalogues.catalogue(catalogueSize);
+        EquatorialToHorizontalConversion eqConversion = new EquatorialToHorizontalConversion(WHEN, WHERE);
+        projection = new StereographicProjection(CENTER);
+
+        List<Star> stars = catalogue.stars();
+        horizontalPositions = new HorizontalCoordinates[stars.size()];
+        projectedPositions = new CartesianCoordinates[stars.size()];
+        for (int i = 0; i < stars.size(); ++i) {
+            horizontalPositions[i] = eqConversion.apply(stars.get(i).equatorialPos());
+            projectedPositions[i] = projection.apply(horizontalPositions[i]);
+        }
+    }
+
+
+    /**
+     * Projects the horizontal positions of all the stars.
+     *
+     * @param blackhole consumes the projected positions.
+     */
+    @Benchmark
+    public void apply(Blackhole blackhole) {
+        for (HorizontalCoordinates position : horizontalPositions) {
+            blackhole.consume(projection.apply(position));
+        }
+    }
+
+
+    /**
+     * Converts the projected positions of all the stars back to horizontal coordinates.
+     *
+     * @param blackhole consumes the horizontal positions.
+     */
+    @Benchmark
+    public void inverseApply(Blackhole blackhole) {
+        for (CartesianCoordinates position : projectedPositions) {
+            blackhole.consume(projection.inverseApply(position));
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package ch.epfl.rigel.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks, runs the whole suite with the GC profiler in order to report the allocation rates.
+ * The usual JMH command line options are accepted, e.g. a regular expression selecting the benchmarks
+ * or "-p catalogueSize=5067" to restrict the catalogue sizes.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class RigelBenchmarks {
+
+    /**
+     * Private constructor, avoids instantiation.
+     */
+    private RigelBenchmarks() {
+    }
+
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args the JMH command line options.
+     * @throws RunnerException             if a benchmark fails.
+     * @throws CommandLineOptionException if the options are invalid.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                // The benchmarks never start the JavaFX toolkit, the headless mode ensures no display is ever needed.
+                .jvmArgsAppend("-Djava.awt.headless=true");
+
+        // Default values, only used when not given on the command line.
+        if (commandLineOptions.getIncludes().isEmpty()) builder.include(RigelBenchmarks.class.getPackageName() + ".*Benchmark");
+        if (!commandLineOptions.getWarmupIterations().hasValue()) builder.warmupIterations(3);
+        if (!commandLineOptions.getMeasurementIterations().hasValue()) builder.measurementIterations(5);
+        if (!commandLineOptions.getForkCount().hasValue()) builder.forks(1);
+
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+
+}
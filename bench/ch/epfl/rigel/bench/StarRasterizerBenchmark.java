@@ -0,0 +1,95 @@
+package ch.epfl.rigel.bench;
+
+import ch.epfl.rigel.astronomy.ObservedSky;
+import ch.epfl.rigel.astronomy.Star;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.coordinates.HorizontalCoordinates;
+import ch.epfl.rigel.coordinates.StereographicProjection;
+import ch.epfl.rigel.gui.BlackBodyColor;
+import ch.epfl.rigel.gui.StarRasterizer;
+import ch.epfl.rigel.math.Angle;
+import ch.epfl.rigel.math.ClosedInterval;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the software rasterization of the stars of the canvas of the application, in stars per millisecond.
+ * Only the pixel buffer is filled, hence no display is needed.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StarRasterizerBenchmark {
+
+    // Observation parameters and canvas, identical to the initial ones of the application.
+    private final static ZonedDateTime WHEN = ZonedDateTime.of(2020, 4, 17, 21, 0, 0, 0, ZoneOffset.UTC);
+    private final static GeographicCoordinates WHERE = GeographicCoordinates.ofDeg(6.57, 46.52);
+    private final static HorizontalCoordinates CENTER = HorizontalCoordinates.ofDeg(180.000000000001, 15);
+    private final static int WIDTH = 1100, HEIGHT = 600;
+    private final static double FIELD_OF_VIEW_DEG = 100;
+
+    // Size of the disks of the stars, as drawn by the painter.
+    private final static double STANDARD_ANG_SIZE = Math.tan(Angle.ofDeg(0.5) / 4);
+    private final static ClosedInterval MAGNITUDE_INTERVAL = ClosedInterval.of(-2, 5);
+
+    @Param({"1000", "5067", "100000"})
+    public int catalogueSize;
+
+    private final StarRasterizer rasterizer = new StarRasterizer();
+    private double[] coords, radii;
+    private int[] colors;
+
+
+    /**
+     * Counter of the rasterized stars, reported by JMH as a throughput.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long stars;
+    }
+
+
+    /**
+     * Projects the stars on the canvas and computes their radii and colors once per trial.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        StereographicProjection projection = new StereographicProjection(CENTER);
+        ObservedSky sky = new ObservedSky(WHEN, WHERE, projection, BenchmarkCatalogues.catalogue(catalogueSize));
+        double dilatation = WIDTH / projection.applyToAngle(Angle.ofDeg(FIELD_OF_VIEW_DEG));
+
+        coords = sky.starsPosition();
+        List<Star> stars = sky.stars();
+        radii = new double[stars.size()];
+        colors = new int[stars.size()];
+        for (int i = 0; i < stars.size(); ++i) {
+            coords[2 * i] = dilatation * coords[2 * i] + WIDTH / 2d;
+            coords[2 * i + 1] = -dilatation * coords[2 * i + 1] + HEIGHT / 2d;
+            double magnitude = MAGNITUDE_INTERVAL.clip(stars.get(i).magnitude());
+            radii[i] = dilatation * STANDARD_ANG_SIZE * (99 - 17 * magnitude) / 140;
+            colors[i] = StarRasterizer.argb(BlackBodyColor.colorForTemperature(stars.get(i).colorTemperature()));
+        }
+    }
+
+
+    /**
+     * Rasterizes all the stars into the pixel buffer of the canvas.
+     *
+     * @param counters the counter of the rasterized stars.
+     * @return the buffer, consumed by JMH.
+     */
+    @Benchmark
+    public int[] rasterize(Counters counters) {
+        counters.stars += radii.length;
+        return rasterizer.rasterize(WIDTH, HEIGHT, coords, radii, colors, radii.length);
+    }
+
+}
@@ -0,0 +1,57 @@
+package ch.epfl.rigel;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Tool class running independent tasks in parallel on the common pool, or at once on the calling thread
+ * if there is only one processor, so that the tasks never wait for a thread switch they cannot benefit from.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class Parallelism {
+
+    /**
+     * True if there is more than one processor, the tasks then being run on other threads.
+     */
+    public final static boolean ENABLED = Runtime.getRuntime().availableProcessors() > 1;
+
+
+    /**
+     * Private constructor, avoids instantiation.
+     */
+    private Parallelism() {
+    }
+
+
+    /**
+     * Runs a task, on the common pool if parallelism is enabled, or at once on the calling thread otherwise.
+     *
+     * @param task the task.
+     * @param <T>  the type of the result of the task.
+     * @return the future result of the task.
+     */
+    public static <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return ENABLED ? CompletableFuture.supplyAsync(task) : CompletableFuture.completedFuture(task.get());
+    }
+
+
+    /**
+     * Waits for the result of a task, rethrowing its exception as if it had been run by the calling thread.
+     *
+     * @param task the future result of the task.
+     * @param <T>  the type of the result.
+     * @return the result.
+     */
+    public static <T> T join(CompletableFuture<T> task) {
+        try {
+            return task.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+}
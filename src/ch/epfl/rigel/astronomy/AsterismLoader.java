@@ -9,6 +9,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Loader for the asterisms file.
@@ -33,11 +34,8 @@ public enum AsterismLoader implements StarCatalogue.Loader {
         Charset c = StandardCharsets.US_ASCII;
         String aString;
 
-        // We create a HashMap to store the stars loaded in the Builder alongside their hipparcos Id.
-        HashMap<Integer, Star> starHashMap = new HashMap<>();
-        for (Star star : builder.stars()) {
-            starHashMap.put(star.hipparcosId(), star);
-        }
+        // The stars are looked up by their hipparcos Id in the map maintained by the Builder.
+        List<Star> stars = builder.stars();
 
         try (BufferedReader r = new BufferedReader(new InputStreamReader(inputStream, c))) {
             while ((aString = r.readLine()) != null) {
@@ -48,9 +46,11 @@ public enum AsterismLoader implements StarCatalogue.Loader {
                 String constellation = parts[parts.length-1];
                 for (int i = 0; i <parts.length -1 ; i++) {
 
-                    if (starHashMap.containsKey(Integer.parseInt(parts[i])) && Integer.parseInt(parts[i]) > 0) {
-                        starList.add(starHashMap.get(Integer.parseInt(parts[i])));
-                }}
+                    int index = builder.indexOfHipparcos(Integer.parseInt(parts[i]));
+                    if (index != -1) {
+                        starList.add(stars.get(index));
+                    }
+                }
 
                 builder.addAsterism(new Asterism(starList, constellation));
             }
@@ -58,4 +58,56 @@ public enum AsterismLoader implements StarCatalogue.Loader {
         }
     }
 
+
+    /**
+     * Loads the asterisms of the given columns, typically stored outside of the heap.
+     * Only the stars of the asterisms are materialized, their hipparcos IDs being looked up in a single pass over the columns.
+     *
+     * @param inputStream the given inputStream, i.e. the asterisms file.
+     * @param columns     the stars of the catalogue.
+     * @return the asterisms, associated with the indices of their stars in the columns.
+     * @throws IOException if there is an input error.
+     */
+    public Map<Asterism, List<Integer>> loadIndices(InputStream inputStream, StarColumns columns) throws IOException {
+
+        List<String> constellations = new ArrayList<>();
+        List<int[]> hipparcosIds = new ArrayList<>();
+        // Index of the wanted hipparcos IDs in the columns, -1 while not found.
+        IntIntMap hipparcosToIndex = new IntIntMap(0);
+
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.US_ASCII))) {
+            String aString;
+            while ((aString = r.readLine()) != null) {
+                String[] parts = aString.split(",");
+                int[] ids = new int[parts.length - 1];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = Integer.parseInt(parts[i]);
+                    if (ids[i] > 0) hipparcosToIndex.put(ids[i], -1);
+                }
+                hipparcosIds.add(ids);
+                constellations.add(parts[parts.length - 1]);
+            }
+        }
+
+        for (int i = 0; i < columns.size(); ++i) {
+            int hipparcosId = columns.hipparcosId(i);
+            if (hipparcosId > 0 && hipparcosToIndex.get(hipparcosId, 0) == -1) hipparcosToIndex.put(hipparcosId, i);
+        }
+
+        Map<Asterism, List<Integer>> asterismIndices = new HashMap<>();
+        for (int line = 0; line < hipparcosIds.size(); ++line) {
+            List<Star> starList = new ArrayList<>();
+            List<Integer> indices = new ArrayList<>();
+            for (int hipparcosId : hipparcosIds.get(line)) {
+                int index = (hipparcosId > 0) ? hipparcosToIndex.get(hipparcosId, -1) : -1;
+                if (index != -1) {
+                    starList.add(columns.star(index));
+                    indices.add(index);
+                }
+            }
+            asterismIndices.put(new Asterism(starList, constellations.get(line)), indices);
+        }
+        return asterismIndices;
+    }
+
 }
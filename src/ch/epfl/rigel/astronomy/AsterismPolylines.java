@@ -0,0 +1,103 @@
+package ch.epfl.rigel.astronomy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flat table of the polylines of a set of asterisms: the indices of the stars of all the asterisms are stored
+ * one after the other in a single array, each asterism being a range of this array.
+ * The table is immutable, and is read without boxing nor allocation.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class AsterismPolylines {
+
+    private final List<Asterism> asterisms;
+    // Start of the range of each asterism in the star indices, followed by the number of star indices.
+    private final int[] offsets;
+    private final int[] starIndices;
+
+
+    /**
+     * Constructor, builds the table of the given asterisms.
+     *
+     * @param asterismIndices the asterisms, associated with the indices of their stars.
+     */
+    AsterismPolylines(Map<Asterism, List<Integer>> asterismIndices) {
+        asterisms = new ArrayList<>(asterismIndices.size());
+        offsets = new int[asterismIndices.size() + 1];
+
+        int size = 0;
+        for (List<Integer> indices : asterismIndices.values()) {
+            size += indices.size();
+        }
+        starIndices = new int[size];
+
+        int position = 0;
+        for (Map.Entry<Asterism, List<Integer>> entry : asterismIndices.entrySet()) {
+            offsets[asterisms.size()] = position;
+            asterisms.add(entry.getKey());
+            for (int index : entry.getValue()) {
+                starIndices[position++] = index;
+            }
+        }
+        offsets[asterisms.size()] = position;
+    }
+
+
+    /**
+     * Getter for the number of asterisms.
+     *
+     * @return the number of asterisms.
+     */
+    public int size() {
+        return asterisms.size();
+    }
+
+
+    /**
+     * Getter for an asterism.
+     *
+     * @param i the index of the asterism in the table.
+     * @return the asterism.
+     */
+    public Asterism asterism(int i) {
+        return asterisms.get(i);
+    }
+
+
+    /**
+     * Getter for the start of the range of an asterism.
+     *
+     * @param i the index of the asterism in the table.
+     * @return the position of the index of its first star.
+     */
+    public int start(int i) {
+        return offsets[i];
+    }
+
+
+    /**
+     * Getter for the end of the range of an asterism.
+     *
+     * @param i the index of the asterism in the table.
+     * @return the position following the index of its last star.
+     */
+    public int end(int i) {
+        return offsets[i + 1];
+    }
+
+
+    /**
+     * Getter for the index of a star, at the given position of the table.
+     *
+     * @param position the position, between the start and the end of an asterism.
+     * @return the index of the star.
+     */
+    public int starIndex(int position) {
+        return starIndices[position];
+    }
+
+}
@@ -0,0 +1,265 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of a built star catalogue, which is much faster to read than the catalogue files it comes from.
+ * A snapshot contains the stars, the asterisms as arrays of star indices, and a checksum of the source files:
+ * it is only used if the sources have not changed since it was written.
+ * <p>
+ * The stars are stored by increasing magnitude, each one with its index in the catalogue, and the asterisms in the
+ * order in which their stars are all read: the catalogue of the brightest stars is available while the rest of the
+ * snapshot is still being read.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class CatalogueSnapshot {
+
+    // Identifies the snapshot files, "RGLC" in ASCII.
+    private final static int MAGIC = 0x52474C43;
+
+    // Version of the format, to be incremented at each change of the format.
+    private final static int VERSION = 4;
+
+
+    /**
+     * Private constructor, avoids instantiation.
+     */
+    private CatalogueSnapshot() {
+    }
+
+
+    /**
+     * Computes the checksum of the given source files.
+     *
+     * @param sources the contents of the source files, or any bytes changing with them, e.g their sizes and
+     *                modification times, in the order in which they are loaded.
+     * @return the checksum.
+     */
+    public static long checksum(byte[]... sources) {
+        CRC32 crc = new CRC32();
+        for (byte[] source : sources) {
+            // The length is included, so that moving bytes from one source to the next changes the checksum.
+            crc.update(ByteBuffer.allocate(Integer.BYTES).putInt(source.length).flip());
+            crc.update(source);
+        }
+        return crc.getValue();
+    }
+
+
+    /**
+     * Reads a snapshot, in a single sequential read.
+     *
+     * @param file     the snapshot file.
+     * @param checksum the checksum of the current source files.
+     * @return the catalogue, or an empty optional if the snapshot does not exist, has another version or another checksum,
+     * or is corrupted.
+     * @throws IOException if there is an input error other than a missing file.
+     */
+    public static Optional<StarCatalogue> read(Path file, long checksum) throws IOException {
+        return read(file, checksum, new double[0], (limitingMagnitude, tier) -> {});
+    }
+
+
+    /**
+     * Reads a snapshot, in a single sequential read, notifying the listener each time the stars up to one of the
+     * given magnitudes have been read. A tier including all the stars is not notified, the catalogue being returned.
+     *
+     * @param file               the snapshot file.
+     * @param checksum           the checksum of the current source files.
+     * @param limitingMagnitudes the limiting magnitudes of the tiers, in increasing order.
+     * @param listener           the listener of the tiers.
+     * @return the catalogue, or an empty optional if the snapshot does not exist, has another version or another checksum,
+     * or is corrupted. The listener may have been notified of tiers before a corruption is detected.
+     * @throws IOException if there is an input error other than a missing file.
+     */
+    public static Optional<StarCatalogue> read(Path file, long checksum, double[] limitingMagnitudes, StarCatalogue.TierListener listener) throws IOException {
+        InputStream stream;
+        try {
+            stream = Files.newInputStream(file);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != checksum) {
+                return Optional.empty();
+            }
+
+            int starCount = in.readInt();
+            int asterismCount = in.readInt();
+            String[] asterismNames = new String[asterismCount];
+            int[][] asterismIndices = new int[asterismCount][];
+            // Number of stars to be read before each asterism is complete, the asterisms being sorted by this number.
+            int[] asterismEnds = new int[asterismCount];
+            for (int i = 0; i < asterismCount; ++i) {
+                asterismNames[i] = in.readUTF();
+                asterismEnds[i] = in.readInt();
+                asterismIndices[i] = new int[in.readInt()];
+                for (int j = 0; j < asterismIndices[i].length; ++j) {
+                    asterismIndices[i][j] = in.readInt();
+                }
+            }
+
+            // The stars of the catalogue, at their indices, and in the order in which they are read.
+            Star[] stars = new Star[starCount];
+            List<Star> readStars = new ArrayList<>(starCount);
+            // Rank of each star in the reading order, i.e its index in the catalogue of a tier.
+            int[] ranks = new int[starCount];
+            // Asterisms complete so far, with the indices of their stars in the catalogue and in the reading order.
+            Map<Asterism, List<Integer>> catalogueAsterisms = new HashMap<>();
+            Map<Asterism, List<Integer>> tierAsterisms = new HashMap<>();
+            int nextAsterism = 0, nextTier = 0;
+
+            // The names of each tier are stored in their own arena, left unchanged once the tier can be published.
+            NameArena names = new NameArena();
+            for (int i = 0; i < starCount; ++i) {
+                int index = in.readInt();
+                float magnitude = in.readFloat();
+                if (nextTier < limitingMagnitudes.length && magnitude > limitingMagnitudes[nextTier]) {
+                    names.trim();
+                    names = new NameArena();
+                    // All the tiers ending before this star contain the stars read so far.
+                    for (; nextTier < limitingMagnitudes.length && magnitude > limitingMagnitudes[nextTier]; ++nextTier) {
+                        listener.tierRead(limitingMagnitudes[nextTier], () -> new StarCatalogue(readStars, tierAsterisms));
+                    }
+                }
+
+                int hipparcosId = in.readInt();
+                int nameId = names.add(in.readUTF());
+                String bayer = in.readUTF().intern();
+                String constellation = in.readUTF().intern();
+                double ra = in.readDouble();
+                double dec = in.readDouble();
+                float colorIndex = in.readFloat();
+                stars[index] = new Star(hipparcosId, names, nameId, bayer, constellation, EquatorialCoordinates.of(ra, dec), magnitude, colorIndex);
+                ranks[index] = i;
+                readStars.add(stars[index]);
+
+                for (; nextAsterism < asterismCount && asterismEnds[nextAsterism] <= i + 1; ++nextAsterism) {
+                    int[] indices = asterismIndices[nextAsterism];
+                    List<Star> asterismStars = new ArrayList<>(indices.length);
+                    Integer[] asterismRanks = new Integer[indices.length];
+                    for (int j = 0; j < indices.length; ++j) {
+                        asterismStars.add(stars[indices[j]]);
+                        asterismRanks[j] = ranks[indices[j]];
+                    }
+                    Asterism asterism = new Asterism(asterismStars, asterismNames[nextAsterism]);
+                    catalogueAsterisms.put(asterism, indicesOf(indices));
+                    tierAsterisms.put(asterism, List.of(asterismRanks));
+                }
+            }
+            names.trim();
+            if (nextAsterism != asterismCount) return Optional.empty();
+
+            return Optional.of(new StarCatalogue(List.of(stars), catalogueAsterisms));
+        } catch (EOFException | RuntimeException e) {
+            // Truncated or inconsistent snapshot, e.g an index out of bounds, a missing star or an invalid star.
+            return Optional.empty();
+        }
+    }
+
+
+    /**
+     * Writes a snapshot of the given catalogue. The file is written next to its final location and then moved,
+     * so that a snapshot is never read partially written.
+     *
+     * @param file      the snapshot file, its parent directories being created if needed.
+     * @param catalogue the catalogue.
+     * @param checksum  the checksum of the source files of the catalogue.
+     * @throws IOException if there is an output error.
+     */
+    public static void write(Path file, StarCatalogue catalogue, long checksum) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(checksum);
+
+                List<Star> stars = catalogue.stars();
+                int[] order = StarCatalogue.magnitudeOrder(stars);
+                int[] ranks = new int[order.length];
+                for (int i = 0; i < order.length; ++i) {
+                    ranks[order[i]] = i;
+                }
+
+                // Each key contains the number of stars to be read before the asterism is complete,
+                // followed by the index of the asterism.
+                List<Asterism> asterisms = new ArrayList<>(catalogue.asterisms());
+                long[] asterismKeys = new long[asterisms.size()];
+                for (int i = 0; i < asterisms.size(); ++i) {
+                    int end = 0;
+                    for (int index : catalogue.asterismIndices(asterisms.get(i))) {
+                        end = Math.max(end, ranks[index] + 1);
+                    }
+                    asterismKeys[i] = ((long) end << 32) | i;
+                }
+                Arrays.sort(asterismKeys);
+
+                out.writeInt(stars.size());
+                out.writeInt(asterisms.size());
+                for (long key : asterismKeys) {
+                    Asterism asterism = asterisms.get((int) key);
+                    List<Integer> indices = catalogue.asterismIndices(asterism);
+                    out.writeUTF(asterism.getConstellationName());
+                    out.writeInt((int) (key >>> 32));
+                    out.writeInt(indices.size());
+                    for (int index : indices) {
+                        out.writeInt(index);
+                    }
+                }
+
+                for (int index : order) {
+                    Star star = stars.get(index);
+                    out.writeInt(index);
+                    out.writeFloat((float) star.magnitude());
+                    out.writeInt(star.hipparcosId());
+                    out.writeUTF(star.name());
+                    out.writeUTF(star.bayer());
+                    out.writeUTF(star.constellation());
+                    out.writeDouble(star.equatorialPos().ra());
+                    out.writeDouble(star.equatorialPos().dec());
+                    out.writeFloat((float) star.colorIndex());
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+
+    /**
+     * Boxes the given star indices in an immutable list.
+     *
+     * @param indices the indices.
+     * @return the list of the indices.
+     */
+    private static List<Integer> indicesOf(int[] indices) {
+        Integer[] boxed = new Integer[indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+            boxed[i] = indices[i];
+        }
+        return List.of(boxed);
+    }
+
+}
@@ -43,6 +43,25 @@ public abstract class CelestialObject {
     }
 
 
+    /**
+     * Constructor for a celestial object whose name is not stored here, the subclass overriding the name getter.
+     *
+     * @param equatorialPos equatorial coordinates.
+     * @param angularSize   the object's angular size.
+     * @param magnitude     the object's magnitude.
+     * @throws NullPointerException     if the equatorial coordinates are null.
+     * @throws IllegalArgumentException if the angular size is negative.
+     */
+    CelestialObject(EquatorialCoordinates equatorialPos, float angularSize, float magnitude) {
+        this.name = null;
+        this.equatorialPos = Objects.requireNonNull(equatorialPos);
+
+        Preconditions.checkArgument(angularSize >= 0);
+        this.angularSize = angularSize;
+        this.magnitude = magnitude;
+    }
+
+
     /**
      * Getter for the object's name.
      *
@@ -88,7 +107,7 @@ public abstract class CelestialObject {
      * By default, return the object's name.
      */
     public String info() {
-        return name;
+        return name();
     }
 
 
@@ -0,0 +1,141 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.coordinates.EclipticToEquatorialConversion;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parts of the observed sky which only depend on the instant of the observation, and not on the observer:
+ * the Sun, the moon and the planets (except the Earth), given by their models, and the Greenwich sidereal time.
+ * An ephemeris is immutable, and can be shared by the skies observed from several places at the same instant.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class Ephemeris {
+
+    private final static List<PlanetModel> PLANET_MODELS = PlanetModel.ALL;
+
+    private final ZonedDateTime when;
+    private final Sun sun;
+    private final Moon moon;
+    private final List<Planet> planets;
+    private final double greenwichSiderealTime;
+
+
+    /**
+     * Private constructor.
+     *
+     * @param when the instant.
+     */
+    private Ephemeris(ZonedDateTime when) {
+        this.when = when;
+        double daysSinceJ2010 = Epoch.J2010.daysUntil(when);
+        EclipticToEquatorialConversion eclConversion = new EclipticToEquatorialConversion(when);
+
+        sun = SunModel.SUN.at(daysSinceJ2010, eclConversion);
+        moon = MoonModel.MOON.at(daysSinceJ2010, eclConversion);
+
+        List<Planet> planetsList = new ArrayList<>(PLANET_MODELS.size() - 1);
+        for (PlanetModel planetModel : PLANET_MODELS) {
+            if (!planetModel.equals(PlanetModel.EARTH)) {
+                planetsList.add(planetModel.at(daysSinceJ2010, eclConversion));
+            }
+        }
+        planets = Collections.unmodifiableList(planetsList);
+
+        greenwichSiderealTime = SiderealTime.greenwich(when);
+    }
+
+
+    /**
+     * Private constructor, keeps the bodies of another ephemeris at a close instant.
+     *
+     * @param when   the instant.
+     * @param bodies the ephemeris whose bodies are kept.
+     */
+    private Ephemeris(ZonedDateTime when, Ephemeris bodies) {
+        this.when = when;
+        sun = bodies.sun;
+        moon = bodies.moon;
+        planets = bodies.planets;
+        greenwichSiderealTime = SiderealTime.greenwich(when);
+    }
+
+
+    /**
+     * Runs the models of the Sun, the moon and the planets at the given instant.
+     *
+     * @param when the instant.
+     * @return the ephemeris.
+     */
+    public static Ephemeris at(ZonedDateTime when) {
+        return new Ephemeris(when);
+    }
+
+
+    /**
+     * Builds the ephemeris at a close instant, keeping the Sun, the moon and the planets of this one.
+     * Only the sidereal time is computed at the given instant, the Earth turning much faster than the bodies move.
+     *
+     * @param when the close instant.
+     * @return this ephemeris if the zoned date times are equal, a new one otherwise.
+     */
+    Ephemeris withInstant(ZonedDateTime when) {
+        return when.equals(this.when) ? this : new Ephemeris(when, this);
+    }
+
+
+    /**
+     * Getter for the instant.
+     *
+     * @return the zoned date time of the ephemeris.
+     */
+    public ZonedDateTime when() {
+        return when;
+    }
+
+
+    /**
+     * Getter for the Sun.
+     *
+     * @return the Sun.
+     */
+    public Sun sun() {
+        return sun;
+    }
+
+
+    /**
+     * Getter for the moon.
+     *
+     * @return the moon.
+     */
+    public Moon moon() {
+        return moon;
+    }
+
+
+    /**
+     * Getter for the planets (except the Earth), in the order of the planet models.
+     *
+     * @return an immutable list of the planets.
+     */
+    public List<Planet> planets() {
+        return planets;
+    }
+
+
+    /**
+     * Getter for the Greenwich sidereal time, the local sidereal time of an observer being this time plus its longitude.
+     *
+     * @return the Greenwich sidereal time, in radians.
+     */
+    public double greenwichSiderealTime() {
+        return greenwichSiderealTime;
+    }
+
+}
@@ -0,0 +1,122 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.Preconditions;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of the ephemerides, keyed by the instant quantized to a given duration.
+ * The instants of a quantum share the Sun, the moon and the planets computed at its beginning, only the sidereal time
+ * being computed at each instant, so that the changes of the observer location or of the view never run the models.
+ * The least recently used ephemeris is evicted when the cache is full. The cache is thread safe, the models being
+ * run outside of its lock, so that a miss never blocks the other threads.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class EphemerisCache {
+
+    // The moon, the fastest body, moves by half an arcsecond in a second, far below the size of a pixel.
+    private final static Duration DEFAULT_QUANTUM = Duration.ofSeconds(1);
+    private final static int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Cache shared by the observed skies, the canvases and the batch computations.
+     */
+    public final static EphemerisCache SHARED = new EphemerisCache(DEFAULT_CAPACITY, DEFAULT_QUANTUM);
+
+    private final long quantumMillis;
+    private final Map<Long, Ephemeris> entries;
+    private long hits, misses;
+
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the maximum number of ephemerides kept.
+     * @param quantum  the duration of the quantum of the instants, of at least a millisecond.
+     * @throws IllegalArgumentException if the capacity is not positive, or if the quantum is shorter than a millisecond.
+     */
+    public EphemerisCache(int capacity, Duration quantum) {
+        Preconditions.checkArgument(capacity > 0 && quantum.toMillis() >= 1);
+        quantumMillis = quantum.toMillis();
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Ephemeris> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+
+    /**
+     * Gives the ephemeris at the given instant, running the models only if its quantum is not cached.
+     *
+     * @param when the instant.
+     * @return the ephemeris, whose bodies are the ones at the beginning of the quantum of the instant.
+     */
+    public Ephemeris at(ZonedDateTime when) {
+        long key = Math.floorDiv(when.toInstant().toEpochMilli(), quantumMillis);
+        synchronized (this) {
+            Ephemeris ephemeris = entries.get(key);
+            if (ephemeris != null) {
+                ++hits;
+                return ephemeris.withInstant(when);
+            }
+            ++misses;
+        }
+
+        // Two threads missing the same quantum both run the models, with identical results.
+        Ephemeris ephemeris = Ephemeris.at(Instant.ofEpochMilli(key * quantumMillis).atZone(when.getZone()));
+        synchronized (this) {
+            entries.put(key, ephemeris);
+        }
+        return ephemeris.withInstant(when);
+    }
+
+
+    /**
+     * Getter for the number of ephemerides found in the cache.
+     *
+     * @return the number of hits.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+
+    /**
+     * Getter for the number of ephemerides computed, as they were not in the cache.
+     *
+     * @return the number of misses.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+
+    /**
+     * Getter for the fraction of the ephemerides found in the cache.
+     *
+     * @return the hit rate, 0 if no ephemeris has been asked yet.
+     */
+    public synchronized double hitRate() {
+        long requests = hits + misses;
+        return (requests == 0) ? 0 : (double) hits / requests;
+    }
+
+
+    /**
+     * Getter for the number of ephemerides kept.
+     *
+     * @return the size of the cache.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+}
@@ -0,0 +1,92 @@
+package ch.epfl.rigel.astronomy;
+
+import java.util.List;
+
+/**
+ * Columns view of a list of stars, used by the catalogues built from Star objects.
+ * The stars are not sorted, the only tier being the whole list.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+final class HeapStarColumns implements StarColumns {
+
+    private final List<Star> stars;
+
+
+    /**
+     * Constructor, the list is not copied.
+     *
+     * @param stars the stars, which must not change.
+     */
+    HeapStarColumns(List<Star> stars) {
+        this.stars = stars;
+    }
+
+
+    @Override
+    public int size() {
+        return stars.size();
+    }
+
+
+    @Override
+    public int hipparcosId(int index) {
+        return stars.get(index).hipparcosId();
+    }
+
+
+    @Override
+    public String name(int index) {
+        return stars.get(index).name();
+    }
+
+
+    @Override
+    public String bayer(int index) {
+        return stars.get(index).bayer();
+    }
+
+
+    @Override
+    public String constellation(int index) {
+        return stars.get(index).constellation();
+    }
+
+
+    @Override
+    public double ra(int index) {
+        return stars.get(index).equatorialPos().ra();
+    }
+
+
+    @Override
+    public double dec(int index) {
+        return stars.get(index).equatorialPos().dec();
+    }
+
+
+    @Override
+    public double magnitude(int index) {
+        return stars.get(index).magnitude();
+    }
+
+
+    @Override
+    public double colorIndex(int index) {
+        return stars.get(index).colorIndex();
+    }
+
+
+    @Override
+    public int tierEnd(double limitingMagnitude) {
+        return stars.size();
+    }
+
+
+    @Override
+    public Star star(int index) {
+        return stars.get(index);
+    }
+
+}
@@ -1,13 +1,23 @@
 package ch.epfl.rigel.astronomy;
 
+import ch.epfl.rigel.Parallelism;
 import ch.epfl.rigel.coordinates.EquatorialCoordinates;
 
 import java.io.*;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Loads the content of the HYG database which contains the information about a list of stars.
+ * The database is parsed directly from its bytes: only the used columns are read and the numbers are parsed in place.
+ * The file is read in chunks, cut at line boundaries, which are parsed in parallel and added to the builder in order.
  *
  * @author Victor Nazianzeno -- Le Jamtel(312075)
  * @author Javier García Arredondo(311166)
@@ -15,6 +25,9 @@ import java.nio.charset.StandardCharsets;
 public enum HygDatabaseLoader implements StarCatalogue.Loader {
     INSTANCE;
 
+    // Size of the chunks read from the channel, each one being parsed as a whole.
+    private final static int CHUNK_SIZE = 1 << 18;
+
 
     /**
      * Loads the content of the inputStream in order to add stars to the star catalogue builder.
@@ -25,57 +38,462 @@ public enum HygDatabaseLoader implements StarCatalogue.Loader {
      */
     @Override
     public void load(InputStream inputStream, StarCatalogue.Builder builder) throws IOException {
+        load(Channels.newChannel(inputStream), builder);
+    }
 
-        Charset c = StandardCharsets.US_ASCII;
 
-        try (BufferedReader r = new BufferedReader(new InputStreamReader(inputStream, c))) {
+    /**
+     * Loads the content of the channel in order to add stars to the star catalogue builder.
+     * The channel is closed once read.
+     *
+     * @param channel the given channel, i.e a file containing stars data.
+     * @param builder the given star catalogue builder.
+     * @throws IOException              if there is an input error.
+     * @throws NumberFormatException    if a number of the database is malformed.
+     * @throws IllegalArgumentException if the data of a star is invalid.
+     */
+    public void load(ReadableByteChannel channel, StarCatalogue.Builder builder) throws IOException {
+        for (CompletableFuture<List<Star>> chunk : parseChunks(channel, chunkBytes -> new ChunkParser().parseStars(chunkBytes))) {
+            for (Star star : Parallelism.join(chunk)) {
+                builder.addStar(star);
+            }
+        }
+    }
 
-            r.readLine();
 
-            while (r.ready()) {
-                String[] parts = r.readLine().split(",");
+    /**
+     * Loads the content of the channel into columns stored outside of the heap, no Star object being created.
+     * Meant for the catalogues of millions of stars. The channel is closed once read.
+     *
+     * @param channel the given channel, i.e a file containing stars data.
+     * @return the columns, sorted by magnitude.
+     * @throws IOException              if there is an input error.
+     * @throws NumberFormatException    if a number of the database is malformed.
+     * @throws IllegalArgumentException if the data of a star is invalid.
+     */
+    public OffHeapStarColumns loadColumns(ReadableByteChannel channel) throws IOException {
+        OffHeapStarColumns.Builder builder = new OffHeapStarColumns.Builder();
+        for (CompletableFuture<OffHeapStarColumns.Builder> chunk : parseChunks(channel, chunkBytes -> new ChunkParser().parseColumns(chunkBytes))) {
+            builder.addAll(Parallelism.join(chunk));
+        }
+        return builder.build();
+    }
 
-                //Hipparcos number of the star, 0 by default.
-                int hipparcosNumber = Integer.parseInt(stringOf(parts, Columns.HIP, "0"));
 
-                //Name of the star.
-                String name;
-                if (parts[Columns.PROPER.ordinal()].isEmpty()) {
-                    name = stringOf(parts, Columns.BAYER, "?");
-                    name += " " + parts[Columns.CON.ordinal()];
-                } else {
-                    name = parts[Columns.PROPER.ordinal()];
+    /**
+     * Reads the channel in chunks made of complete lines, the header excluded, and parses each of them.
+     * The channel is closed once read.
+     *
+     * @param channel the channel.
+     * @param parser  the parser of a chunk.
+     * @param <R>     the type of the result of the parsing of a chunk.
+     * @return the future results of the parsing of the chunks, in the order of the file.
+     * @throws IOException if there is an input error.
+     */
+    private static <R> List<CompletableFuture<R>> parseChunks(ReadableByteChannel channel, Function<byte[], R> parser) throws IOException {
+
+        List<CompletableFuture<R>> chunks = new ArrayList<>();
+
+        try (channel) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            boolean header = true;
+            boolean endOfStream = false;
+
+            while (!endOfStream) {
+                while (buffer.hasRemaining() && !endOfStream) {
+                    endOfStream = channel.read(buffer) < 0;
                 }
 
-                //Equatorial coordinates of the star which are always defined (no default value).
-                EquatorialCoordinates eqPosition =
-                        EquatorialCoordinates.of(
-                                (Double.parseDouble(parts[Columns.RARAD.ordinal()])),
-                                Double.parseDouble(parts[Columns.DECRAD.ordinal()]));
+                byte[] bytes = buffer.array();
+                int end = buffer.position();
+                // The chunk ends after its last complete line, the rest is kept for the next one.
+                int chunkEnd = endOfStream ? end : lastLineEnd(bytes, end);
+                int chunkStart = 0;
 
-                //Magnitude of the star, 0 by default.
-                float magnitude = (float) Double.parseDouble(stringOf(parts, Columns.MAG, "0"));
+                if (header) {
+                    chunkStart = Math.min(lineEnd(bytes, 0, chunkEnd) + 1, chunkEnd);
+                    header = chunkStart == 0 && !endOfStream;
+                }
 
-                //Color index of the star, 0 by default.
-                float colorIndex = (float) Double.parseDouble(stringOf(parts, Columns.CI, "0"));
+                if (chunkEnd > chunkStart) {
+                    byte[] chunk = Arrays.copyOfRange(bytes, chunkStart, chunkEnd);
+                    // The chunks are only parsed on other threads if there is more than one processor.
+                    chunks.add(Parallelism.supply(() -> parser.apply(chunk)));
+                }
 
-                builder.addStar(new Star(hipparcosNumber, name, eqPosition, magnitude, colorIndex));
+                // Keeps the incomplete line at the beginning of the buffer, growing it if a line fills it.
+                int remaining = end - Math.max(chunkEnd, chunkStart);
+                if (remaining == bytes.length) {
+                    buffer = ByteBuffer.allocate(2 * bytes.length);
+                }
+                System.arraycopy(bytes, end - remaining, buffer.array(), 0, remaining);
+                buffer.clear().position(remaining);
             }
         }
+        return chunks;
+    }
+
+
+    /**
+     * Finds the end of the line beginning at the given index.
+     *
+     * @param bytes the bytes.
+     * @param from  the index of the beginning of the line.
+     * @param to    the index of the end of the bytes, exclusive.
+     * @return the index of the line feed ending the line, or to if there is none.
+     */
+    private static int lineEnd(byte[] bytes, int from, int to) {
+        int i = from;
+        while (i < to && bytes[i] != '\n') ++i;
+        return i;
     }
 
 
     /**
-     * Checking if a string at a certain column in an array is empty, either returning the content or a default value.
+     * Finds the end of the last complete line of the bytes.
      *
-     * @param strings      the string array.
-     * @param column       the column, i.e the index of the string in the array.
-     * @param defaultValue the default string to be returned.
-     * @return a string, either the content of the array at the given index, or the default string.
+     * @param bytes the bytes.
+     * @param to    the index of the end of the bytes, exclusive.
+     * @return the index following the last line feed, or 0 if there is none.
      */
-    private String stringOf(String[] strings, Columns column, String defaultValue) {
-        String content = strings[column.ordinal()];
-        return (content.isEmpty()) ? defaultValue : content;
+    private static int lastLineEnd(byte[] bytes, int to) {
+        int i = to;
+        while (i > 0 && bytes[i - 1] != '\n') --i;
+        return i;
+    }
+
+
+    /**
+     * Parser of a chunk of the database made of complete lines.
+     * The bounds of the fields of the current line are kept in arrays reused for every line,
+     * so that only the stars and their names are allocated.
+     */
+    private final static class ChunkParser {
+
+        // Only the columns up to the constellation are used, the end of the line is skipped.
+        private final static int USED_COLUMNS = Columns.CON.ordinal() + 1;
+
+        // Largest mantissa and power of ten exactly represented by a double.
+        private final static long MAX_EXACT_MANTISSA = 1L << 53;
+        private final static int MAX_EXACT_POWER = 22;
+        private final static double[] POWERS_OF_TEN = new double[MAX_EXACT_POWER + 1];
+
+        static {
+            POWERS_OF_TEN[0] = 1;
+            for (int i = 1; i <= MAX_EXACT_POWER; ++i) {
+                POWERS_OF_TEN[i] = 10 * POWERS_OF_TEN[i - 1];
+            }
+        }
+
+        private final int[] fieldStarts = new int[USED_COLUMNS];
+        private final int[] fieldEnds = new int[USED_COLUMNS];
+        private byte[] bytes;
+        // Buffer in which the names are built.
+        private byte[] nameBuffer = new byte[16];
+        // Arena storing the names of the stars of the chunk.
+        private final NameArena names = new NameArena();
+
+
+        /**
+         * Parses the stars of the given chunk.
+         *
+         * @param chunk the bytes of complete lines of the database.
+         * @return the stars, in the order of the chunk.
+         */
+        private List<Star> parseStars(byte[] chunk) {
+            List<Star> stars = new ArrayList<>(chunk.length / 256);
+            parse(chunk, () -> stars.add(star()));
+            names.trim();
+            return stars;
+        }
+
+
+        /**
+         * Parses the stars of the given chunk into columns.
+         *
+         * @param chunk the bytes of complete lines of the database.
+         * @return the builder of the columns, containing the stars in the order of the chunk.
+         */
+        private OffHeapStarColumns.Builder parseColumns(byte[] chunk) {
+            OffHeapStarColumns.Builder builder = new OffHeapStarColumns.Builder();
+            parse(chunk, () -> addTo(builder));
+            return builder;
+        }
+
+
+        /**
+         * Splits the given chunk into lines, and runs the given action once the fields of each line are delimited.
+         *
+         * @param chunk the bytes of complete lines of the database.
+         * @param row   the action run for each line.
+         */
+        private void parse(byte[] chunk, Runnable row) {
+            bytes = chunk;
+
+            int lineStart = 0;
+            while (lineStart < chunk.length) {
+                int lineEnd = lineEnd(chunk, lineStart, chunk.length);
+                int contentEnd = (lineEnd > lineStart && chunk[lineEnd - 1] == '\r') ? lineEnd - 1 : lineEnd;
+
+                if (contentEnd > lineStart) {
+                    splitFields(lineStart, contentEnd);
+                    row.run();
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+
+
+        /**
+         * Records the bounds of the used fields of a line, the missing ones being empty.
+         *
+         * @param from the index of the beginning of the line.
+         * @param to   the index of the end of the line, exclusive.
+         */
+        private void splitFields(int from, int to) {
+            int field = 0;
+            int start = from;
+            for (int i = from; i < to && field < USED_COLUMNS; ++i) {
+                if (bytes[i] == ',') {
+                    fieldStarts[field] = start;
+                    fieldEnds[field] = i;
+                    ++field;
+                    start = i + 1;
+                }
+            }
+            if (field < USED_COLUMNS) {
+                fieldStarts[field] = start;
+                fieldEnds[field] = to;
+                ++field;
+            }
+            for (; field < USED_COLUMNS; ++field) {
+                fieldStarts[field] = to;
+                fieldEnds[field] = to;
+            }
+        }
+
+
+        /**
+         * Builds the star described by the fields of the current line.
+         *
+         * @return the star.
+         */
+        private Star star() {
+            //Hipparcos number of the star, 0 by default.
+            int hipparcosNumber = isEmpty(Columns.HIP) ? 0 : parseInt(Columns.HIP);
+
+            //Name of the star, stored in the arena of the chunk.
+            int nameLength = writeName();
+            int nameId = names.add(nameBuffer, 0, nameLength);
+
+            //Equatorial coordinates of the star which are always defined (no default value).
+            EquatorialCoordinates eqPosition =
+                    EquatorialCoordinates.of(parseDouble(Columns.RARAD), parseDouble(Columns.DECRAD));
+
+            //Magnitude of the star, 0 by default.
+            float magnitude = isEmpty(Columns.MAG) ? 0 : (float) parseDouble(Columns.MAG);
+
+            //Color index of the star, 0 by default.
+            float colorIndex = isEmpty(Columns.CI) ? 0 : (float) parseDouble(Columns.CI);
+
+            //Bayer designation and constellation of the star, shared by all the stars having the same ones.
+            String bayer = new String(bytes, start(Columns.BAYER), length(Columns.BAYER), StandardCharsets.UTF_8).intern();
+            String constellation = new String(bytes, start(Columns.CON), length(Columns.CON), StandardCharsets.UTF_8).intern();
+
+            return new Star(hipparcosNumber, names, nameId, bayer, constellation, eqPosition, magnitude, colorIndex);
+        }
+
+
+        /**
+         * Adds the star described by the fields of the current line to the given columns, with the same default values.
+         *
+         * @param builder the builder of the columns.
+         */
+        private void addTo(OffHeapStarColumns.Builder builder) {
+            // The name is written first, as it can grow the name buffer.
+            int nameLength = writeName();
+            builder.add(isEmpty(Columns.HIP) ? 0 : parseInt(Columns.HIP),
+                    nameBuffer, 0, nameLength,
+                    bytes, start(Columns.BAYER), length(Columns.BAYER),
+                    bytes, start(Columns.CON), length(Columns.CON),
+                    parseDouble(Columns.RARAD),
+                    parseDouble(Columns.DECRAD),
+                    isEmpty(Columns.MAG) ? 0 : (float) parseDouble(Columns.MAG),
+                    isEmpty(Columns.CI) ? 0 : (float) parseDouble(Columns.CI));
+        }
+
+
+        /**
+         * Writes the name of the star in the name buffer: its proper name if any, and otherwise
+         * its bayer designation ("?" by default) followed by its constellation.
+         *
+         * @return the length of the name.
+         */
+        private int writeName() {
+            if (!isEmpty(Columns.PROPER)) {
+                return copyToNameBuffer(Columns.PROPER, 0);
+            }
+
+            int bayerLength;
+            if (isEmpty(Columns.BAYER)) {
+                ensureNameCapacity(1);
+                nameBuffer[0] = '?';
+                bayerLength = 1;
+            } else {
+                bayerLength = copyToNameBuffer(Columns.BAYER, 0);
+            }
+            ensureNameCapacity(bayerLength + 1);
+            nameBuffer[bayerLength] = ' ';
+            return bayerLength + 1 + copyToNameBuffer(Columns.CON, bayerLength + 1);
+        }
+
+
+        /**
+         * Copies the field of the given column in the name buffer.
+         *
+         * @param column the column.
+         * @param offset the offset in the name buffer.
+         * @return the length of the field.
+         */
+        private int copyToNameBuffer(Columns column, int offset) {
+            int length = length(column);
+            ensureNameCapacity(offset + length);
+            System.arraycopy(bytes, start(column), nameBuffer, offset, length);
+            return length;
+        }
+
+
+        /**
+         * Grows the name buffer if needed, its content being kept.
+         *
+         * @param capacity the minimum capacity.
+         */
+        private void ensureNameCapacity(int capacity) {
+            if (capacity > nameBuffer.length) {
+                nameBuffer = Arrays.copyOf(nameBuffer, 2 * capacity);
+            }
+        }
+
+
+        /**
+         * Parses the integer of the given column.
+         *
+         * @param column the column.
+         * @return the integer.
+         * @throws NumberFormatException if the field is not a non negative integer.
+         */
+        private int parseInt(Columns column) {
+            int value = 0;
+            for (int i = start(column); i < fieldEnds[column.ordinal()]; ++i) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9 || value > (Integer.MAX_VALUE - digit) / 10) {
+                    return Integer.parseInt(string(column));
+                }
+                value = 10 * value + digit;
+            }
+            return value;
+        }
+
+
+        /**
+         * Parses the decimal number of the given column.
+         * The digits are accumulated in a long, the result being exact when the mantissa and the power of ten
+         * are both exactly represented by a double, which is the case of almost all the values of the database.
+         * The other values are delegated to Double.parseDouble, so that every result is correctly rounded.
+         *
+         * @param column the column.
+         * @return the number.
+         * @throws NumberFormatException if the field is not a number.
+         */
+        private double parseDouble(Columns column) {
+            int i = start(column);
+            int end = fieldEnds[column.ordinal()];
+
+            boolean negative = i < end && bytes[i] == '-';
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) ++i;
+
+            long mantissa = 0;
+            int exponent = 0;
+            int digits = 0;
+            boolean exact = true;
+            boolean fraction = false;
+            boolean anyDigit = false;
+
+            for (; i < end; ++i) {
+                byte b = bytes[i];
+                if (b == '.' && !fraction) {
+                    fraction = true;
+                    continue;
+                }
+                int digit = b - '0';
+                if (digit < 0 || digit > 9) break;
+                anyDigit = true;
+
+                if (mantissa < MAX_EXACT_MANTISSA / 10 + 1 && digits < 18) {
+                    mantissa = 10 * mantissa + digit;
+                    if (mantissa != 0) ++digits;
+                    if (fraction) --exponent;
+                } else {
+                    // The digit does not fit in the mantissa, it only scales the integer part.
+                    exact = false;
+                    if (!fraction) ++exponent;
+                }
+            }
+
+            if (i < end || !anyDigit || !exact || mantissa > MAX_EXACT_MANTISSA
+                    || Math.abs(exponent) > MAX_EXACT_POWER) {
+                return Double.parseDouble(string(column));
+            }
+
+            double value = (exponent < 0)
+                    ? mantissa / POWERS_OF_TEN[-exponent]
+                    : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+
+
+        /**
+         * Checks if the field of the given column is empty.
+         *
+         * @param column the column.
+         * @return true if the field is empty.
+         */
+        private boolean isEmpty(Columns column) {
+            return length(column) == 0;
+        }
+
+
+        /**
+         * Getter for the index of the beginning of the field of the given column.
+         *
+         * @param column the column.
+         * @return the index.
+         */
+        private int start(Columns column) {
+            return fieldStarts[column.ordinal()];
+        }
+
+
+        /**
+         * Getter for the length of the field of the given column.
+         *
+         * @param column the column.
+         * @return the length.
+         */
+        private int length(Columns column) {
+            return fieldEnds[column.ordinal()] - fieldStarts[column.ordinal()];
+        }
+
+
+        /**
+         * Builds the string of the field of the given column.
+         *
+         * @param column the column.
+         * @return the string.
+         */
+        private String string(Columns column) {
+            return new String(bytes, start(column), length(column), StandardCharsets.US_ASCII);
+        }
     }
 
 
@@ -0,0 +1,141 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * Map from int keys to int values, with open addressing and linear probing, which never boxes its keys nor its values.
+ * The keys and the values are stored in two arrays, whose capacity is a power of two at least twice the size of the map.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+final class IntIntMap {
+
+    // Marks the empty slots, this key cannot be stored.
+    private final static int EMPTY = Integer.MIN_VALUE;
+    private final static int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+
+    /**
+     * Constructor, creates an empty map with room for the given number of entries.
+     *
+     * @param expectedSize the expected number of entries.
+     */
+    IntIntMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expectedSize) capacity <<= 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+
+    /**
+     * Getter for the number of entries.
+     *
+     * @return the number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * Getter for the value associated with a key.
+     *
+     * @param key          the key.
+     * @param defaultValue the value returned if the key is absent.
+     * @return the value, or the default value.
+     */
+    int get(int key, int defaultValue) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return values[slot];
+            if (keys[slot] == EMPTY) return defaultValue;
+        }
+    }
+
+
+    /**
+     * Associates a value with a key, replacing the previous value if any.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @throws IllegalArgumentException if the key is Integer.MIN_VALUE.
+     */
+    void put(int key, int value) {
+        Preconditions.checkArgument(key != EMPTY);
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+
+        values[slot] = value;
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            if (2 * ++size > keys.length) grow();
+        }
+    }
+
+
+    /**
+     * Associates a value with a key, unless the key is already present.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @throws IllegalArgumentException if the key is Integer.MIN_VALUE.
+     */
+    void putIfAbsent(int key, int value) {
+        Preconditions.checkArgument(key != EMPTY);
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) return;
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (2 * ++size > keys.length) grow();
+    }
+
+
+    /**
+     * Doubles the capacity, inserting the entries again.
+     */
+    private void grow() {
+        int[] oldKeys = keys, oldValues = values;
+        keys = new int[2 * oldKeys.length];
+        values = new int[2 * oldValues.length];
+        Arrays.fill(keys, EMPTY);
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i], mask);
+                while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+
+    /**
+     * Computes the first slot of a key, its bits being mixed so that consecutive keys are spread over the arrays.
+     *
+     * @param key  the key.
+     * @param mask the capacity minus one.
+     * @return the slot.
+     */
+    private static int slot(int key, int mask) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+}
@@ -33,6 +33,16 @@ public final class Moon extends CelestialObject {
     }
 
 
+    /**
+     * Getter for the phase of the Moon, i.e its illuminated fraction.
+     *
+     * @return the phase, between 0 and 1.
+     */
+    public double phase() {
+        return phase;
+    }
+
+
     /**
      * Override info method.
      *
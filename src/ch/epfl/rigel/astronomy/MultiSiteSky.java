@@ -0,0 +1,239 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.Parallelism;
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.math.Angle;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.lang.Math.*;
+
+/**
+ * Skies observed from several places at the same instant, in horizontal coordinates.
+ * The parts of the sky which only depend on the instant (the ephemeris, and the unit vectors of the stars and of the
+ * bodies in the equatorial frame) are computed once, then the horizontal positions are computed for each site,
+ * in parallel when several processors are available.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class MultiSiteSky {
+
+    private final Ephemeris ephemeris;
+    private final List<GeographicCoordinates> sites;
+    private final int[] starIndices;
+    // Positions of the stars and of the bodies for each site, azimuth then altitude for each object, in radians.
+    private final double[][] starPositions, bodyPositions;
+
+
+    /**
+     * Private constructor.
+     *
+     * @param ephemeris     the ephemeris at the observation instant.
+     * @param sites         the observation sites.
+     * @param starIndices   the catalogue indices of the observed stars.
+     * @param starPositions the positions of the stars for each site.
+     * @param bodyPositions the positions of the bodies for each site.
+     */
+    private MultiSiteSky(Ephemeris ephemeris, List<GeographicCoordinates> sites, int[] starIndices,
+                         double[][] starPositions, double[][] bodyPositions) {
+        this.ephemeris = ephemeris;
+        this.sites = sites;
+        this.starIndices = starIndices;
+        this.starPositions = starPositions;
+        this.bodyPositions = bodyPositions;
+    }
+
+
+    /**
+     * Computes the skies observed from the given sites at the given instant, the ephemeris being taken from the
+     * shared ephemeris cache.
+     *
+     * @param when              the observation instant.
+     * @param sites             the observation sites.
+     * @param catalogue         the catalogue of the stars.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @return the skies observed from the sites.
+     */
+    public static MultiSiteSky compute(ZonedDateTime when, List<GeographicCoordinates> sites, StarCatalogue catalogue, double limitingMagnitude) {
+        return compute(EphemerisCache.SHARED.at(when), sites, catalogue, limitingMagnitude);
+    }
+
+
+    /**
+     * Computes the skies observed from the given sites at the instant of the given ephemeris.
+     *
+     * @param ephemeris         the ephemeris at the observation instant.
+     * @param sites             the observation sites.
+     * @param catalogue         the catalogue of the stars.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @return the skies observed from the sites.
+     */
+    public static MultiSiteSky compute(Ephemeris ephemeris, List<GeographicCoordinates> sites, StarCatalogue catalogue, double limitingMagnitude) {
+        List<GeographicCoordinates> siteList = List.copyOf(sites);
+
+        //Location independent parts: the observed stars, and the unit vectors of the stars and of the bodies.
+        StarColumns columns = catalogue.columns();
+        int tierEnd = columns.tierEnd(limitingMagnitude);
+        int[] indices = new int[tierEnd];
+        int count = 0;
+        for (int i = 0; i < tierEnd; ++i) {
+            if (columns.magnitude(i) <= limitingMagnitude) indices[count++] = i;
+        }
+        int[] starIndices = (count == tierEnd) ? indices : Arrays.copyOf(indices, count);
+
+        double[] starVectors = new double[3 * count];
+        for (int i = 0; i < count; ++i) {
+            putUnitVector(starVectors, i, columns.ra(starIndices[i]), columns.dec(starIndices[i]));
+        }
+
+        List<CelestialObject> bodies = new ArrayList<>(2 + ephemeris.planets().size());
+        bodies.add(ephemeris.sun());
+        bodies.add(ephemeris.moon());
+        bodies.addAll(ephemeris.planets());
+        double[] bodyVectors = new double[3 * bodies.size()];
+        for (int i = 0; i < bodies.size(); ++i) {
+            EquatorialCoordinates equ = bodies.get(i).equatorialPos();
+            putUnitVector(bodyVectors, i, equ.ra(), equ.dec());
+        }
+
+        //Location dependent parts, fanned out over the sites.
+        List<CompletableFuture<double[][]>> tasks = new ArrayList<>(siteList.size());
+        for (GeographicCoordinates site : siteList) {
+            double siderealLocal = ephemeris.greenwichSiderealTime() + site.lon();
+            tasks.add(Parallelism.supply(() -> positionsAt(siderealLocal, site.lat(), starVectors, bodyVectors)));
+        }
+
+        double[][] starPositions = new double[siteList.size()][];
+        double[][] bodyPositions = new double[siteList.size()][];
+        for (int s = 0; s < tasks.size(); ++s) {
+            double[][] positions = Parallelism.join(tasks.get(s));
+            starPositions[s] = positions[0];
+            bodyPositions[s] = positions[1];
+        }
+
+        return new MultiSiteSky(ephemeris, siteList, starIndices, starPositions, bodyPositions);
+    }
+
+
+    /**
+     * Getter for the ephemeris at the observation instant.
+     *
+     * @return the ephemeris.
+     */
+    public Ephemeris ephemeris() {
+        return ephemeris;
+    }
+
+
+    /**
+     * Getter for the observation sites.
+     *
+     * @return an immutable list of the sites, in the order of the positions.
+     */
+    public List<GeographicCoordinates> sites() {
+        return sites;
+    }
+
+
+    /**
+     * Getter for the catalogue indices of the observed stars.
+     *
+     * @return the indices, in the order of the star positions.
+     */
+    public int[] starIndices() {
+        return starIndices.clone();
+    }
+
+
+    /**
+     * Getter for the positions of the observed stars from a site.
+     *
+     * @param site the index of the site.
+     * @return the azimuth then the altitude of each star, in radians.
+     * @throws IndexOutOfBoundsException if the index is not the one of a site.
+     */
+    public double[] starPositions(int site) {
+        return starPositions[site].clone();
+    }
+
+
+    /**
+     * Getter for the positions of the Sun, the moon and the planets (in the order of the ephemeris) from a site.
+     *
+     * @param site the index of the site.
+     * @return the azimuth then the altitude of each body, in radians.
+     * @throws IndexOutOfBoundsException if the index is not the one of a site.
+     */
+    public double[] bodyPositions(int site) {
+        return bodyPositions[site].clone();
+    }
+
+
+    /**
+     * Computes the horizontal positions of the stars and of the bodies from a site.
+     * The unit vectors are rotated by the local sidereal time, then expressed in the north, east and zenith directions.
+     *
+     * @param siderealLocal the local sidereal time of the site.
+     * @param lat           the latitude of the site.
+     * @param starVectors   the unit vectors of the stars.
+     * @param bodyVectors   the unit vectors of the bodies.
+     * @return the positions of the stars, then of the bodies.
+     */
+    private static double[][] positionsAt(double siderealLocal, double lat, double[] starVectors, double[] bodyVectors) {
+        double sinL = sin(siderealLocal), cosL = cos(siderealLocal);
+        double sinPhi = sin(lat), cosPhi = cos(lat);
+        return new double[][]{
+                horizontalPositions(starVectors, sinL, cosL, sinPhi, cosPhi),
+                horizontalPositions(bodyVectors, sinL, cosL, sinPhi, cosPhi)};
+    }
+
+
+    /**
+     * Converts unit vectors of the equatorial frame to horizontal positions.
+     *
+     * @param vectors the unit vectors, x, y and z for each object.
+     * @param sinL    the sinus of the local sidereal time.
+     * @param cosL    the cosinus of the local sidereal time.
+     * @param sinPhi  the sinus of the latitude.
+     * @param cosPhi  the cosinus of the latitude.
+     * @return the azimuth then the altitude of each object, in radians.
+     */
+    private static double[] horizontalPositions(double[] vectors, double sinL, double cosL, double sinPhi, double cosPhi) {
+        double[] positions = new double[2 * (vectors.length / 3)];
+        for (int i = 0; i < vectors.length / 3; ++i) {
+            double x = vectors[3 * i], y = vectors[3 * i + 1], z = vectors[3 * i + 2];
+            // Components along the meridian of the site (towards the hour angle 0) and towards the west.
+            double meridian = cosL * x + sinL * y;
+            double west = sinL * x - cosL * y;
+
+            double north = cosPhi * z - sinPhi * meridian;
+            double up = sinPhi * z + cosPhi * meridian;
+            positions[2 * i] = Angle.normalizePositive(atan2(-west, north));
+            positions[2 * i + 1] = asin(max(-1, min(1, up)));
+        }
+        return positions;
+    }
+
+
+    /**
+     * Writes the unit vector of the given equatorial position.
+     *
+     * @param vectors the unit vectors.
+     * @param index   the index of the vector.
+     * @param ra      the right ascension.
+     * @param dec     the declination.
+     */
+    private static void putUnitVector(double[] vectors, int index, double ra, double dec) {
+        double cosDec = cos(dec);
+        vectors[3 * index] = cosDec * cos(ra);
+        vectors[3 * index + 1] = cosDec * sin(ra);
+        vectors[3 * index + 2] = sin(dec);
+    }
+
+}
@@ -0,0 +1,176 @@
+package ch.epfl.rigel.astronomy;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Arena storing the names of many stars in a single byte array, with a column of offsets and a column of lengths.
+ * The names are encoded in UTF-8, i.e one byte per character for the ASCII names of the catalogues, and are only
+ * materialized as strings on demand. The short names, which repeat the most (e.g "? Ori"), are stored once,
+ * through a small dictionary.
+ * <p>
+ * An arena is filled by a single thread; the names already added never change, and can then be read concurrently
+ * once the arena is safely published.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+final class NameArena {
+
+    // Maximum length of the names looked up in the dictionary, longer ones are hardly ever repeated.
+    private final static int DEDUPLICATED_MAX_LENGTH = 8;
+    private final static int INITIAL_CAPACITY = 64;
+
+    private byte[] bytes = new byte[16 * INITIAL_CAPACITY];
+    private int byteCount;
+
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Identifiers plus one of the short names, by open addressing on their hash, 0 marking an empty slot.
+    private int[] dictionary = new int[INITIAL_CAPACITY];
+    private int dictionarySize;
+
+
+    /**
+     * Adds a name given by its bytes.
+     *
+     * @param name   the bytes containing the name, in UTF-8.
+     * @param offset the offset of the name in the bytes.
+     * @param length the length of the name, in bytes.
+     * @return the identifier of the name, shared with an identical short name added before.
+     */
+    int add(byte[] name, int offset, int length) {
+        if (length > DEDUPLICATED_MAX_LENGTH) return append(name, offset, length);
+
+        int mask = dictionary.length - 1;
+        int slot = hash(name, offset, length) & mask;
+        while (dictionary[slot] != 0) {
+            int id = dictionary[slot] - 1;
+            if (Arrays.equals(bytes, offsets[id], offsets[id] + lengths[id], name, offset, offset + length)) return id;
+            slot = (slot + 1) & mask;
+        }
+
+        int id = append(name, offset, length);
+        dictionary[slot] = id + 1;
+        if (2 * ++dictionarySize > dictionary.length) growDictionary();
+        return id;
+    }
+
+
+    /**
+     * Adds a name.
+     *
+     * @param name the name.
+     * @return the identifier of the name, shared with an identical short name added before.
+     */
+    int add(String name) {
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        return add(encoded, 0, encoded.length);
+    }
+
+
+    /**
+     * Materializes a name.
+     *
+     * @param id the identifier of the name.
+     * @return a new string containing the name.
+     */
+    String name(int id) {
+        return new String(bytes, offsets[id], lengths[id], StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Getter for the number of distinct names stored.
+     *
+     * @return the number of names.
+     */
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * Getter for the number of bytes of the names stored.
+     *
+     * @return the number of bytes.
+     */
+    int byteCount() {
+        return byteCount;
+    }
+
+
+    /**
+     * Releases the unused capacity, once all the names are added. The dictionary is dropped, the names added
+     * afterwards are no longer deduplicated.
+     */
+    void trim() {
+        bytes = Arrays.copyOf(bytes, byteCount);
+        offsets = Arrays.copyOf(offsets, size);
+        lengths = Arrays.copyOf(lengths, size);
+        dictionary = new int[INITIAL_CAPACITY];
+        dictionarySize = 0;
+    }
+
+
+    /**
+     * Appends a name at the end of the arena, growing its arrays if needed.
+     *
+     * @param name   the bytes containing the name.
+     * @param offset the offset of the name in the bytes.
+     * @param length the length of the name.
+     * @return the identifier of the name.
+     */
+    private int append(byte[] name, int offset, int length) {
+        if (byteCount + length > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, byteCount + length));
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(2 * size, INITIAL_CAPACITY));
+            lengths = Arrays.copyOf(lengths, Math.max(2 * size, INITIAL_CAPACITY));
+        }
+
+        System.arraycopy(name, offset, bytes, byteCount, length);
+        offsets[size] = byteCount;
+        lengths[size] = length;
+        byteCount += length;
+        return size++;
+    }
+
+
+    /**
+     * Doubles the capacity of the dictionary, inserting its names again.
+     */
+    private void growDictionary() {
+        int[] old = dictionary;
+        dictionary = new int[2 * old.length];
+        int mask = dictionary.length - 1;
+        for (int entry : old) {
+            if (entry != 0) {
+                int id = entry - 1;
+                int slot = hash(bytes, offsets[id], lengths[id]) & mask;
+                while (dictionary[slot] != 0) slot = (slot + 1) & mask;
+                dictionary[slot] = entry;
+            }
+        }
+    }
+
+
+    /**
+     * Computes the hash of a name, its bits being mixed so that similar names are spread over the dictionary.
+     *
+     * @param name   the bytes containing the name.
+     * @param offset the offset of the name in the bytes.
+     * @param length the length of the name.
+     * @return the hash.
+     */
+    private static int hash(byte[] name, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; ++i) {
+            hash = 31 * hash + name[i];
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
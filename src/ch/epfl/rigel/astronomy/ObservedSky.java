@@ -1,11 +1,13 @@
 package ch.epfl.rigel.astronomy;
 
 import ch.epfl.rigel.coordinates.*;
+import ch.epfl.rigel.monitoring.PickEvent;
+import ch.epfl.rigel.monitoring.SkyComputationEvent;
+import jdk.jfr.EventType;
 
 import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Class which represents a set of celestial objects using a specific stereographic projection,
@@ -16,26 +18,31 @@ import java.util.stream.Collectors;
  */
 public final class ObservedSky {
 
+    // Types of the sky computation and pick events, enabled while a recording asks for them.
+    private final static EventType SKY_COMPUTATION_EVENT_TYPE = EventType.getEventType(SkyComputationEvent.class);
+    private final static EventType PICK_EVENT_TYPE = EventType.getEventType(PickEvent.class);
+
     private final StarCatalogue catalogue;
     private final StereographicProjection stereoProj;
 
-    //Map that includes all the celestial objects of the observed sky and their respective coordinates.
-    private final HashMap<CelestialObject, CartesianCoordinates> celestialToCoordinates = new HashMap<>();
-
     private final Sun sun;
     private final CartesianCoordinates sunCarCoords;
 
     private final Moon moon;
     private final CartesianCoordinates moonCarCoords;
 
-    private final static List<PlanetModel> PLANET_MODELS = PlanetModel.ALL;
-
     private final List<Planet> planetsList = new ArrayList<>();
     private final double[] planetCoords;
 
     private final List<Star> starsList;
     private final double[] starCoords;
 
+    //Asterisms whose stars are all observed, with their indices in the observed stars list; null if all the stars are observed.
+    private final Map<Asterism, List<Integer>> asterismIndices;
+
+    //Flat table of the indices of the stars of the observed asterisms, in the observed stars list.
+    private final AsterismPolylines asterismPolylines;
+
 
     /**
      * Constructor which creates the representation of the moon, the Sun,
@@ -48,55 +55,275 @@ public final class ObservedSky {
      * @param catalogue  the catalogue which includes the stars and the asterisms.
      */
     public ObservedSky(ZonedDateTime obsTime, GeographicCoordinates obsCoords, StereographicProjection stereoProj, StarCatalogue catalogue) {
-        double daysSinceJ2010 = Epoch.J2010.daysUntil(obsTime);
+        this(obsTime, obsCoords, stereoProj, catalogue, Double.POSITIVE_INFINITY);
+    }
+
+
+    /**
+     * Constructor which creates the representation of the moon, the Sun,
+     * the planets (except the Earth) and the stars of the catalogue up to the given magnitude,
+     * and the respective projected coordinates for each celestial object.
+     * Only the magnitude tiers in use are read, and only the asterisms whose stars are all observed are kept.
+     *
+     * @param obsTime           the observation moment.
+     * @param obsCoords         the observation position (in geographic coordinates).
+     * @param stereoProj        the stereographic projection to employ.
+     * @param catalogue         the catalogue which includes the stars and the asterisms.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     */
+    public ObservedSky(ZonedDateTime obsTime, GeographicCoordinates obsCoords, StereographicProjection stereoProj, StarCatalogue catalogue, double limitingMagnitude) {
+        this(obsTime, obsCoords, stereoProj, catalogue, limitingMagnitude, Math.PI);
+    }
+
+
+    /**
+     * Constructor which creates the representation of the moon, the Sun,
+     * the planets (except the Earth) and the stars of the catalogue up to the given magnitude lying in the view,
+     * and the respective projected coordinates for each celestial object.
+     * The view is the cone of the given radius around the center of the projection: the stars outside of it are found
+     * with the sky partition of the catalogue, and are neither read nor projected.
+     * The asterisms crossing the view are kept with all their stars, so that their lines leaving the view are drawn.
+     * The Sun, the moon and the planets are taken from the shared ephemeris cache.
+     *
+     * @param obsTime           the observation moment.
+     * @param obsCoords         the observation position (in geographic coordinates).
+     * @param stereoProj        the stereographic projection to employ.
+     * @param catalogue         the catalogue which includes the stars and the asterisms.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @param viewRadius        the angular radius of the view, in radians, pi or more for the whole sky.
+     */
+    public ObservedSky(ZonedDateTime obsTime, GeographicCoordinates obsCoords, StereographicProjection stereoProj, StarCatalogue catalogue, double limitingMagnitude, double viewRadius) {
+        this(EphemerisCache.SHARED.at(obsTime), obsCoords, stereoProj, catalogue, limitingMagnitude, viewRadius);
+    }
+
+
+    /**
+     * Constructor which creates the representation of the sky observed from the given position, at the instant of
+     * the given ephemeris: the Sun, the moon and the planets of the ephemeris are only projected, so that an
+     * ephemeris can be shared by the skies observed from several positions.
+     *
+     * @param ephemeris         the ephemeris at the observation moment.
+     * @param obsCoords         the observation position (in geographic coordinates).
+     * @param stereoProj        the stereographic projection to employ.
+     * @param catalogue         the catalogue which includes the stars and the asterisms.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @param viewRadius        the angular radius of the view, in radians, pi or more for the whole sky.
+     */
+    public ObservedSky(Ephemeris ephemeris, GeographicCoordinates obsCoords, StereographicProjection stereoProj, StarCatalogue catalogue, double limitingMagnitude, double viewRadius) {
+        // The event is only created while a recording asks for it.
+        SkyComputationEvent event = SKY_COMPUTATION_EVENT_TYPE.isEnabled() ? new SkyComputationEvent() : null;
+        if (event != null) event.begin();
+
         this.stereoProj = stereoProj;
         this.catalogue = catalogue;
 
-        EclipticToEquatorialConversion eclConversion = new EclipticToEquatorialConversion(obsTime);
-        EquatorialToHorizontalConversion eqConversion = new EquatorialToHorizontalConversion(obsTime, obsCoords);
+        EquatorialToHorizontalConversion eqConversion = new EquatorialToHorizontalConversion(ephemeris.greenwichSiderealTime(), obsCoords);
 
         //Sun representation and its projected coordinates.
-        sun = SunModel.SUN.at(daysSinceJ2010, eclConversion);
+        sun = ephemeris.sun();
         sunCarCoords = cartesianCoordinatesOf(sun, eqConversion);
-        celestialToCoordinates.put(sun, sunCarCoords);
 
         //Moon representation and its projected coordinates.
-        moon = MoonModel.MOON.at(daysSinceJ2010, eclConversion);
+        moon = ephemeris.moon();
         moonCarCoords = cartesianCoordinatesOf(moon, eqConversion);
-        celestialToCoordinates.put(moon, moonCarCoords);
 
 
         //Planet representations and their projected coordinates.
-        int planetsSize = PLANET_MODELS.size();
-        planetCoords = new double[2 * (planetsSize - 1)];
-
-        int index = 0;
-        for (PlanetModel planetModel : PLANET_MODELS) {
-            if (!planetModel.equals(PlanetModel.EARTH)) {
-
-                Planet planet = planetModel.at(daysSinceJ2010, eclConversion);
-                planetsList.add(planet);
-                CartesianCoordinates cartCoords = cartesianCoordinatesOf(planet, eqConversion);
-                planetCoords[2 * index] = cartCoords.x();
-                planetCoords[2 * index + 1] = cartCoords.y();
-                celestialToCoordinates.put(planet, cartCoords);
-                ++index;
-            }
+        planetsList.addAll(ephemeris.planets());
+        planetCoords = new double[2 * planetsList.size()];
+
+        for (int index = 0; index < planetsList.size(); ++index) {
+            CartesianCoordinates cartCoords = cartesianCoordinatesOf(planetsList.get(index), eqConversion);
+            planetCoords[2 * index] = cartCoords.x();
+            planetCoords[2 * index + 1] = cartCoords.y();
         }
 
 
         //Star representations and their projected coordinates.
-        starsList = catalogue.stars();
-        int starListSize = starsList.size();
-        starCoords = new double[2 * starListSize];
-
-        for (int i = 0; i < starListSize; ++i) {
-            Star star = starsList.get(i);
-            CartesianCoordinates cartCoords = cartesianCoordinatesOf(star, eqConversion);
-            starCoords[2 * i] = cartCoords.x();
-            starCoords[2 * i + 1] = cartCoords.y();
-            celestialToCoordinates.put(star, cartCoords);
+        StarColumns columns = catalogue.columns();
+        List<Star> catalogueStars = catalogue.stars();
+        int tierEnd = columns.tierEnd(limitingMagnitude);
+
+        List<Star> observedStars = new ArrayList<>();
+
+        if (viewRadius < Math.PI) {
+            EquatorialCoordinates viewCenter = eqConversion.inverseApply(stereoProj.getCenter());
+            Map<Asterism, List<Integer>> observedAsterisms = new HashMap<>();
+            int[] visible = visibleStars(catalogue, viewCenter, viewRadius, tierEnd, limitingMagnitude, observedAsterisms);
+
+            double[] coords = new double[2 * visible.length];
+            for (int i : visible) {
+                observeStar(catalogueStars.get(i), eqConversion, observedStars, coords);
+            }
+
+            starsList = Collections.unmodifiableList(observedStars);
+            starCoords = coords;
+            asterismIndices = observedAsterisms;
+        } else {
+            double[] coords = new double[2 * tierEnd];
+            // Indices of the catalogue stars in the observed stars list, -1 if not observed; null while both indices are equal.
+            int[] localIndices = null;
+
+            for (int i = 0; i < tierEnd; ++i) {
+                if (columns.magnitude(i) <= limitingMagnitude) {
+                    if (localIndices != null) localIndices[i] = observedStars.size();
+                    observeStar(catalogueStars.get(i), eqConversion, observedStars, coords);
+                } else {
+                    if (localIndices == null) {
+                        localIndices = new int[tierEnd];
+                        Arrays.setAll(localIndices, j -> j);
+                    }
+                    localIndices[i] = -1;
+                }
+            }
+
+            if (observedStars.size() == catalogueStars.size()) {
+                starsList = catalogueStars;
+                starCoords = coords;
+                asterismIndices = null;
+            } else {
+                starsList = Collections.unmodifiableList(observedStars);
+                starCoords = Arrays.copyOf(coords, 2 * observedStars.size());
+                asterismIndices = observedAsterisms(catalogue, tierEnd, localIndices);
+            }
         }
+
+        asterismPolylines = (asterismIndices == null) ? catalogue.asterismPolylines() : new AsterismPolylines(asterismIndices);
+
+        if (event != null) event.complete(2 + planetsList.size() + starsList.size());
+    }
+
+
+    /**
+     * Constructor which creates a frame of the given observed sky, at another moment: the frame has the same stars
+     * and asterisms, but the given celestial objects and projected coordinates.
+     *
+     * @param template      the observed sky whose stars and asterisms are kept.
+     * @param stereoProj    the stereographic projection employed by the frame.
+     * @param sun           the Sun.
+     * @param sunCarCoords  the cartesian coordinates of the Sun projection.
+     * @param moon          the moon.
+     * @param moonCarCoords the cartesian coordinates of the moon projection.
+     * @param planets       the planets, in the order of the planet models.
+     * @param planetCoords  the coordinates of the planet projections, x then y for each planet.
+     * @param starCoords    the coordinates of the star projections, in the order of the stars of the template.
+     */
+    ObservedSky(ObservedSky template, StereographicProjection stereoProj, Sun sun, CartesianCoordinates sunCarCoords, Moon moon,
+                CartesianCoordinates moonCarCoords, List<Planet> planets, double[] planetCoords, double[] starCoords) {
+        this.catalogue = template.catalogue;
+        this.stereoProj = stereoProj;
+        this.sun = sun;
+        this.sunCarCoords = sunCarCoords;
+        this.moon = moon;
+        this.moonCarCoords = moonCarCoords;
+        this.planetsList.addAll(planets);
+        this.planetCoords = planetCoords;
+        this.starsList = template.starsList;
+        this.starCoords = starCoords;
+        this.asterismIndices = template.asterismIndices;
+        this.asterismPolylines = template.asterismPolylines;
+    }
+
+
+    /**
+     * Projects a star, and appends it to the observed stars.
+     *
+     * @param star          the star.
+     * @param eqConversion  the equatorial to horizontal conversion.
+     * @param observedStars the observed stars.
+     * @param coords        the coordinates of the observed stars, with room for the star.
+     */
+    private void observeStar(Star star, EquatorialToHorizontalConversion eqConversion, List<Star> observedStars, double[] coords) {
+        CartesianCoordinates cartCoords = cartesianCoordinatesOf(star, eqConversion);
+        coords[2 * observedStars.size()] = cartCoords.x();
+        coords[2 * observedStars.size() + 1] = cartCoords.y();
+        observedStars.add(star);
+    }
+
+
+    /**
+     * Finds the stars up to the given magnitude lying in the view, followed by the other stars of the asterisms crossing it.
+     *
+     * @param catalogue         the catalogue.
+     * @param viewCenter        the center of the view.
+     * @param viewRadius        the angular radius of the view.
+     * @param tierEnd           the end of the magnitude tier of the catalogue.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @param observedAsterisms the map filled with the asterisms crossing the view, whose stars are all bright enough,
+     *                          with the indices of their stars in the observed stars list.
+     * @return the catalogue indices of the observed stars, in their order in the observed stars list.
+     */
+    private static int[] visibleStars(StarCatalogue catalogue, EquatorialCoordinates viewCenter, double viewRadius, int tierEnd,
+                                      double limitingMagnitude, Map<Asterism, List<Integer>> observedAsterisms) {
+        StarColumns columns = catalogue.columns();
+        int[] inView = catalogue.coneSearch(viewCenter, viewRadius);
+
+        int[] observed = new int[inView.length];
+        int count = 0;
+        // Indices of the catalogue stars in the observed stars list, without boxing them.
+        IntIntMap localIndices = new IntIntMap(inView.length);
+
+        for (int index : inView) {
+            if (index < tierEnd && columns.magnitude(index) <= limitingMagnitude) {
+                localIndices.put(index, count);
+                observed[count++] = index;
+            }
+        }
+
+        for (Asterism asterism : catalogue.asterisms()) {
+            List<Integer> indices = catalogue.asterismIndices(asterism);
+            boolean crossesView = false;
+            boolean bright = true;
+            for (int index : indices) {
+                crossesView |= localIndices.get(index, -1) != -1;
+                bright &= index < tierEnd && columns.magnitude(index) <= limitingMagnitude;
+            }
+            if (!crossesView || !bright) continue;
+
+            List<Integer> observedIndices = new ArrayList<>(indices.size());
+            for (int index : indices) {
+                int localIndex = localIndices.get(index, -1);
+                if (localIndex == -1) {
+                    localIndex = count;
+                    localIndices.put(index, localIndex);
+                    if (count == observed.length) observed = Arrays.copyOf(observed, 2 * count + indices.size());
+                    observed[count++] = index;
+                }
+                observedIndices.add(localIndex);
+            }
+            observedAsterisms.put(asterism, Collections.unmodifiableList(observedIndices));
+        }
+
+        return Arrays.copyOf(observed, count);
+    }
+
+
+    /**
+     * Finds the asterisms whose stars are all observed, and the indices of their stars in the observed stars list.
+     *
+     * @param catalogue    the catalogue.
+     * @param tierEnd      the number of catalogue stars read.
+     * @param localIndices the indices of the catalogue stars in the observed stars list, -1 if not observed;
+     *                     null if the indices are the same in both lists.
+     * @return the observed asterisms, with the indices of their stars.
+     */
+    private static Map<Asterism, List<Integer>> observedAsterisms(StarCatalogue catalogue, int tierEnd, int[] localIndices) {
+        Map<Asterism, List<Integer>> observed = new HashMap<>();
+
+        for (Asterism asterism : catalogue.asterisms()) {
+            List<Integer> indices = catalogue.asterismIndices(asterism);
+            List<Integer> observedIndices = new ArrayList<>(indices.size());
+
+            for (int index : indices) {
+                int localIndex = (index >= tierEnd) ? -1 : (localIndices == null) ? index : localIndices[index];
+                if (localIndex == -1) break;
+                observedIndices.add(localIndex);
+            }
+            if (observedIndices.size() == indices.size()) {
+                observed.put(asterism, Collections.unmodifiableList(observedIndices));
+            }
+        }
+        return observed;
     }
 
 
@@ -198,25 +425,39 @@ public final class ObservedSky {
 
 
     /**
-     * Getter for the asterisms list (as a set).
+     * Getter for the asterisms list (as a set), i.e the asterisms of the catalogue whose stars are all observed.
      *
      * @return an immutable copy of the asterisms set.
      * @see StarCatalogue#asterisms()
      */
     public Set<Asterism> asterisms() {
-        return catalogue.asterisms();
+        return (asterismIndices == null) ? catalogue.asterisms() : Collections.unmodifiableSet(asterismIndices.keySet());
     }
 
     /**
-     * Getter for the star indexes of the given asterism.
+     * Getter for the star indexes of the given asterism, in the observed stars list.
      *
      * @param asterism the asterism.
      * @return the stars indexes of the given asterism.
-     * @throws IllegalArgumentException if the given asterism is not included in the asterisms list of the star catalogue.
+     * @throws IllegalArgumentException if the given asterism is not included in the asterisms list of the observed sky.
      * @see StarCatalogue#asterismIndices(Asterism)
      */
     public List<Integer> asterismIndices(Asterism asterism) {
-        return catalogue.asterismIndices(asterism);
+        if (asterismIndices == null) return catalogue.asterismIndices(asterism);
+        if (!asterismIndices.containsKey(asterism))
+            throw new IllegalArgumentException("The given asterism is not included in the observed asterisms.");
+        return asterismIndices.get(asterism);
+    }
+
+
+    /**
+     * Getter for the flat table of the observed asterisms, whose star indices are the indices in the observed stars list.
+     *
+     * @return the table.
+     * @see #asterismIndices(Asterism)
+     */
+    public AsterismPolylines asterismPolylines() {
+        return asterismPolylines;
     }
 
 
@@ -230,39 +471,57 @@ public final class ObservedSky {
      * or a cell containing the closest object to the cartCoords.
      */
     public Optional<CelestialObject> objectClosestTo(CartesianCoordinates cartCoords, double maxDistance) {
-
-        /* filteredCelestToCoord is a map which includes a selection of celestial objects within an illustrative distance,
-        in order to reduce later the number of slower (but necessary) operations computed by the computeDistance method.
-
-        A stream is used to filter the celestial objects map. The collect method then allows the construction of the filtered map.
-        The filter predicate states that the object's abscissa and ordinate coordinates must respectively be at most maxDistance away
-        from the given cartesian coordinates in the argument.
-        */
-
-        Map<CelestialObject, CartesianCoordinates> filteredCelestToCoords =
-                celestialToCoordinates.entrySet()
-                        .stream()
-                        .filter(map -> Math.abs(map.getValue().x() - cartCoords.x()) <= maxDistance
-                                    && Math.abs(map.getValue().y() - cartCoords.y()) <= maxDistance)
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        // The event is only created, and the name of the object only materialized, while a recording asks for them.
+        PickEvent event = PICK_EVENT_TYPE.isEnabled() ? new PickEvent() : null;
+        if (event != null) event.begin();
 
         CelestialObject closestObject = null;
         //Temporary squared distance that decreases according to the distance to the current closest object.
         double closestDistanceSquared = maxDistance * maxDistance;
         double currentObjectDistance;
 
-        if (!filteredCelestToCoords.isEmpty()) {
-            for (Map.Entry<CelestialObject, CartesianCoordinates> entry : filteredCelestToCoords.entrySet()) {
+        /* The objects are scanned in the coordinate arrays, those whose abscissa or ordinate is more than maxDistance away
+        from the given cartesian coordinates being skipped before computing their distance. */
 
-                if ((currentObjectDistance = entry.getValue().distanceSquared(cartCoords)) <= closestDistanceSquared) {
-                    closestDistanceSquared = currentObjectDistance;
-                    closestObject = entry.getKey();
-                }
+        if ((currentObjectDistance = distanceSquared(sunCarCoords.x(), sunCarCoords.y(), cartCoords, maxDistance)) <= closestDistanceSquared) {
+            closestDistanceSquared = currentObjectDistance;
+            closestObject = sun;
+        }
+        if ((currentObjectDistance = distanceSquared(moonCarCoords.x(), moonCarCoords.y(), cartCoords, maxDistance)) <= closestDistanceSquared) {
+            closestDistanceSquared = currentObjectDistance;
+            closestObject = moon;
+        }
+        for (int i = 0; i < planetsList.size(); ++i) {
+            if ((currentObjectDistance = distanceSquared(planetCoords[2 * i], planetCoords[2 * i + 1], cartCoords, maxDistance)) <= closestDistanceSquared) {
+                closestDistanceSquared = currentObjectDistance;
+                closestObject = planetsList.get(i);
+            }
+        }
+        for (int i = 0; i < starsList.size(); ++i) {
+            if ((currentObjectDistance = distanceSquared(starCoords[2 * i], starCoords[2 * i + 1], cartCoords, maxDistance)) <= closestDistanceSquared) {
+                closestDistanceSquared = currentObjectDistance;
+                closestObject = starsList.get(i);
             }
-            return (closestObject == null) ? Optional.empty() : Optional.of(closestObject);
-        } else {
-            return Optional.empty();
         }
+
+        if (event != null && event.shouldCommit()) event.complete(closestObject == null ? null : closestObject.name());
+        return Optional.ofNullable(closestObject);
+    }
+
+
+    /**
+     * Computes the squared distance between a projected object and the given cartesian coordinates.
+     *
+     * @param x           the abscissa of the object.
+     * @param y           the ordinate of the object.
+     * @param cartCoords  the cartesian coordinates.
+     * @param maxDistance the maximum distance.
+     * @return the squared distance, or infinity if the abscissa or the ordinate is more than maxDistance away.
+     */
+    private static double distanceSquared(double x, double y, CartesianCoordinates cartCoords, double maxDistance) {
+        double dx = x - cartCoords.x();
+        double dy = y - cartCoords.y();
+        return (Math.abs(dx) <= maxDistance && Math.abs(dy) <= maxDistance) ? dx * dx + dy * dy : Double.POSITIVE_INFINITY;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.Preconditions;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.coordinates.HorizontalCoordinates;
+import ch.epfl.rigel.coordinates.StereographicProjection;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of the last observed skies, keyed by the instant, the observer location, the projection center,
+ * the catalogue, the limiting magnitude and the view radius, so that going back to a previous state of the sky,
+ * e.g when the time is stepped forth and back, finds the sky instead of computing it again.
+ * A sky whose projection center is close enough to the asked one can also be accepted, e.g one computed in advance
+ * for a predicted view. The least recently used sky is evicted when the cache is full. The cache is thread safe.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class ObservedSkyCache {
+
+    private final Map<Key, ObservedSky> frames;
+    private long hits, misses;
+
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the maximum number of skies kept.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public ObservedSkyCache(int capacity) {
+        Preconditions.checkArgument(capacity > 0);
+        frames = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ObservedSky> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+
+    /**
+     * Gives the observed sky, computing it only if it is not cached.
+     * The parameters are the ones of the corresponding constructor of {@link ObservedSky}.
+     *
+     * @param obsTime           the observation moment.
+     * @param obsCoords         the observation position (in geographic coordinates).
+     * @param stereoProj        the stereographic projection to employ.
+     * @param catalogue         the catalogue which includes the stars and the asterisms.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @param viewRadius        the angular radius of the view, in radians, pi or more for the whole sky.
+     * @return the observed sky.
+     */
+    public ObservedSky observedSky(ZonedDateTime obsTime, GeographicCoordinates obsCoords, StereographicProjection stereoProj,
+                                   StarCatalogue catalogue, double limitingMagnitude, double viewRadius) {
+        return observedSky(obsTime, obsCoords, stereoProj, catalogue, limitingMagnitude, viewRadius, 0);
+    }
+
+
+    /**
+     * Gives the observed sky, or a cached sky whose projection center is at most at the given angular distance from
+     * the one of the given projection, the other parameters being equal, computing it only if there is none.
+     * The parameters are the ones of the corresponding constructor of {@link ObservedSky}.
+     *
+     * @param obsTime           the observation moment.
+     * @param obsCoords         the observation position (in geographic coordinates).
+     * @param stereoProj        the stereographic projection to employ.
+     * @param catalogue         the catalogue which includes the stars and the asterisms.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @param viewRadius        the angular radius of the view, in radians, pi or more for the whole sky.
+     * @param maxCenterDistance the maximum angular distance between the projection centers, in radians, 0 if they
+     *                          must be equal.
+     * @return the observed sky, whose projection center may differ from the given one by up to the maximum distance.
+     */
+    public ObservedSky observedSky(ZonedDateTime obsTime, GeographicCoordinates obsCoords, StereographicProjection stereoProj,
+                                   StarCatalogue catalogue, double limitingMagnitude, double viewRadius, double maxCenterDistance) {
+        Key key = new Key(obsTime.toInstant(), obsCoords, stereoProj.getCenter(), catalogue, limitingMagnitude, viewRadius);
+        synchronized (this) {
+            ObservedSky sky = frames.get(key);
+            if (sky == null && maxCenterDistance > 0) sky = closestFrame(key, maxCenterDistance);
+            if (sky != null) {
+                ++hits;
+                return sky;
+            }
+            ++misses;
+        }
+
+        // The sky is computed outside of the lock, so that the other threads do not wait for it.
+        ObservedSky sky = new ObservedSky(obsTime, obsCoords, stereoProj, catalogue, limitingMagnitude, viewRadius);
+        synchronized (this) {
+            frames.put(key, sky);
+        }
+        return sky;
+    }
+
+
+    /**
+     * Finds the cached sky whose projection center is the closest to the one of the given key, the other parameters
+     * being equal, and marks it as the most recently used.
+     *
+     * @param key               the key.
+     * @param maxCenterDistance the maximum angular distance between the projection centers, in radians.
+     * @return the sky, or null if there is none close enough.
+     */
+    private ObservedSky closestFrame(Key key, double maxCenterDistance) {
+        Key closest = null;
+        double closestDistance = maxCenterDistance;
+        for (Key cached : frames.keySet()) {
+            if (!cached.sameSkyAs(key)) continue;
+            double distance = cached.centerDistance(key);
+            if (distance <= closestDistance) {
+                closest = cached;
+                closestDistance = distance;
+            }
+        }
+        return (closest == null) ? null : frames.get(closest);
+    }
+
+
+    /**
+     * Getter for the number of skies found in the cache.
+     *
+     * @return the number of hits.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+
+    /**
+     * Getter for the number of skies computed, as they were not in the cache.
+     *
+     * @return the number of misses.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+
+    /**
+     * Getter for the fraction of the skies found in the cache.
+     *
+     * @return the hit rate, 0 if no sky has been asked yet.
+     */
+    public synchronized double hitRate() {
+        long requests = hits + misses;
+        return (requests == 0) ? 0 : (double) hits / requests;
+    }
+
+
+    /**
+     * Getter for the number of skies kept.
+     *
+     * @return the size of the cache.
+     */
+    public synchronized int size() {
+        return frames.size();
+    }
+
+
+    /**
+     * Key of an observed sky. The coordinates are compared by value, as they do not support equals,
+     * and the catalogue by identity.
+     */
+    private final static class Key {
+
+        private final Instant instant;
+        private final double lon, lat, az, alt;
+        private final StarCatalogue catalogue;
+        private final double limitingMagnitude, viewRadius;
+
+
+        /**
+         * Constructor.
+         *
+         * @param instant           the observation instant.
+         * @param location          the observer location.
+         * @param center            the projection center.
+         * @param catalogue         the catalogue.
+         * @param limitingMagnitude the limiting magnitude.
+         * @param viewRadius        the view radius.
+         */
+        private Key(Instant instant, GeographicCoordinates location, HorizontalCoordinates center, StarCatalogue catalogue,
+                    double limitingMagnitude, double viewRadius) {
+            this.instant = instant;
+            this.lon = location.lon();
+            this.lat = location.lat();
+            this.az = center.az();
+            this.alt = center.alt();
+            this.catalogue = catalogue;
+            this.limitingMagnitude = limitingMagnitude;
+            this.viewRadius = viewRadius;
+        }
+
+
+        /**
+         * Checks if the sky of another key only differs from the sky of this one by its projection center.
+         *
+         * @param that the other key.
+         * @return true if all the parameters but the projection center are equal.
+         */
+        private boolean sameSkyAs(Key that) {
+            return instant.equals(that.instant) && catalogue == that.catalogue
+                    && Double.compare(lon, that.lon) == 0 && Double.compare(lat, that.lat) == 0
+                    && Double.compare(limitingMagnitude, that.limitingMagnitude) == 0
+                    && Double.compare(viewRadius, that.viewRadius) == 0;
+        }
+
+
+        /**
+         * Computes the angular distance between the projection centers of this key and of another one.
+         *
+         * @param that the other key.
+         * @return the angular distance, in radians.
+         */
+        private double centerDistance(Key that) {
+            double sinHalfAlt = Math.sin((alt - that.alt) / 2), sinHalfAz = Math.sin((az - that.az) / 2);
+            double haversine = sinHalfAlt * sinHalfAlt + Math.cos(alt) * Math.cos(that.alt) * sinHalfAz * sinHalfAz;
+            return 2 * Math.asin(Math.min(1, Math.sqrt(haversine)));
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return sameSkyAs(that) && Double.compare(az, that.az) == 0 && Double.compare(alt, that.alt) == 0;
+        }
+
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(instant, lon, lat, az, alt, System.identityHashCode(catalogue), limitingMagnitude, viewRadius);
+        }
+    }
+
+}
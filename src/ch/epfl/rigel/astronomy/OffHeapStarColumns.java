@@ -0,0 +1,396 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.Preconditions;
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Stars stored by columns outside of the heap, in direct byte buffers, for the catalogues of millions of stars.
+ * A star takes 44 bytes plus the bytes of its name, and no object is allocated until a star is materialized.
+ * The stars are sorted by increasing magnitude, so that each magnitude tier is a prefix of the columns:
+ * a limited rendering only reads the beginning of the columns.
+ * The columns are immutable, and can be read concurrently.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class OffHeapStarColumns implements StarColumns {
+
+    // Maximum length of a constellation code and of a Bayer designation, in bytes.
+    private final static int MAX_CONSTELLATION_LENGTH = Integer.BYTES, MAX_BAYER_LENGTH = Long.BYTES;
+
+    private final int size;
+    private final DoubleBuffer ra, dec;
+    private final FloatBuffer magnitude, colorIndex;
+    private final IntBuffer hipparcosId;
+    // Constellation codes, their UTF-8 bytes being packed in an int.
+    private final IntBuffer constellation;
+    // Bayer designations, their UTF-8 bytes being packed in a long.
+    private final LongBuffer bayer;
+    // Offsets of the names in the names buffer, the name of a star ending at the offset of the next one.
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer names;
+
+
+    /**
+     * Private constructor, called by the builder.
+     */
+    private OffHeapStarColumns(int size, DoubleBuffer ra, DoubleBuffer dec, FloatBuffer magnitude, FloatBuffer colorIndex,
+                               IntBuffer hipparcosId, IntBuffer constellation, LongBuffer bayer, IntBuffer nameOffsets, ByteBuffer names) {
+        this.size = size;
+        this.ra = ra;
+        this.dec = dec;
+        this.magnitude = magnitude;
+        this.colorIndex = colorIndex;
+        this.hipparcosId = hipparcosId;
+        this.constellation = constellation;
+        this.bayer = bayer;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+    }
+
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    @Override
+    public int hipparcosId(int index) {
+        return hipparcosId.get(index);
+    }
+
+
+    @Override
+    public String name(int index) {
+        int start = nameOffsets.get(index);
+        byte[] bytes = new byte[nameOffsets.get(index + 1) - start];
+        // A duplicate is read, so that the position of the shared buffer never changes.
+        names.duplicate().position(start).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    @Override
+    public String bayer(int index) {
+        return unpack(bayer.get(index), MAX_BAYER_LENGTH);
+    }
+
+
+    @Override
+    public String constellation(int index) {
+        return unpack(constellation.get(index), MAX_CONSTELLATION_LENGTH);
+    }
+
+
+    @Override
+    public double ra(int index) {
+        return ra.get(index);
+    }
+
+
+    @Override
+    public double dec(int index) {
+        return dec.get(index);
+    }
+
+
+    @Override
+    public double magnitude(int index) {
+        return magnitude.get(index);
+    }
+
+
+    @Override
+    public double colorIndex(int index) {
+        return colorIndex.get(index);
+    }
+
+
+    /**
+     * Finds the end of the tier of the stars up to the given magnitude, by binary search in the sorted magnitudes.
+     * All the stars before the end have a magnitude lower or equal to the given one.
+     *
+     * @param limitingMagnitude the limiting magnitude.
+     * @return the number of stars of magnitude lower or equal to the given one.
+     */
+    @Override
+    public int tierEnd(double limitingMagnitude) {
+        int low = 0, high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (magnitude.get(middle) <= limitingMagnitude) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Getter for the number of bytes used outside of the heap.
+     *
+     * @return the number of bytes.
+     */
+    public long offHeapBytes() {
+        return (long) size * (2 * Double.BYTES + 2 * Float.BYTES + 2 * Integer.BYTES + Long.BYTES) + (long) (size + 1) * Integer.BYTES + names.capacity();
+    }
+
+
+    /**
+     * Unpacks a code packed in the given number of bytes, its first byte being the most significant one.
+     *
+     * @param packed    the packed code.
+     * @param maxLength the number of bytes of the packed code.
+     * @return the code.
+     */
+    private static String unpack(long packed, int maxLength) {
+        byte[] bytes = new byte[maxLength];
+        int length = 0;
+        for (int shift = 8 * (maxLength - 1); shift >= 0 && (packed >>> shift & 0xFF) != 0; shift -= 8) {
+            bytes[length++] = (byte) (packed >>> shift);
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Builder of the columns, the stars being added in any order and sorted by magnitude when built.
+     * The columns being built are also stored outside of the heap, they grow by doubling their capacity.
+     */
+    public final static class Builder {
+
+        // Number of bytes of a star, its name excluded.
+        private final static int ROW_BYTES = 2 * Double.BYTES + 2 * Float.BYTES + 3 * Integer.BYTES + Long.BYTES;
+        private final static int INITIAL_CAPACITY = 1024;
+
+        // One row per star: ra, dec, magnitude, color index, hipparcos ID, constellation, Bayer designation, name offset.
+        private ByteBuffer rows = allocate(INITIAL_CAPACITY * ROW_BYTES);
+        private ByteBuffer names = allocate(INITIAL_CAPACITY * 8);
+        private int size;
+
+
+        /**
+         * Adds a star.
+         *
+         * @param hipparcosId the hipparcos ID.
+         * @param name        the bytes containing the name, in UTF-8.
+         * @param nameOffset  the offset of the name in the bytes.
+         * @param nameLength  the length of the name.
+         * @param bayer       the bytes containing the Bayer designation, in UTF-8.
+         * @param bayerOffset the offset of the Bayer designation in the bytes.
+         * @param bayerLength the length of the Bayer designation, at most 8 bytes, 0 if unknown.
+         * @param constellation       the bytes containing the constellation code, in UTF-8.
+         * @param constellationOffset the offset of the constellation code in the bytes.
+         * @param constellationLength the length of the constellation code, at most 4 bytes, 0 if unknown.
+         * @param ra          the right ascension, in radians.
+         * @param dec         the declination, in radians.
+         * @param magnitude   the magnitude.
+         * @param colorIndex  the color index.
+         * @return the builder.
+         * @throws IllegalArgumentException if the hipparcos ID is negative, if the coordinates or the color index
+         *                                  are not in their interval, as for a Star, or if the Bayer designation or the
+         *                                  constellation code is too long.
+         */
+        public Builder add(int hipparcosId, byte[] name, int nameOffset, int nameLength,
+                           byte[] bayer, int bayerOffset, int bayerLength,
+                           byte[] constellation, int constellationOffset, int constellationLength,
+                           double ra, double dec, float magnitude, float colorIndex) {
+            Preconditions.checkArgument(hipparcosId >= 0);
+            Preconditions.checkArgument(bayerLength <= MAX_BAYER_LENGTH && constellationLength <= MAX_CONSTELLATION_LENGTH);
+            Preconditions.checkInInterval(Star.COLOR_INTERVAL, colorIndex);
+            EquatorialCoordinates.of(ra, dec);
+
+            if (rows.remaining() < ROW_BYTES) rows = grow(rows, ROW_BYTES);
+            if (names.remaining() < nameLength) names = grow(names, nameLength);
+
+            rows.putDouble(ra)
+                    .putDouble(dec)
+                    .putFloat(magnitude)
+                    .putFloat(colorIndex)
+                    .putInt(hipparcosId)
+                    .putInt((int) pack(constellation, constellationOffset, constellationLength, MAX_CONSTELLATION_LENGTH))
+                    .putLong(pack(bayer, bayerOffset, bayerLength, MAX_BAYER_LENGTH))
+                    .putInt(names.position());
+            names.put(name, nameOffset, nameLength);
+            ++size;
+            return this;
+        }
+
+
+        /**
+         * Adds a star.
+         *
+         * @param star the star.
+         * @return the builder.
+         */
+        public Builder add(Star star) {
+            byte[] name = star.name().getBytes(StandardCharsets.UTF_8);
+            byte[] bayer = star.bayer().getBytes(StandardCharsets.UTF_8);
+            byte[] constellation = star.constellation().getBytes(StandardCharsets.UTF_8);
+            return add(star.hipparcosId(), name, 0, name.length, bayer, 0, bayer.length, constellation, 0, constellation.length,
+                    star.equatorialPos().ra(), star.equatorialPos().dec(),
+                    (float) star.magnitude(), (float) star.colorIndex());
+        }
+
+
+        /**
+         * Adds all the stars of another builder, in their order.
+         *
+         * @param other the other builder.
+         * @return the builder.
+         */
+        public Builder addAll(Builder other) {
+            for (int i = 0; i < other.size; ++i) {
+                int rowOffset = i * ROW_BYTES;
+                int nameStart = other.nameStart(i);
+                int nameEnd = other.nameEnd(i);
+
+                if (rows.remaining() < ROW_BYTES) rows = grow(rows, ROW_BYTES);
+                if (names.remaining() < nameEnd - nameStart) names = grow(names, nameEnd - nameStart);
+
+                rows.putDouble(other.rows.getDouble(rowOffset))
+                        .putDouble(other.rows.getDouble(rowOffset + Double.BYTES))
+                        .putFloat(other.rows.getFloat(rowOffset + 2 * Double.BYTES))
+                        .putFloat(other.rows.getFloat(rowOffset + 2 * Double.BYTES + Float.BYTES))
+                        .putInt(other.rows.getInt(rowOffset + 2 * Double.BYTES + 2 * Float.BYTES))
+                        .putInt(other.rows.getInt(rowOffset + 2 * Double.BYTES + 2 * Float.BYTES + Integer.BYTES))
+                        .putLong(other.rows.getLong(rowOffset + 2 * Double.BYTES + 2 * Float.BYTES + 2 * Integer.BYTES))
+                        .putInt(names.position());
+                names.put(other.names.duplicate().limit(nameEnd).position(nameStart));
+                ++size;
+            }
+            return this;
+        }
+
+
+        /**
+         * Getter for the number of stars added.
+         *
+         * @return the number of stars.
+         */
+        public int size() {
+            return size;
+        }
+
+
+        /**
+         * Builds the columns, sorted by increasing magnitude, the order of the stars of equal magnitude being preserved.
+         *
+         * @return the columns.
+         */
+        public OffHeapStarColumns build() {
+            // Each key contains the sortable bits of the magnitude, followed by the index of the row.
+            long[] keys = new long[size];
+            for (int i = 0; i < size; ++i) {
+                int bits = Float.floatToIntBits(rows.getFloat(i * ROW_BYTES + 2 * Double.BYTES));
+                int sortableBits = (bits < 0) ? bits ^ Integer.MAX_VALUE : bits;
+                keys[i] = ((long) sortableBits << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            DoubleBuffer ra = allocate(size * Double.BYTES).asDoubleBuffer();
+            DoubleBuffer dec = allocate(size * Double.BYTES).asDoubleBuffer();
+            FloatBuffer magnitude = allocate(size * Float.BYTES).asFloatBuffer();
+            FloatBuffer colorIndex = allocate(size * Float.BYTES).asFloatBuffer();
+            IntBuffer hipparcosId = allocate(size * Integer.BYTES).asIntBuffer();
+            IntBuffer constellation = allocate(size * Integer.BYTES).asIntBuffer();
+            LongBuffer bayer = allocate(size * Long.BYTES).asLongBuffer();
+            IntBuffer nameOffsets = allocate((size + 1) * Integer.BYTES).asIntBuffer();
+            ByteBuffer sortedNames = allocate(names.position());
+
+            for (int i = 0; i < size; ++i) {
+                int row = (int) keys[i];
+                int rowOffset = row * ROW_BYTES;
+                ra.put(rows.getDouble(rowOffset));
+                dec.put(rows.getDouble(rowOffset + Double.BYTES));
+                magnitude.put(rows.getFloat(rowOffset + 2 * Double.BYTES));
+                colorIndex.put(rows.getFloat(rowOffset + 2 * Double.BYTES + Float.BYTES));
+                hipparcosId.put(rows.getInt(rowOffset + 2 * Double.BYTES + 2 * Float.BYTES));
+                constellation.put(rows.getInt(rowOffset + 2 * Double.BYTES + 2 * Float.BYTES + Integer.BYTES));
+                bayer.put(rows.getLong(rowOffset + 2 * Double.BYTES + 2 * Float.BYTES + 2 * Integer.BYTES));
+
+                nameOffsets.put(sortedNames.position());
+                sortedNames.put(names.duplicate().limit(nameEnd(row)).position(nameStart(row)));
+            }
+            nameOffsets.put(sortedNames.position());
+
+            return new OffHeapStarColumns(size, ra, dec, magnitude, colorIndex, hipparcosId, constellation, bayer, nameOffsets, sortedNames);
+        }
+
+
+        /**
+         * Getter for the offset of the name of a row in the names buffer.
+         *
+         * @param row the row.
+         * @return the offset of the first byte of the name.
+         */
+        private int nameStart(int row) {
+            return rows.getInt(row * ROW_BYTES + ROW_BYTES - Integer.BYTES);
+        }
+
+
+        /**
+         * Getter for the end of the name of a row in the names buffer.
+         *
+         * @param row the row.
+         * @return the offset following the last byte of the name.
+         */
+        private int nameEnd(int row) {
+            return (row + 1 < size) ? nameStart(row + 1) : names.position();
+        }
+
+
+        /**
+         * Packs a code in the given number of bytes, its first byte being the most significant one, and the unused bytes 0.
+         *
+         * @param bytes     the bytes containing the code.
+         * @param offset    the offset of the code.
+         * @param length    the length of the code.
+         * @param maxLength the number of bytes of the packed code, at most 8.
+         * @return the packed code.
+         */
+        private static long pack(byte[] bytes, int offset, int length, int maxLength) {
+            long packed = 0;
+            for (int i = 0; i < maxLength; ++i) {
+                packed = (packed << 8) | ((i < length) ? bytes[offset + i] & 0xFF : 0);
+            }
+            return packed;
+        }
+
+
+        /**
+         * Allocates a direct buffer in the native byte order.
+         *
+         * @param capacity the capacity, in bytes.
+         * @return the buffer.
+         */
+        private static ByteBuffer allocate(int capacity) {
+            return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+        }
+
+
+        /**
+         * Copies a buffer into a new one, at least twice as large and with room for the given number of bytes.
+         *
+         * @param buffer  the buffer, its position being the number of bytes used.
+         * @param missing the number of bytes to be added.
+         * @return the new buffer, positioned after the copied bytes.
+         */
+        private static ByteBuffer grow(ByteBuffer buffer, int missing) {
+            ByteBuffer grown = allocate(Math.max(2 * buffer.capacity(), buffer.position() + missing));
+            return grown.put(buffer.flip());
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.coordinates.CartesianCoordinates;
+import ch.epfl.rigel.coordinates.EclipticToEquatorialConversion;
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.coordinates.HorizontalCoordinates;
+import ch.epfl.rigel.coordinates.StereographicProjection;
+import ch.epfl.rigel.math.Angle;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Math.*;
+
+/**
+ * Computes the frames of an observed sky whose time flows quickly, without running the models nor converting
+ * the stars one by one at each frame.
+ * <p>
+ * The stars are fixed in the equatorial frame, and the conversion to the horizontal frame followed by the
+ * stereographic projection amounts to three dot products with vectors depending only on the moment: the stars are
+ * thus rotated exactly, from their equatorial unit vectors computed once for a window of the sky around the view.
+ * The window is computed again only when the view leaves it.
+ * <p>
+ * The positions of the moon and of the planets are interpolated by cubic Hermite splines between keyframes,
+ * where the models are run. The interval between two keyframes adapts to the error of the interpolation, measured
+ * at the middle of each interval, so that it stays below the given number of pixels. The Sun is cheap to compute,
+ * and is computed at each frame.
+ * <p>
+ * An interpolator keeps the state of the last frames, and is used by a single thread.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class SkyInterpolator {
+
+    private final static double NANOS_PER_DAY = 86_400e9;
+    // Bounds and initial value of the interval between two keyframes, in days.
+    private final static double MIN_INTERVAL = 1.0 / 1440, MAX_INTERVAL = 16, INITIAL_INTERVAL = 1.0 / 24;
+    // Step of the central differences giving the velocities of the moon and of the planets at the keyframes.
+    private final static Duration DERIVATIVE_STEP = Duration.ofHours(1);
+
+    // Margin added to the radius of the view to get the radius of the window of stars.
+    private final static double WINDOW_MARGIN = Angle.ofDeg(10);
+    // Radius of the view beyond which the scale of the projection is no longer taken into account in the error.
+    private final static double MAX_SCALED_RADIUS = Angle.ofDeg(120);
+
+    private final double maxPixelError;
+
+    // Window of stars: the observed sky whose stars and asterisms are kept, and the unit vectors of its stars.
+    private ObservedSky window;
+    private double[] windowStarVectors;
+    private double[] windowCenter;
+    private double windowRadius;
+    private StarCatalogue windowCatalogue;
+    private double windowMagnitude;
+
+    // Keyframes surrounding the current frame, and the angular error of the interpolation between them.
+    private Keyframe segmentStart, segmentEnd;
+    private double segmentError;
+    private double interval = INITIAL_INTERVAL;
+
+
+    /**
+     * Constructor.
+     *
+     * @param maxPixelError the maximum error of the interpolated positions, in pixels.
+     */
+    public SkyInterpolator(double maxPixelError) {
+        this.maxPixelError = maxPixelError;
+    }
+
+
+    /**
+     * Computes the frame of the observed sky at the given moment, with the stars up to the given magnitude lying in the view.
+     *
+     * @param obsTime           the observation moment.
+     * @param obsCoords         the observation position (in geographic coordinates).
+     * @param stereoProj        the stereographic projection to employ.
+     * @param catalogue         the catalogue which includes the stars and the asterisms.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @param viewRadius        the angular radius of the view, in radians, pi or more for the whole sky.
+     * @param dilatationFactor  the number of pixels per unit of the stereographic plane.
+     * @return the frame.
+     * @see ObservedSky#ObservedSky(ZonedDateTime, GeographicCoordinates, StereographicProjection, StarCatalogue, double, double)
+     */
+    public ObservedSky frameAt(ZonedDateTime obsTime, GeographicCoordinates obsCoords, StereographicProjection stereoProj,
+                               StarCatalogue catalogue, double limitingMagnitude, double viewRadius, double dilatationFactor) {
+        // Axes of the stereographic plane and center of the projection, expressed in the equatorial frame.
+        double[] basis = projectionBasis(obsTime, obsCoords, stereoProj);
+
+        if (!windowContains(basis, catalogue, limitingMagnitude, viewRadius)) {
+            updateWindow(obsTime, obsCoords, stereoProj, catalogue, limitingMagnitude, viewRadius, basis);
+        }
+
+        double[] starCoords = new double[2 * window.stars().size()];
+        for (int i = 0; i < window.stars().size(); ++i) {
+            project(windowStarVectors, i, basis, starCoords, i);
+        }
+
+        // Error, in pixels, of an angular error of one radian, the stereographic projection enlarging the sky away from its center.
+        double rho = tan(min(viewRadius, MAX_SCALED_RADIUS) / 2);
+        double pixelScale = dilatationFactor * (1 + rho * rho) / 2;
+        moveSegment(obsTime, Epoch.J2010.daysUntil(obsTime), pixelScale);
+
+        double fraction = (Epoch.J2010.daysUntil(obsTime) - segmentStart.days) / (segmentEnd.days - segmentStart.days);
+        double[] bodyVectors = interpolatedVectors(segmentStart, segmentEnd, fraction);
+        double[] bodyCoords = new double[bodyVectors.length / 3 * 2];
+        for (int i = 0; i < bodyVectors.length / 3; ++i) {
+            project(bodyVectors, i, basis, bodyCoords, i);
+        }
+
+        Moon moon = new Moon(equatorialCoordinatesOf(bodyVectors, 0),
+                (float) interpolated(segmentStart.moon.angularSize(), segmentEnd.moon.angularSize(), fraction),
+                (float) interpolated(segmentStart.moon.magnitude(), segmentEnd.moon.magnitude(), fraction),
+                (float) interpolated(segmentStart.moon.phase(), segmentEnd.moon.phase(), fraction));
+
+        List<Planet> planets = new ArrayList<>(segmentStart.planets.size());
+        double[] planetCoords = new double[2 * segmentStart.planets.size()];
+        for (int i = 0; i < segmentStart.planets.size(); ++i) {
+            Planet start = segmentStart.planets.get(i), end = segmentEnd.planets.get(i);
+            planets.add(new Planet(start.name(), equatorialCoordinatesOf(bodyVectors, i + 1),
+                    (float) interpolated(start.angularSize(), end.angularSize(), fraction),
+                    (float) interpolated(start.magnitude(), end.magnitude(), fraction)));
+            planetCoords[2 * i] = bodyCoords[2 * (i + 1)];
+            planetCoords[2 * i + 1] = bodyCoords[2 * (i + 1) + 1];
+        }
+
+        Sun sun = SunModel.SUN.at(Epoch.J2010.daysUntil(obsTime), new EclipticToEquatorialConversion(obsTime));
+        double[] sunCoords = new double[2];
+        project(unitVectorsOf(List.of(sun)), 0, basis, sunCoords, 0);
+
+        return new ObservedSky(window, stereoProj, sun, CartesianCoordinates.of(sunCoords[0], sunCoords[1]),
+                moon, CartesianCoordinates.of(bodyCoords[0], bodyCoords[1]), planets, planetCoords, starCoords);
+    }
+
+
+    /**
+     * Getter for the current interval between two keyframes.
+     *
+     * @return the interval, in days.
+     */
+    public double keyframeInterval() {
+        return interval;
+    }
+
+
+    /**
+     * Checks whether the window of stars covers the view.
+     *
+     * @param basis             the basis of the projection, in the equatorial frame.
+     * @param catalogue         the catalogue.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @param viewRadius        the angular radius of the view.
+     * @return true if the window covers the view.
+     */
+    private boolean windowContains(double[] basis, StarCatalogue catalogue, double limitingMagnitude, double viewRadius) {
+        if (window == null || catalogue != windowCatalogue || limitingMagnitude != windowMagnitude) return false;
+        if (windowRadius >= PI) return true;
+
+        double cos = basis[6] * windowCenter[0] + basis[7] * windowCenter[1] + basis[8] * windowCenter[2];
+        return acos(min(1, cos)) + viewRadius <= windowRadius;
+    }
+
+
+    /**
+     * Computes the window of stars around the view, larger than the view so that it can be kept for the next frames.
+     *
+     * @param obsTime           the observation moment.
+     * @param obsCoords         the observation position.
+     * @param stereoProj        the stereographic projection.
+     * @param catalogue         the catalogue.
+     * @param limitingMagnitude the magnitude of the faintest stars observed.
+     * @param viewRadius        the angular radius of the view.
+     * @param basis             the basis of the projection, in the equatorial frame.
+     */
+    private void updateWindow(ZonedDateTime obsTime, GeographicCoordinates obsCoords, StereographicProjection stereoProj,
+                              StarCatalogue catalogue, double limitingMagnitude, double viewRadius, double[] basis) {
+        windowRadius = viewRadius + WINDOW_MARGIN;
+        window = new ObservedSky(obsTime, obsCoords, stereoProj, catalogue, limitingMagnitude, windowRadius);
+        windowStarVectors = unitVectorsOf(window.stars());
+        windowCenter = new double[]{basis[6], basis[7], basis[8]};
+        windowCatalogue = catalogue;
+        windowMagnitude = limitingMagnitude;
+    }
+
+
+    /**
+     * Moves the keyframes so that they surround the given moment, computing new ones when needed.
+     *
+     * @param obsTime    the moment.
+     * @param days       the number of days from J2010 to the moment.
+     * @param pixelScale the error in pixels of an angular error of one radian.
+     */
+    private void moveSegment(ZonedDateTime obsTime, double days, double pixelScale) {
+        // The keyframes are computed again when the time goes backwards, or when the view is zoomed in too much for them.
+        if (segmentStart == null || days < segmentStart.days || (segmentError * pixelScale > maxPixelError && interval > MIN_INTERVAL)) {
+            segmentStart = new Keyframe(obsTime);
+            segmentEnd = nextKeyframe(segmentStart, pixelScale);
+        }
+
+        while (days > segmentEnd.days) {
+            // After a jump in time, the keyframes start again from the moment.
+            segmentStart = (days > segmentEnd.days + interval) ? new Keyframe(obsTime) : segmentEnd;
+            segmentEnd = nextKeyframe(segmentStart, pixelScale);
+        }
+    }
+
+
+    /**
+     * Computes the keyframe following the given one, and adapts the interval between keyframes: it is halved until
+     * the error of the interpolation is small enough, and doubled for the next keyframes if the error is far smaller.
+     *
+     * @param start      the keyframe.
+     * @param pixelScale the error in pixels of an angular error of one radian.
+     * @return the next keyframe.
+     */
+    private Keyframe nextKeyframe(Keyframe start, double pixelScale) {
+        while (true) {
+            Keyframe end = new Keyframe(start.when.plus(Duration.ofNanos(round(interval * NANOS_PER_DAY))));
+
+            // The error of the interpolation is measured at the middle of the interval, where it is the largest.
+            double[] interpolated = interpolatedVectors(start, end, 0.5);
+            double[] exact = unitVectorsOf(bodiesAt(start.when.plus(Duration.ofNanos(round(interval * NANOS_PER_DAY / 2)))));
+            double error = 0;
+            for (int i = 0; i < exact.length; i += 3) {
+                error = max(error, hypot(hypot(exact[i] - interpolated[i], exact[i + 1] - interpolated[i + 1]), exact[i + 2] - interpolated[i + 2]));
+            }
+
+            if (error * pixelScale > maxPixelError && interval > MIN_INTERVAL) {
+                interval = max(interval / 2, MIN_INTERVAL);
+            } else {
+                // The error of a cubic interpolation grows with the fourth power of the interval.
+                if (16 * error * pixelScale < maxPixelError) interval = min(2 * interval, MAX_INTERVAL);
+                segmentError = error;
+                return end;
+            }
+        }
+    }
+
+
+    /**
+     * Interpolates the unit vectors of the moon and of the planets between two keyframes, by cubic Hermite splines.
+     *
+     * @param start    the first keyframe.
+     * @param end      the second keyframe.
+     * @param fraction the fraction of the interval between the keyframes.
+     * @return the unit vectors, normalized, three coordinates for each body.
+     */
+    private static double[] interpolatedVectors(Keyframe start, Keyframe end, double fraction) {
+        double t = fraction, t2 = t * t, t3 = t2 * t;
+        double duration = end.days - start.days;
+        double h00 = 2 * t3 - 3 * t2 + 1, h10 = (t3 - 2 * t2 + t) * duration;
+        double h01 = -2 * t3 + 3 * t2, h11 = (t3 - t2) * duration;
+
+        double[] vectors = new double[start.positions.length];
+        for (int i = 0; i < vectors.length; i += 3) {
+            for (int j = i; j < i + 3; ++j) {
+                vectors[j] = h00 * start.positions[j] + h10 * start.velocities[j] + h01 * end.positions[j] + h11 * end.velocities[j];
+            }
+            double norm = sqrt(vectors[i] * vectors[i] + vectors[i + 1] * vectors[i + 1] + vectors[i + 2] * vectors[i + 2]);
+            vectors[i] /= norm;
+            vectors[i + 1] /= norm;
+            vectors[i + 2] /= norm;
+        }
+        return vectors;
+    }
+
+
+    /**
+     * Computes the axes of the stereographic plane and the center of the projection, expressed in the equatorial frame.
+     * The cartesian coordinates of a projected object are then given by the dot products of its equatorial unit vector
+     * with these three vectors.
+     *
+     * @param obsTime    the observation moment.
+     * @param obsCoords  the observation position.
+     * @param stereoProj the stereographic projection.
+     * @return the abscissa axis, the ordinate axis and the center, three coordinates for each.
+     */
+    private static double[] projectionBasis(ZonedDateTime obsTime, GeographicCoordinates obsCoords, StereographicProjection stereoProj) {
+        double siderealLocal = SiderealTime.local(obsTime, obsCoords);
+        double sinSidereal = sin(siderealLocal), cosSidereal = cos(siderealLocal);
+        double sinPhi = sin(obsCoords.lat()), cosPhi = cos(obsCoords.lat());
+
+        HorizontalCoordinates center = stereoProj.getCenter();
+        double sinLambdaCenter = sin(center.az()), cosLambdaCenter = cos(center.az());
+        double sinPhiCenter = sin(center.alt()), cosPhiCenter = cos(center.alt());
+
+        // The three vectors in the horizontal frame, by their components towards the north, the east and the zenith.
+        double[] horizontal = {
+                -sinLambdaCenter, cosLambdaCenter, 0,
+                -sinPhiCenter * cosLambdaCenter, -sinPhiCenter * sinLambdaCenter, cosPhiCenter,
+                cosPhiCenter * cosLambdaCenter, cosPhiCenter * sinLambdaCenter, sinPhiCenter};
+
+        double[] basis = new double[9];
+        for (int i = 0; i < 9; i += 3) {
+            double north = horizontal[i], east = horizontal[i + 1], zenith = horizontal[i + 2];
+            double hourAngleComponent = zenith * cosPhi - north * sinPhi;
+            basis[i] = hourAngleComponent * cosSidereal - east * sinSidereal;
+            basis[i + 1] = hourAngleComponent * sinSidereal + east * cosSidereal;
+            basis[i + 2] = north * cosPhi + zenith * sinPhi;
+        }
+        return basis;
+    }
+
+
+    /**
+     * Projects an equatorial unit vector.
+     *
+     * @param vectors     the unit vectors, three coordinates for each.
+     * @param index       the index of the vector.
+     * @param basis       the basis of the projection, in the equatorial frame.
+     * @param coords      the cartesian coordinates filled, two for each vector.
+     * @param coordsIndex the index of the cartesian coordinates of the vector.
+     */
+    private static void project(double[] vectors, int index, double[] basis, double[] coords, int coordsIndex) {
+        double x = vectors[3 * index], y = vectors[3 * index + 1], z = vectors[3 * index + 2];
+        double d = 1 / (1 + x * basis[6] + y * basis[7] + z * basis[8]);
+        coords[2 * coordsIndex] = d * (x * basis[0] + y * basis[1] + z * basis[2]);
+        coords[2 * coordsIndex + 1] = d * (x * basis[3] + y * basis[4] + z * basis[5]);
+    }
+
+
+    /**
+     * Computes the equatorial unit vectors of celestial objects.
+     *
+     * @param objects the celestial objects.
+     * @return the unit vectors, three coordinates for each object.
+     */
+    private static double[] unitVectorsOf(List<? extends CelestialObject> objects) {
+        double[] vectors = new double[3 * objects.size()];
+        for (int i = 0; i < objects.size(); ++i) {
+            EquatorialCoordinates equatorialPos = objects.get(i).equatorialPos();
+            double cosDec = cos(equatorialPos.dec());
+            vectors[3 * i] = cosDec * cos(equatorialPos.ra());
+            vectors[3 * i + 1] = cosDec * sin(equatorialPos.ra());
+            vectors[3 * i + 2] = sin(equatorialPos.dec());
+        }
+        return vectors;
+    }
+
+
+    /**
+     * Computes the equatorial coordinates of a unit vector.
+     *
+     * @param vectors the unit vectors, three coordinates for each.
+     * @param index   the index of the vector.
+     * @return the equatorial coordinates.
+     */
+    private static EquatorialCoordinates equatorialCoordinatesOf(double[] vectors, int index) {
+        double ra = Angle.normalizePositive(atan2(vectors[3 * index + 1], vectors[3 * index]));
+        return EquatorialCoordinates.of(ra, asin(max(-1, min(1, vectors[3 * index + 2]))));
+    }
+
+
+    /**
+     * Interpolates linearly between two values.
+     *
+     * @param start    the first value.
+     * @param end      the second value.
+     * @param fraction the fraction of the interval between the values.
+     * @return the interpolated value.
+     */
+    private static double interpolated(double start, double end, double fraction) {
+        return start + (end - start) * fraction;
+    }
+
+
+    /**
+     * Gives the moon and the planets (except the Earth), computed by their models at the exact moment.
+     * The shared ephemeris cache is not used: the keyframes and their probes are never asked again, and its
+     * quantized instants would bias the measure of the interpolation error.
+     *
+     * @param obsTime the moment.
+     * @return the moon followed by the planets.
+     */
+    private static List<CelestialObject> bodiesAt(ZonedDateTime obsTime) {
+        Ephemeris ephemeris = Ephemeris.at(obsTime);
+
+        List<CelestialObject> bodies = new ArrayList<>(1 + ephemeris.planets().size());
+        bodies.add(ephemeris.moon());
+        bodies.addAll(ephemeris.planets());
+        return bodies;
+    }
+
+
+    /**
+     * Keyframe, i.e the moon and the planets at a moment, with their unit vectors and the velocities of these vectors.
+     */
+    private final static class Keyframe {
+
+        private final ZonedDateTime when;
+        private final double days;
+        private final Moon moon;
+        private final List<Planet> planets = new ArrayList<>();
+        // Unit vectors of the moon and of the planets, and their derivatives in days.
+        private final double[] positions, velocities;
+
+
+        /**
+         * Constructor, runs the models at the moment and around it.
+         *
+         * @param when the moment.
+         */
+        private Keyframe(ZonedDateTime when) {
+            this.when = when;
+            days = Epoch.J2010.daysUntil(when);
+
+            List<CelestialObject> bodies = bodiesAt(when);
+            moon = (Moon) bodies.get(0);
+            for (CelestialObject body : bodies.subList(1, bodies.size())) {
+                planets.add((Planet) body);
+            }
+            positions = unitVectorsOf(bodies);
+
+            double[] before = unitVectorsOf(bodiesAt(when.minus(DERIVATIVE_STEP)));
+            double[] after = unitVectorsOf(bodiesAt(when.plus(DERIVATIVE_STEP)));
+            double step = DERIVATIVE_STEP.toNanos() / NANOS_PER_DAY;
+            velocities = new double[positions.length];
+            for (int i = 0; i < velocities.length; ++i) {
+                velocities[i] = (after[i] - before[i]) / (2 * step);
+            }
+        }
+    }
+
+}
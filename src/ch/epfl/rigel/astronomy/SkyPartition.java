@@ -0,0 +1,438 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.Preconditions;
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import ch.epfl.rigel.math.Angle;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchical equal-area partition of the celestial sphere, indexing the stars of a catalogue.
+ * The sphere is mapped onto the rectangle of the right ascensions and of the sines of the declinations,
+ * a projection preserving the areas, which is then recursively divided into four equal cells.
+ * The stars are sorted by the Morton order of their cell at the deepest level, so that every cell,
+ * at every level, contains a contiguous range of stars.
+ * <p>
+ * A search only examines the cells crossing the boundary of the searched region: the cells entirely inside are
+ * added as a whole, the ones entirely outside are skipped. Its cost is thus proportional to the size of the result
+ * and to the length of the boundary, not to the size of the catalogue.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class SkyPartition {
+
+    // Average number of stars of the deepest cells, and maximum depth of the partition.
+    private final static int STARS_PER_CELL = 16;
+    private final static int MAX_LEVEL = 10;
+
+    private final int level;
+    // Index of the first star of each cell of the deepest level, in Morton order, followed by the number of stars.
+    private final int[] cellStarts;
+    // Catalogue indices of the stars, sorted by cell.
+    private final int[] starIndices;
+    // Unit vectors of the stars, in the same order.
+    private final double[] xs, ys, zs;
+
+
+    /**
+     * Builds the partition of the given stars.
+     *
+     * @param columns the stars.
+     */
+    public SkyPartition(StarColumns columns) {
+        int size = columns.size();
+        int depth = 0;
+        while (depth < MAX_LEVEL && (1L << (2 * depth)) * STARS_PER_CELL < size) ++depth;
+        level = depth;
+
+        int side = 1 << level;
+        int cellCount = side * side;
+
+        // Each key contains the Morton code of the cell, followed by the index of the star.
+        long[] keys = new long[size];
+        for (int i = 0; i < size; ++i) {
+            int x = Math.min(side - 1, (int) (columns.ra(i) / Angle.TAU * side));
+            int y = Math.min(side - 1, (int) ((Math.sin(columns.dec(i)) + 1) / 2 * side));
+            keys[i] = ((long) morton(x, y) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        cellStarts = new int[cellCount + 1];
+        starIndices = new int[size];
+        xs = new double[size];
+        ys = new double[size];
+        zs = new double[size];
+
+        for (int i = 0; i < size; ++i) {
+            int index = (int) keys[i];
+            starIndices[i] = index;
+            double cosDec = Math.cos(columns.dec(index));
+            xs[i] = cosDec * Math.cos(columns.ra(index));
+            ys[i] = cosDec * Math.sin(columns.ra(index));
+            zs[i] = Math.sin(columns.dec(index));
+            ++cellStarts[(int) (keys[i] >>> 32) + 1];
+        }
+        for (int cell = 0; cell < cellCount; ++cell) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+    }
+
+
+    /**
+     * Getter for the depth of the partition, the deepest level containing 4^level cells.
+     *
+     * @return the depth.
+     */
+    public int level() {
+        return level;
+    }
+
+
+    /**
+     * Finds the stars within the given angular distance of a point.
+     *
+     * @param centre the centre of the cone.
+     * @param radius the angular radius of the cone, in radians.
+     * @return the catalogue indices of the stars, in no particular order.
+     * @throws IllegalArgumentException if the radius is negative.
+     */
+    public int[] coneSearch(EquatorialCoordinates centre, double radius) {
+        Preconditions.checkArgument(radius >= 0);
+        double[] c = unitVector(centre.ra(), centre.dec());
+        return search(new Caps(new double[][]{c}, new double[]{Math.cos(Math.min(radius, Math.PI))}));
+    }
+
+
+    /**
+     * Finds the stars inside a convex spherical polygon, whose edges are arcs of great circles.
+     * The vertices can be given in either orientation.
+     *
+     * @param vertices the vertices of the polygon, at least 3.
+     * @return the catalogue indices of the stars, in no particular order.
+     * @throws IllegalArgumentException if there are less than 3 vertices.
+     */
+    public int[] polygonSearch(List<EquatorialCoordinates> vertices) {
+        Preconditions.checkArgument(vertices.size() >= 3);
+        int count = vertices.size();
+
+        double[][] points = new double[count][];
+        double[] centroid = new double[3];
+        for (int i = 0; i < count; ++i) {
+            points[i] = unitVector(vertices.get(i).ra(), vertices.get(i).dec());
+            for (int k = 0; k < 3; ++k) centroid[k] += points[i][k];
+        }
+
+        // Each edge bounds a hemisphere, whose pole is the cross product of its vertices, oriented towards the centroid.
+        double[][] poles = new double[count][];
+        for (int i = 0; i < count; ++i) {
+            poles[i] = normalized(cross(points[i], points[(i + 1) % count]));
+        }
+        if (dot(poles[0], centroid) < 0) {
+            for (double[] pole : poles) {
+                for (int k = 0; k < 3; ++k) pole[k] = -pole[k];
+            }
+        }
+
+        double[] cosRadii = new double[count];
+        return search(new Caps(poles, cosRadii));
+    }
+
+
+    /**
+     * Finds the stars inside the intersection of the given spherical caps, by descending the partition.
+     *
+     * @param caps the caps.
+     * @return the catalogue indices of the stars.
+     */
+    private int[] search(Caps caps) {
+        Result result = new Result();
+        visit(caps, 0, 0, 0, result);
+        return result.toArray();
+    }
+
+
+    /**
+     * Visits a cell: adds all its stars if it lies inside the caps, nothing if it lies outside,
+     * and visits its four children otherwise, or tests each of its stars at the deepest level.
+     *
+     * @param caps      the caps.
+     * @param cellLevel the level of the cell.
+     * @param x         the column of the cell at its level.
+     * @param y         the row of the cell at its level.
+     * @param result    the stars found so far.
+     */
+    private void visit(Caps caps, int cellLevel, int x, int y, Result result) {
+        double cellSide = 1d / (1 << cellLevel);
+        int position = caps.position(Angle.TAU * x * cellSide, Angle.TAU * (x + 1) * cellSide,
+                -1 + 2 * y * cellSide, -1 + 2 * (y + 1) * cellSide);
+        if (position == Caps.OUTSIDE) return;
+
+        int shift = 2 * (level - cellLevel);
+        int first = cellStarts[morton(x, y) << shift];
+        int last = cellStarts[(morton(x, y) + 1) << shift];
+        if (first == last) return;
+
+        if (position == Caps.INSIDE) {
+            result.addAll(starIndices, first, last);
+        } else if (cellLevel == level) {
+            for (int i = first; i < last; ++i) {
+                if (caps.contains(xs[i], ys[i], zs[i])) result.add(starIndices[i]);
+            }
+        } else {
+            for (int child = 0; child < 4; ++child) {
+                visit(caps, cellLevel + 1, 2 * x + (child & 1), 2 * y + (child >> 1), result);
+            }
+        }
+    }
+
+
+    /**
+     * Interleaves the bits of the column and of the row of a cell.
+     *
+     * @param x the column.
+     * @param y the row.
+     * @return the Morton code of the cell.
+     */
+    private static int morton(int x, int y) {
+        int code = 0;
+        for (int bit = 0; bit < MAX_LEVEL; ++bit) {
+            code |= ((x >> bit) & 1) << (2 * bit);
+            code |= ((y >> bit) & 1) << (2 * bit + 1);
+        }
+        return code;
+    }
+
+
+    /**
+     * Computes the unit vector of a point of the sphere.
+     *
+     * @param ra  the right ascension.
+     * @param dec the declination.
+     * @return the unit vector.
+     */
+    private static double[] unitVector(double ra, double dec) {
+        return new double[]{Math.cos(dec) * Math.cos(ra), Math.cos(dec) * Math.sin(ra), Math.sin(dec)};
+    }
+
+
+    /**
+     * Computes the cross product of two vectors.
+     *
+     * @param u the first vector.
+     * @param v the second vector.
+     * @return the cross product.
+     */
+    private static double[] cross(double[] u, double[] v) {
+        return new double[]{u[1] * v[2] - u[2] * v[1], u[2] * v[0] - u[0] * v[2], u[0] * v[1] - u[1] * v[0]};
+    }
+
+
+    /**
+     * Computes the dot product of two vectors.
+     *
+     * @param u the first vector.
+     * @param v the second vector.
+     * @return the dot product.
+     */
+    private static double dot(double[] u, double[] v) {
+        return u[0] * v[0] + u[1] * v[1] + u[2] * v[2];
+    }
+
+
+    /**
+     * Normalizes a vector.
+     *
+     * @param u the vector, which must not be null.
+     * @return the vector, normalized in place.
+     * @throws IllegalArgumentException if the vector is null, i.e two consecutive vertices are equal or antipodal.
+     */
+    private static double[] normalized(double[] u) {
+        double norm = Math.sqrt(dot(u, u));
+        Preconditions.checkArgument(norm > 0);
+        for (int k = 0; k < 3; ++k) u[k] /= norm;
+        return u;
+    }
+
+
+    /**
+     * Intersection of spherical caps, each one being the set of the unit vectors whose dot product with its pole
+     * is at least the cosine of its radius. A cone is a single cap, a convex polygon the intersection of hemispheres.
+     */
+    private final static class Caps {
+
+        private final static int OUTSIDE = 0, CROSSING = 1, INSIDE = 2;
+
+        private final double[][] poles;
+        private final double[] cosRadii;
+        // Right ascension, sine and cosine of the declination of each pole.
+        private final double[] poleRas, poleSinDecs, poleCosDecs;
+
+
+        /**
+         * Constructor.
+         *
+         * @param poles    the unit vectors of the poles.
+         * @param cosRadii the cosines of the radii.
+         */
+        private Caps(double[][] poles, double[] cosRadii) {
+            this.poles = poles;
+            this.cosRadii = cosRadii;
+            poleRas = new double[poles.length];
+            poleSinDecs = new double[poles.length];
+            poleCosDecs = new double[poles.length];
+            for (int i = 0; i < poles.length; ++i) {
+                poleRas[i] = Math.atan2(poles[i][1], poles[i][0]);
+                poleSinDecs[i] = poles[i][2];
+                poleCosDecs[i] = Math.hypot(poles[i][0], poles[i][1]);
+            }
+        }
+
+
+        /**
+         * Checks if a unit vector lies in all the caps.
+         *
+         * @param x the x coordinate.
+         * @param y the y coordinate.
+         * @param z the z coordinate.
+         * @return true if the vector lies in all the caps.
+         */
+        private boolean contains(double x, double y, double z) {
+            for (int i = 0; i < poles.length; ++i) {
+                if (poles[i][0] * x + poles[i][1] * y + poles[i][2] * z < cosRadii[i]) return false;
+            }
+            return true;
+        }
+
+
+        /**
+         * Finds the position of a cell, delimited by two right ascensions and two declination sines, relatively to the caps.
+         *
+         * @param ra0 the smallest right ascension.
+         * @param ra1 the largest right ascension.
+         * @param z0  the smallest declination sine.
+         * @param z1  the largest declination sine.
+         * @return INSIDE if the cell lies in all the caps, OUTSIDE if it does not meet one of them, CROSSING otherwise.
+         */
+        private int position(double ra0, double ra1, double z0, double z1) {
+            boolean inside = true;
+            for (int i = 0; i < poles.length; ++i) {
+                double nearest = raDistance(poleRas[i], ra0, ra1, false);
+                if (extremeDot(i, Math.cos(nearest), z0, z1, true) < cosRadii[i]) return OUTSIDE;
+
+                double farthest = raDistance(poleRas[i], ra0, ra1, true);
+                if (extremeDot(i, Math.cos(farthest), z0, z1, false) < cosRadii[i]) inside = false;
+            }
+            return inside ? INSIDE : CROSSING;
+        }
+
+
+        /**
+         * Computes the extreme value of the dot product with a pole, along the declination sines of the cell,
+         * for a fixed difference of right ascension. The dot product is z zp + cos(dra) sqrt(1 - z^2) sqrt(1 - zp^2),
+         * its extrema lie at the bounds of the interval or at its critical point.
+         *
+         * @param i       the index of the cap.
+         * @param cosDra  the cosine of the difference of right ascension.
+         * @param z0      the smallest declination sine.
+         * @param z1      the largest declination sine.
+         * @param maximum true for the maximum, false for the minimum.
+         * @return the extreme value.
+         */
+        private double extremeDot(int i, double cosDra, double z0, double z1, boolean maximum) {
+            double zp = poleSinDecs[i];
+            double k = cosDra * poleCosDecs[i];
+
+            double extreme = dotAt(zp, k, z0);
+            extreme = maximum ? Math.max(extreme, dotAt(zp, k, z1)) : Math.min(extreme, dotAt(zp, k, z1));
+
+            if (k != 0) {
+                double t = zp / k;
+                double critical = t / Math.sqrt(1 + t * t);
+                if (critical > z0 && critical < z1) {
+                    extreme = maximum ? Math.max(extreme, dotAt(zp, k, critical)) : Math.min(extreme, dotAt(zp, k, critical));
+                }
+            }
+            return extreme;
+        }
+
+
+        /**
+         * Computes the dot product with a pole at the given declination sine.
+         *
+         * @param zp the declination sine of the pole.
+         * @param k  the cosine of the difference of right ascension, times the declination cosine of the pole.
+         * @param z  the declination sine.
+         * @return the dot product.
+         */
+        private static double dotAt(double zp, double k, double z) {
+            return zp * z + k * Math.sqrt(Math.max(0, 1 - z * z));
+        }
+
+
+        /**
+         * Computes the nearest or farthest angular difference between a right ascension and an interval of right ascensions.
+         *
+         * @param ra       the right ascension.
+         * @param ra0      the beginning of the interval.
+         * @param ra1      the end of the interval.
+         * @param farthest true for the farthest difference, false for the nearest.
+         * @return the difference, between 0 and pi.
+         */
+        private static double raDistance(double ra, double ra0, double ra1, boolean farthest) {
+            double target = farthest ? ra + Math.PI : ra;
+            if (Angle.normalizePositive(target - ra0) <= ra1 - ra0) return farthest ? Math.PI : 0;
+
+            double d0 = Math.abs(Angle.normalizePositive(ra0 - ra + Math.PI) - Math.PI);
+            double d1 = Math.abs(Angle.normalizePositive(ra1 - ra + Math.PI) - Math.PI);
+            return farthest ? Math.max(d0, d1) : Math.min(d0, d1);
+        }
+    }
+
+
+    /**
+     * Growable array of the indices found by a search.
+     */
+    private final static class Result {
+
+        private int[] indices = new int[64];
+        private int size;
+
+
+        /**
+         * Adds an index.
+         *
+         * @param index the index.
+         */
+        private void add(int index) {
+            if (size == indices.length) indices = Arrays.copyOf(indices, 2 * size);
+            indices[size++] = index;
+        }
+
+
+        /**
+         * Adds a range of indices of the given array.
+         *
+         * @param source the array.
+         * @param from   the first index of the range.
+         * @param to     the end of the range, exclusive.
+         */
+        private void addAll(int[] source, int from, int to) {
+            int count = to - from;
+            if (size + count > indices.length) indices = Arrays.copyOf(indices, Math.max(2 * indices.length, size + count));
+            System.arraycopy(source, from, indices, size, count);
+            size += count;
+        }
+
+
+        /**
+         * Copies the indices found.
+         *
+         * @return the indices.
+         */
+        private int[] toArray() {
+            return Arrays.copyOf(indices, size);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import ch.epfl.rigel.Preconditions;
 import ch.epfl.rigel.coordinates.EquatorialCoordinates;
 import ch.epfl.rigel.math.ClosedInterval;
 
+import java.util.Objects;
+
 /**
  * Star, a Celestial Object defined by an hipparcos ID and a color index.
  *
@@ -13,12 +15,17 @@ import ch.epfl.rigel.math.ClosedInterval;
 public final class Star extends CelestialObject {
 
     private final int hipparcosId;
-    private final static ClosedInterval COLOR_INTERVAL = ClosedInterval.of(-0.5, 5.5);
+    private final String bayer, constellation;
+    // Arena containing the name and identifier of the name in it, null if the name is stored by the celestial object.
+    private final NameArena nameArena;
+    private final int nameId;
+    final static ClosedInterval COLOR_INTERVAL = ClosedInterval.of(-0.5, 5.5);
+    private final float colorIndex;
     private final int colorTemperature;
 
 
     /**
-     * Constructor of the Star.
+     * Constructor of the Star, whose constellation is unknown.
      * The angular size of a star is 0.
      *
      * @param hipparcosId   hipparcos ID.
@@ -30,12 +37,105 @@ public final class Star extends CelestialObject {
      *                                  if the color index is not included in the color interval given as an attribute.
      */
     public Star(int hipparcosId, String name, EquatorialCoordinates equatorialPos, float magnitude, float colorIndex) {
+        this(hipparcosId, name, "", equatorialPos, magnitude, colorIndex);
+    }
+
+
+    /**
+     * Constructor of the Star.
+     * The angular size of a star is 0.
+     *
+     * @param hipparcosId   hipparcos ID.
+     * @param name          name of star.
+     * @param constellation code of the constellation of the star, e.g "Ori", empty if unknown.
+     * @param equatorialPos equatorial position of the star.
+     * @param magnitude     magnitude of the star.
+     * @param colorIndex    color index of the star.
+     * @throws IllegalArgumentException if the Hipparcos ID is negative or
+     *                                  if the color index is not included in the color interval given as an attribute.
+     */
+    public Star(int hipparcosId, String name, String constellation, EquatorialCoordinates equatorialPos, float magnitude, float colorIndex) {
+        this(hipparcosId, name, "", constellation, equatorialPos, magnitude, colorIndex);
+    }
+
+
+    /**
+     * Constructor of the Star, with its Bayer designation.
+     * The angular size of a star is 0.
+     *
+     * @param hipparcosId   hipparcos ID.
+     * @param name          name of star.
+     * @param bayer         Bayer designation of the star, e.g "Alp", empty if unknown.
+     * @param constellation code of the constellation of the star, e.g "Ori", empty if unknown.
+     * @param equatorialPos equatorial position of the star.
+     * @param magnitude     magnitude of the star.
+     * @param colorIndex    color index of the star.
+     * @throws IllegalArgumentException if the Hipparcos ID is negative or
+     *                                  if the color index is not included in the color interval given as an attribute.
+     */
+    public Star(int hipparcosId, String name, String bayer, String constellation, EquatorialCoordinates equatorialPos, float magnitude, float colorIndex) {
         super(name, equatorialPos, 0, magnitude);
 
         Preconditions.checkArgument(hipparcosId >= 0);
         this.hipparcosId = hipparcosId;
+        this.bayer = Objects.requireNonNull(bayer);
+        this.constellation = Objects.requireNonNull(constellation);
+        this.nameArena = null;
+        this.nameId = -1;
         float checkedColorIndex = (float) Preconditions.checkInInterval(COLOR_INTERVAL, colorIndex);
-        colorTemperature = (int) (4600 * (1 / (0.92 * checkedColorIndex + 1.7) + 1 / (0.92 * checkedColorIndex + 0.62)));
+        this.colorIndex = checkedColorIndex;
+        colorTemperature = colorTemperatureOf(checkedColorIndex);
+    }
+
+
+    /**
+     * Constructor of a Star whose name is stored in an arena, and only materialized when asked for.
+     *
+     * @param hipparcosId   hipparcos ID.
+     * @param nameArena     the arena containing the name of the star.
+     * @param nameId        the identifier of the name in the arena.
+     * @param bayer         Bayer designation of the star, e.g "Alp", empty if unknown.
+     * @param constellation code of the constellation of the star, e.g "Ori", empty if unknown.
+     * @param equatorialPos equatorial position of the star.
+     * @param magnitude     magnitude of the star.
+     * @param colorIndex    color index of the star.
+     * @throws IllegalArgumentException if the Hipparcos ID is negative or
+     *                                  if the color index is not included in the color interval given as an attribute.
+     */
+    Star(int hipparcosId, NameArena nameArena, int nameId, String bayer, String constellation, EquatorialCoordinates equatorialPos, float magnitude, float colorIndex) {
+        super(equatorialPos, 0, magnitude);
+
+        Preconditions.checkArgument(hipparcosId >= 0);
+        this.hipparcosId = hipparcosId;
+        this.bayer = Objects.requireNonNull(bayer);
+        this.constellation = Objects.requireNonNull(constellation);
+        this.nameArena = Objects.requireNonNull(nameArena);
+        this.nameId = nameId;
+        float checkedColorIndex = (float) Preconditions.checkInInterval(COLOR_INTERVAL, colorIndex);
+        this.colorIndex = checkedColorIndex;
+        colorTemperature = colorTemperatureOf(checkedColorIndex);
+    }
+
+
+    /**
+     * Computes the color temperature of a star in Kelvin degrees, rounded by default.
+     *
+     * @param colorIndex the color index of the star.
+     * @return the color temperature.
+     */
+    private static int colorTemperatureOf(float colorIndex) {
+        return (int) (4600 * (1 / (0.92 * colorIndex + 1.7) + 1 / (0.92 * colorIndex + 0.62)));
+    }
+
+
+    /**
+     * Getter for the name of the star, materialized from its arena if it is stored in one.
+     *
+     * @return the name of the star.
+     */
+    @Override
+    public String name() {
+        return (nameArena == null) ? super.name() : nameArena.name(nameId);
     }
 
 
@@ -49,6 +149,36 @@ public final class Star extends CelestialObject {
     }
 
 
+    /**
+     * Return the Bayer designation of the star.
+     *
+     * @return the Bayer designation, e.g "Alp", empty if unknown.
+     */
+    public String bayer() {
+        return bayer;
+    }
+
+
+    /**
+     * Return the code of the constellation of the star.
+     *
+     * @return the code of the constellation, e.g "Ori", empty if unknown.
+     */
+    public String constellation() {
+        return constellation;
+    }
+
+
+    /**
+     * Return the color index of the star.
+     *
+     * @return the color index of the star.
+     */
+    public double colorIndex() {
+        return colorIndex;
+    }
+
+
     /**
      * Return the color temperature of the star in Kelvin degrees and rounded by default.
      *
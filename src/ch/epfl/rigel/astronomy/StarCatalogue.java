@@ -1,12 +1,22 @@
 package ch.epfl.rigel.astronomy;
 
+import ch.epfl.rigel.Preconditions;
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+import ch.epfl.rigel.monitoring.CatalogueLoadEvent;
+
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Collections;
+import java.util.function.Supplier;
 
 
 /**
@@ -21,12 +31,27 @@ public final class StarCatalogue {
     //List with all the stars.
     private final List<Star> starList;
 
+    //Columns view of the stars, possibly stored outside of the heap.
+    private final StarColumns columns;
+
     //Map that associates for each asterism the list with its stars represented by the their index in the star list attribute.
     private final HashMap<Asterism, List<Integer>> asterismListMap;
 
     //Set with all the valid asterisms.
     private final Set<Asterism> asterismList;
 
+    //Flat table of the star indices of the asterisms.
+    private final AsterismPolylines asterismPolylines;
+
+    //Index of each hipparcos ID in the star list, built on the first lookup.
+    private volatile IntIntMap hipparcosIndices;
+
+    //Name and constellation indexes of the stars, built on the first search.
+    private volatile StarNameIndex nameIndex;
+
+    //Spatial index of the stars, built on the first search.
+    private volatile SkyPartition partition;
+
 
     /**
      * Constructor that creates the star catalogue with the given stars and asterisms lists.
@@ -37,19 +62,28 @@ public final class StarCatalogue {
      */
     public StarCatalogue(List<Star> stars, List<Asterism> asterisms) {
         starList = List.copyOf(stars);
+        columns = new HeapStarColumns(starList);
         asterismListMap = new HashMap<>();
-        HashMap<Star, Integer> starToIndex = new HashMap<>();
-        for (int i = 0; i < stars.size(); ++i) {
-            starToIndex.put(stars.get(i), i);
-        }
+        //Only built for the stars which are not found by their hipparcos ID, i.e unknown or duplicated IDs.
+        HashMap<Star, Integer> starToIndex = null;
 
         for (Asterism asterism : asterisms) {
 
             List<Integer> indexes = new ArrayList<>();
 
             for (Star star : asterism.stars()) {
-                int index;
-                if ((index = starToIndex.getOrDefault(star, -1)) != -1) {
+                int index = indexOfHipparcos(star.hipparcosId());
+                if (index == -1 || starList.get(index) != star) {
+                    if (starToIndex == null) {
+                        starToIndex = new HashMap<>();
+                        for (int i = 0; i < starList.size(); ++i) {
+                            starToIndex.put(starList.get(i), i);
+                        }
+                    }
+                    index = starToIndex.getOrDefault(star, -1);
+                }
+
+                if (index != -1) {
                     indexes.add(index);
                 } else {
                     throw new IllegalArgumentException("A star in an asterism does not exist in the given stars list");
@@ -59,6 +93,58 @@ public final class StarCatalogue {
         }
 
         asterismList = Collections.unmodifiableSet(asterismListMap.keySet());
+        asterismPolylines = new AsterismPolylines(asterismListMap);
+    }
+
+
+    /**
+     * Trusted constructor, used when the catalogue has already been validated, e.g by a snapshot.
+     * Neither the stars nor the indices are checked.
+     *
+     * @param stars           the stars of the catalogue.
+     * @param asterismIndices the asterisms, associated with the indices of their stars in the stars list.
+     */
+    StarCatalogue(List<Star> stars, Map<Asterism, List<Integer>> asterismIndices) {
+        starList = List.copyOf(stars);
+        columns = new HeapStarColumns(starList);
+        asterismListMap = new HashMap<>(asterismIndices);
+        asterismList = Collections.unmodifiableSet(asterismListMap.keySet());
+        asterismPolylines = new AsterismPolylines(asterismListMap);
+    }
+
+
+    /**
+     * Constructor that creates the star catalogue with the given star columns, typically stored outside of the heap.
+     * The stars list is then a view of the columns, materializing each star when accessed.
+     *
+     * @param columns         the stars of the catalogue.
+     * @param asterismIndices the asterisms, associated with the indices of their stars in the columns.
+     * @throws IllegalArgumentException if an index is not the index of a star of the columns.
+     */
+    public StarCatalogue(StarColumns columns, Map<Asterism, List<Integer>> asterismIndices) {
+        this.columns = columns;
+        starList = new AbstractList<>() {
+            @Override
+            public Star get(int index) {
+                Objects.checkIndex(index, columns.size());
+                return columns.star(index);
+            }
+
+            @Override
+            public int size() {
+                return columns.size();
+            }
+        };
+
+        asterismListMap = new HashMap<>();
+        for (Map.Entry<Asterism, List<Integer>> entry : asterismIndices.entrySet()) {
+            for (int index : entry.getValue()) {
+                Preconditions.checkArgument(index >= 0 && index < columns.size());
+            }
+            asterismListMap.put(entry.getKey(), List.copyOf(entry.getValue()));
+        }
+        asterismList = Collections.unmodifiableSet(asterismListMap.keySet());
+        asterismPolylines = new AsterismPolylines(asterismListMap);
     }
 
 
@@ -72,6 +158,16 @@ public final class StarCatalogue {
     }
 
 
+    /**
+     * Getter for the columns view of the stars, in the same order as the stars list.
+     *
+     * @return the columns.
+     */
+    public StarColumns columns() {
+        return columns;
+    }
+
+
     /**
      * Getter for the asterisms list (as a set).
      *
@@ -98,6 +194,139 @@ public final class StarCatalogue {
     }
 
 
+    /**
+     * Finds the index of the star of the given hipparcos ID, with a map built on the first call.
+     *
+     * @param hipparcosId the hipparcos ID.
+     * @return the index of the first star of this ID in the stars list, or -1 if there is none or if the ID is 0, i.e unknown.
+     */
+    public int indexOfHipparcos(int hipparcosId) {
+        IntIntMap built = hipparcosIndices;
+        if (built == null) {
+            synchronized (this) {
+                built = hipparcosIndices;
+                if (built == null) {
+                    hipparcosIndices = built = hipparcosIndicesOf(columns);
+                }
+            }
+        }
+        return (hipparcosId > 0) ? built.get(hipparcosId, -1) : -1;
+    }
+
+
+    /**
+     * Builds the map from the known hipparcos IDs of the given stars to the index of the first star of each ID.
+     *
+     * @param columns the stars.
+     * @return the map.
+     */
+    private static IntIntMap hipparcosIndicesOf(StarColumns columns) {
+        IntIntMap indices = new IntIntMap(columns.size());
+        for (int i = 0; i < columns.size(); ++i) {
+            int hipparcosId = columns.hipparcosId(i);
+            if (hipparcosId > 0) indices.putIfAbsent(hipparcosId, i);
+        }
+        return indices;
+    }
+
+
+    /**
+     * Getter for the flat table of the star indices of the asterisms.
+     *
+     * @return the table.
+     */
+    public AsterismPolylines asterismPolylines() {
+        return asterismPolylines;
+    }
+
+
+    /**
+     * Finds the stars within the given angular distance of a point, using the sky partition of the catalogue.
+     *
+     * @param centre the centre of the cone.
+     * @param radius the angular radius of the cone, in radians.
+     * @return the indices of the stars in the stars list.
+     * @throws IllegalArgumentException if the radius is negative.
+     */
+    public int[] coneSearch(EquatorialCoordinates centre, double radius) {
+        return partition().coneSearch(centre, radius);
+    }
+
+
+    /**
+     * Finds the stars inside a convex spherical polygon, using the sky partition of the catalogue.
+     *
+     * @param vertices the vertices of the polygon, at least 3, in either orientation.
+     * @return the indices of the stars in the stars list.
+     * @throws IllegalArgumentException if there are less than 3 vertices.
+     */
+    public int[] polygonSearch(List<EquatorialCoordinates> vertices) {
+        return partition().polygonSearch(vertices);
+    }
+
+
+    /**
+     * Getter for the name and constellation indexes of the stars, built on the first call.
+     *
+     * @return the indexes, whose star indices are the indices in the stars list.
+     */
+    public StarNameIndex nameIndex() {
+        StarNameIndex built = nameIndex;
+        if (built == null) {
+            synchronized (this) {
+                built = nameIndex;
+                if (built == null) {
+                    nameIndex = built = new StarNameIndex(columns);
+                }
+            }
+        }
+        return built;
+    }
+
+
+    /**
+     * Getter for the sky partition of the stars, built on the first call.
+     *
+     * @return the partition.
+     */
+    public SkyPartition partition() {
+        SkyPartition built = partition;
+        if (built == null) {
+            synchronized (this) {
+                built = partition;
+                if (built == null) {
+                    partition = built = new SkyPartition(columns);
+                }
+            }
+        }
+        return built;
+    }
+
+
+    /**
+     * Sorts the indices of the given stars by increasing magnitude, the stars of equal magnitudes keeping their order.
+     *
+     * @param stars the stars.
+     * @return the indices of the stars, sorted.
+     */
+    static int[] magnitudeOrder(List<Star> stars) {
+        // Each key contains the sortable bits of the magnitude, followed by the index of the star.
+        long[] keys = new long[stars.size()];
+        for (int i = 0; i < keys.length; ++i) {
+            int bits = Float.floatToIntBits((float) stars.get(i).magnitude());
+            int sortableBits = (bits < 0) ? bits ^ Integer.MAX_VALUE : bits;
+            keys[i] = ((long) sortableBits << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+
     /**
      * Builder for the star catalogue.
      */
@@ -105,6 +334,8 @@ public final class StarCatalogue {
 
         private final List<Star> stars;
         private final List<Asterism> asterisms;
+        //Index of each known hipparcos ID in the stars list, updated as the stars are added.
+        private final IntIntMap hipparcosIndices;
 
         /**
          * Default constructor, creating empty instances of the stars and asterisms lists.
@@ -112,6 +343,7 @@ public final class StarCatalogue {
         public Builder() {
             stars = new ArrayList<>();
             asterisms = new ArrayList<>();
+            hipparcosIndices = new IntIntMap(0);
         }
 
         /**
@@ -121,10 +353,21 @@ public final class StarCatalogue {
          * @return the builder containing the new star.
          */
         public Builder addStar(Star star) {
+            if (star.hipparcosId() > 0) hipparcosIndices.putIfAbsent(star.hipparcosId(), stars.size());
             stars.add(star);
             return this;
         }
 
+        /**
+         * Finds the index of the star of the given hipparcos ID among the stars added so far.
+         *
+         * @param hipparcosId the hipparcos ID.
+         * @return the index of the first star of this ID in the stars list, or -1 if there is none or if the ID is 0, i.e unknown.
+         */
+        public int indexOfHipparcos(int hipparcosId) {
+            return (hipparcosId > 0) ? hipparcosIndices.get(hipparcosId, -1) : -1;
+        }
+
         /**
          * Getter for the list of stars.
          *
@@ -163,8 +406,63 @@ public final class StarCatalogue {
             return new StarCatalogue(stars, asterisms);
         }
 
+        /**
+         * Notifies the listener of the catalogue of the stars up to each of the given magnitudes, with the asterisms
+         * they include, before the whole catalogue is built. The stars are sorted once by magnitude, the stars of
+         * each tier being a prefix of them. A tier including all the stars is not notified.
+         *
+         * @param limitingMagnitudes the limiting magnitudes of the tiers, in increasing order.
+         * @param listener           the listener of the tiers.
+         * @return the builder.
+         * @throws IllegalArgumentException if an asterism includes a star that is not in the stars list.
+         */
+        public Builder buildTiers(double[] limitingMagnitudes, TierListener listener) {
+            int[] order = magnitudeOrder(stars);
+            int[] ranks = new int[order.length];
+            List<Star> sortedStars = new ArrayList<>(order.length);
+            for (int i = 0; i < order.length; ++i) {
+                ranks[order[i]] = i;
+                sortedStars.add(stars.get(order[i]));
+            }
+
+            // Each key contains the number of sorted stars including all the stars of the asterism,
+            // followed by the index of the asterism.
+            long[] asterismKeys = new long[asterisms.size()];
+            List<List<Integer>> asterismRanks = new ArrayList<>(asterisms.size());
+            for (int i = 0; i < asterisms.size(); ++i) {
+                List<Integer> starRanks = new ArrayList<>(asterisms.get(i).stars().size());
+                int end = 0;
+                for (Star star : asterisms.get(i).stars()) {
+                    int index = indexOfHipparcos(star.hipparcosId());
+                    if (index == -1 || stars.get(index) != star) index = stars.indexOf(star);
+                    Preconditions.checkArgument(index != -1);
+                    starRanks.add(ranks[index]);
+                    end = Math.max(end, ranks[index] + 1);
+                }
+                asterismRanks.add(starRanks);
+                asterismKeys[i] = ((long) end << 32) | i;
+            }
+            Arrays.sort(asterismKeys);
+
+            Map<Asterism, List<Integer>> tierAsterisms = new HashMap<>();
+            int tierEnd = 0, nextAsterism = 0;
+            for (double limitingMagnitude : limitingMagnitudes) {
+                while (tierEnd < sortedStars.size() && sortedStars.get(tierEnd).magnitude() <= limitingMagnitude) ++tierEnd;
+                if (tierEnd == sortedStars.size()) break;
+
+                for (; nextAsterism < asterismKeys.length && (int) (asterismKeys[nextAsterism] >>> 32) <= tierEnd; ++nextAsterism) {
+                    int asterism = (int) asterismKeys[nextAsterism];
+                    tierAsterisms.put(asterisms.get(asterism), asterismRanks.get(asterism));
+                }
+                List<Star> tierStars = sortedStars.subList(0, tierEnd);
+                listener.tierRead(limitingMagnitude, () -> new StarCatalogue(tierStars, tierAsterisms));
+            }
+            return this;
+        }
+
         /**
          * Loading method, given an input stream and a loader.
+         * The loading is reported to the flight recorder, with the number of bytes read and of stars or asterisms added.
          *
          * @param inputStream the input stream, i.e a list of asterisms or a list of stars data.
          * @param loader      the loader corresponding to the input stream.
@@ -172,13 +470,90 @@ public final class StarCatalogue {
          * @throws IOException if there is an input error.
          */
         public Builder loadFrom(InputStream inputStream, Loader loader) throws IOException {
-            loader.load(inputStream, this);
+            CatalogueLoadEvent event = new CatalogueLoadEvent(loader.getClass().getSimpleName());
+            event.begin();
+
+            CountingInputStream countingStream = new CountingInputStream(inputStream);
+            int initialSize = stars.size() + asterisms.size();
+            loader.load(countingStream, this);
+
+            event.complete(stars.size() + asterisms.size() - initialSize, countingStream.count());
             return this;
         }
 
     }
 
 
+    /**
+     * Input stream counting the bytes read from the underlying stream.
+     */
+    private final static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+
+        /**
+         * Constructor, wraps the given stream.
+         *
+         * @param in the underlying input stream.
+         */
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+
+        /**
+         * Getter for the number of bytes read so far.
+         *
+         * @return the number of bytes.
+         */
+        private long count() {
+            return count;
+        }
+
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) ++count;
+            return b;
+        }
+
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+
+    /**
+     * Receives the catalogues of the brightest stars of a catalogue, while it is loaded.
+     */
+    @FunctionalInterface
+    public interface TierListener {
+
+        /**
+         * Called once all the stars up to a limiting magnitude are available, before the whole catalogue is.
+         *
+         * @param limitingMagnitude the limiting magnitude.
+         * @param tier              the builder of the catalogue of these stars and of the asterisms they include,
+         *                          to be called before returning, and only if the catalogue is needed.
+         */
+        void tierRead(double limitingMagnitude, Supplier<StarCatalogue> tier);
+    }
+
+
     /**
      * Interface defining a general loader.
      */
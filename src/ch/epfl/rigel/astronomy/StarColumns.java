@@ -0,0 +1,116 @@
+package ch.epfl.rigel.astronomy;
+
+import ch.epfl.rigel.coordinates.EquatorialCoordinates;
+
+/**
+ * Stars of a catalogue stored by columns, each star being identified by its index.
+ * The stars are only materialized as Star objects on demand.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public interface StarColumns {
+
+    /**
+     * Getter for the number of stars.
+     *
+     * @return the number of stars.
+     */
+    int size();
+
+
+    /**
+     * Getter for the hipparcos ID of a star.
+     *
+     * @param index the index of the star.
+     * @return the hipparcos ID, 0 if unknown.
+     */
+    int hipparcosId(int index);
+
+
+    /**
+     * Getter for the name of a star.
+     *
+     * @param index the index of the star.
+     * @return the name.
+     */
+    String name(int index);
+
+
+    /**
+     * Getter for the Bayer designation of a star.
+     *
+     * @param index the index of the star.
+     * @return the Bayer designation, e.g "Alp", empty if unknown.
+     */
+    String bayer(int index);
+
+
+    /**
+     * Getter for the constellation code of a star.
+     *
+     * @param index the index of the star.
+     * @return the code of the constellation, e.g "Ori", empty if unknown.
+     */
+    String constellation(int index);
+
+
+    /**
+     * Getter for the right ascension of a star.
+     *
+     * @param index the index of the star.
+     * @return the right ascension, in radians.
+     */
+    double ra(int index);
+
+
+    /**
+     * Getter for the declination of a star.
+     *
+     * @param index the index of the star.
+     * @return the declination, in radians.
+     */
+    double dec(int index);
+
+
+    /**
+     * Getter for the magnitude of a star.
+     *
+     * @param index the index of the star.
+     * @return the magnitude.
+     */
+    double magnitude(int index);
+
+
+    /**
+     * Getter for the color index of a star.
+     *
+     * @param index the index of the star.
+     * @return the color index.
+     */
+    double colorIndex(int index);
+
+
+    /**
+     * Finds the end of the tier of the stars up to the given magnitude: all the stars of magnitude lower or equal to
+     * the given one have a smaller index. The stars before the end can still be fainter, if the columns are not
+     * sorted by magnitude.
+     *
+     * @param limitingMagnitude the limiting magnitude.
+     * @return the index following the tier.
+     */
+    int tierEnd(double limitingMagnitude);
+
+
+    /**
+     * Materializes a star.
+     *
+     * @param index the index of the star.
+     * @return a new star.
+     */
+    default Star star(int index) {
+        return new Star(hipparcosId(index), name(index), bayer(index), constellation(index), EquatorialCoordinates.of(ra(index), dec(index)),
+                (float) magnitude(index), (float) colorIndex(index));
+    }
+
+}
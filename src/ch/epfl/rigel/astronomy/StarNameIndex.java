@@ -0,0 +1,286 @@
+package ch.epfl.rigel.astronomy;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Secondary indexes of the stars of a catalogue, for the searches by name and by constellation.
+ * Each star is indexed by its name and by its Bayer designation followed by its constellation, e.g "Alp Ori" for
+ * Betelgeuse, so that the named stars are also found by designation.
+ * The names are indexed by a compressed prefix trie, whose nodes are stored in arrays: each node covers the range
+ * of the sorted names starting with its prefix, so that a prefix query walks at most one node per character
+ * and returns a range of the sorted stars. The constellations are indexed by posting lists of star indices.
+ * The lookups ignore the case and the accents. The index is immutable.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class StarNameIndex {
+
+    private final static Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    // Normalized names and designations, sorted, and the indices of their stars, a star appearing at most twice.
+    private final String[] names;
+    private final int[] sortedStars;
+    private final int starCount;
+
+    // Nodes of the trie: range of the sorted names, length of the prefix, children and first character of the edge.
+    private final int[] nodeStarts, nodeEnds, nodeDepths, firstChildren, childCounts;
+    private final char[] edgeChars;
+
+    // Indices of the stars of each constellation, keyed by normalized code.
+    private final Map<String, int[]> constellations;
+
+
+    /**
+     * Builds the indexes of the given stars.
+     *
+     * @param columns the stars.
+     */
+    public StarNameIndex(StarColumns columns) {
+        starCount = columns.size();
+        String[] keys = new String[2 * starCount];
+        int[] keyStars = new int[2 * starCount];
+        int size = 0;
+        for (int i = 0; i < starCount; ++i) {
+            String name = normalized(columns.name(i));
+            keys[size] = name;
+            keyStars[size++] = i;
+
+            // The stars without a proper name are already named after their designation.
+            String bayer = columns.bayer(i);
+            if (!bayer.isEmpty()) {
+                String designation = normalized(bayer + " " + columns.constellation(i));
+                if (!designation.equals(name)) {
+                    keys[size] = designation;
+                    keyStars[size++] = i;
+                }
+            }
+        }
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing((Integer i) -> keys[i]).thenComparingInt(i -> keyStars[i]));
+
+        names = new String[size];
+        sortedStars = new int[size];
+        for (int i = 0; i < size; ++i) {
+            sortedStars[i] = keyStars[order[i]];
+            names[i] = keys[order[i]];
+        }
+
+        // A compressed trie of n names has at most 2n - 1 nodes, besides its root.
+        int capacity = 2 * size + 1;
+        nodeStarts = new int[capacity];
+        nodeEnds = new int[capacity];
+        nodeDepths = new int[capacity];
+        firstChildren = new int[capacity];
+        childCounts = new int[capacity];
+        edgeChars = new char[capacity];
+        buildTrie();
+
+        constellations = postingLists(columns);
+    }
+
+
+    /**
+     * Normalizes a text for the lookups: its accents are removed and its letters are lower cased.
+     *
+     * @param text the text.
+     * @return the normalized text.
+     */
+    public static String normalized(String text) {
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && ascii; ++i) {
+            ascii = text.charAt(i) < 0x80;
+        }
+        String unaccented = ascii ? text : COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return unaccented.toLowerCase(Locale.ROOT);
+    }
+
+
+    /**
+     * Finds the stars whose name or designation starts with the given prefix.
+     *
+     * @param prefix the prefix, the case and the accents being ignored.
+     * @param limit  the maximum number of stars returned.
+     * @return the indices of the stars, each one once, in the alphabetical order of their first matching name or designation.
+     */
+    public int[] startingWith(String prefix, int limit) {
+        long range = rangeOf(normalized(prefix));
+        int start = (int) (range >>> 32), end = (int) range;
+
+        int[] stars = new int[Math.max(0, Math.min(limit, end - start))];
+        IntIntMap found = new IntIntMap(stars.length);
+        int count = 0;
+        for (int i = start; i < end && count < stars.length; ++i) {
+            if (found.get(sortedStars[i], -1) == -1) {
+                found.put(sortedStars[i], count);
+                stars[count++] = sortedStars[i];
+            }
+        }
+        return Arrays.copyOf(stars, count);
+    }
+
+
+    /**
+     * Counts the stars whose name or designation starts with the given prefix.
+     *
+     * @param prefix the prefix, the case and the accents being ignored.
+     * @return the number of stars, each one being counted once.
+     */
+    public int countStartingWith(String prefix) {
+        long range = rangeOf(normalized(prefix));
+        int start = (int) (range >>> 32), end = (int) range;
+        // Without designations, every name of the range belongs to a different star.
+        if (names.length == starCount) return end - start;
+
+        IntIntMap found = new IntIntMap(end - start);
+        for (int i = start; i < end; ++i) {
+            found.putIfAbsent(sortedStars[i], i);
+        }
+        return found.size();
+    }
+
+
+    /**
+     * Finds the stars of a constellation.
+     *
+     * @param constellation the code of the constellation, e.g "Ori", the case being ignored.
+     * @return the indices of the stars, in increasing order.
+     */
+    public int[] inConstellation(String constellation) {
+        int[] stars = constellations.get(normalized(constellation));
+        return (stars == null) ? new int[0] : stars.clone();
+    }
+
+
+    /**
+     * Walks down the trie along the given prefix.
+     *
+     * @param prefix the normalized prefix.
+     * @return the range of the sorted names starting with the prefix, its start in the high int and its end in the low int.
+     */
+    private long rangeOf(String prefix) {
+        if (names.length == 0) return 0;
+
+        int node = 0;
+        int checked = 0;
+        while (true) {
+            // The characters of the prefix covered by the node are compared with any of its names, e.g the first one.
+            String name = names[nodeStarts[node]];
+            int depth = Math.min(nodeDepths[node], prefix.length());
+            if (!prefix.regionMatches(checked, name, checked, depth - checked)) return 0;
+
+            if (prefix.length() <= nodeDepths[node]) return ((long) nodeStarts[node] << 32) | nodeEnds[node];
+
+            node = child(node, prefix.charAt(nodeDepths[node]));
+            if (node == -1) return 0;
+            checked = depth + 1;
+        }
+    }
+
+
+    /**
+     * Finds the child of a node by the first character of its edge, by binary search as the children are sorted.
+     *
+     * @param node the node.
+     * @param c    the character.
+     * @return the child, or -1 if there is none.
+     */
+    private int child(int node, char c) {
+        int low = firstChildren[node], high = low + childCounts[node];
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (edgeChars[middle] < c) {
+                low = middle + 1;
+            } else if (edgeChars[middle] > c) {
+                high = middle;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Builds the trie in breadth first order, so that the children of each node are contiguous.
+     * The prefix of a node is the longest prefix shared by its names, i.e by the first and the last one.
+     */
+    private void buildTrie() {
+        nodeEnds[0] = names.length;
+        nodeDepths[0] = (names.length == 0) ? 0 : commonPrefixLength(names[0], names[names.length - 1]);
+        int nodeCount = 1;
+
+        for (int node = 0; node < nodeCount; ++node) {
+            int depth = nodeDepths[node];
+            int start = nodeStarts[node];
+            // The names ending at the node come first, and have no child.
+            while (start < nodeEnds[node] && names[start].length() == depth) ++start;
+
+            firstChildren[node] = nodeCount;
+            while (start < nodeEnds[node]) {
+                char c = names[start].charAt(depth);
+                int end = start + 1;
+                while (end < nodeEnds[node] && names[end].charAt(depth) == c) ++end;
+
+                nodeStarts[nodeCount] = start;
+                nodeEnds[nodeCount] = end;
+                nodeDepths[nodeCount] = commonPrefixLength(names[start], names[end - 1]);
+                edgeChars[nodeCount] = c;
+                ++nodeCount;
+                start = end;
+            }
+            childCounts[node] = nodeCount - firstChildren[node];
+        }
+    }
+
+
+    /**
+     * Computes the length of the longest common prefix of two texts.
+     *
+     * @param a the first text.
+     * @param b the second text.
+     * @return the length of the prefix.
+     */
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) ++i;
+        return i;
+    }
+
+
+    /**
+     * Builds the posting list of each constellation.
+     *
+     * @param columns the stars.
+     * @return the indices of the stars of each constellation, keyed by normalized code.
+     */
+    private static Map<String, int[]> postingLists(StarColumns columns) {
+        String[] codes = new String[columns.size()];
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < columns.size(); ++i) {
+            codes[i] = normalized(columns.constellation(i));
+            if (!codes[i].isEmpty()) counts.merge(codes[i], 1, Integer::sum);
+        }
+
+        Map<String, int[]> postingLists = new HashMap<>();
+        Map<String, Integer> filled = new HashMap<>();
+        for (int i = 0; i < codes.length; ++i) {
+            if (codes[i].isEmpty()) continue;
+            int[] list = postingLists.computeIfAbsent(codes[i], code -> new int[counts.get(code)]);
+            list[filled.merge(codes[i], 1, Integer::sum) - 1] = i;
+        }
+        return postingLists;
+    }
+
+}
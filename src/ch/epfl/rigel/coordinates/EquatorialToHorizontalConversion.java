@@ -32,7 +32,18 @@ public final class EquatorialToHorizontalConversion implements Function<Equatori
      * @param where the given geographic coordinates.
      */
     public EquatorialToHorizontalConversion(ZonedDateTime when, GeographicCoordinates where) {
-        siderealLocal = SiderealTime.local(when, where);
+        this(SiderealTime.greenwich(when), where);
+    }
+
+
+    /**
+     * Constructor taking the Greenwich sidereal time, e.g already computed by an ephemeris.
+     *
+     * @param greenwichSiderealTime the Greenwich sidereal time, in radians.
+     * @param where                 the given geographic coordinates.
+     */
+    public EquatorialToHorizontalConversion(double greenwichSiderealTime, GeographicCoordinates where) {
+        siderealLocal = Angle.normalizePositive(greenwichSiderealTime + where.lon());
 
         sinPhi = sin(where.lat());
         cosPhi = cos(where.lat());
@@ -62,6 +73,26 @@ public final class EquatorialToHorizontalConversion implements Function<Equatori
     }
 
 
+    /**
+     * Method converting the given horizontal coordinates back to equatorial coordinates.
+     *
+     * @param hor the given horizontal coordinates.
+     * @return equatorial coordinates.
+     */
+    public EquatorialCoordinates inverseApply(HorizontalCoordinates hor) {
+
+        double sinAlt = sin(hor.alt());
+        double cosAlt = cos(hor.alt());
+
+        double declinationSin = sinAlt * sinPhi + cosAlt * cosPhi * cos(hor.az());
+
+        double hourAngle = atan2(-cosAlt * cosPhi * sin(hor.az()),
+                                  sinAlt - sinPhi * declinationSin);
+
+        return EquatorialCoordinates.of(Angle.normalizePositive(siderealLocal - hourAngle), asin(declinationSin));
+    }
+
+
     /**
      * @return throws an exception.
      * @throws UnsupportedOperationException if the method is called.
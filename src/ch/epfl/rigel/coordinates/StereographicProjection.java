@@ -135,6 +135,18 @@ public final class StereographicProjection implements Function<HorizontalCoordin
     }
 
 
+    /**
+     * Given a distance to the center of the projection, in the plane, returns the angular distance to the center
+     * of the projection, on the sphere.
+     *
+     * @param distance the distance in the plane.
+     * @return the angular distance, in radians.
+     */
+    public double angularDistanceOf(double distance) {
+        return 2 * atan(distance);
+    }
+
+
     /**
      * Method that projects horizontal coordinates onto a plane.
      *
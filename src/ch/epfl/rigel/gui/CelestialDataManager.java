@@ -40,11 +40,11 @@ public final class CelestialDataManager {
     /**
      * Constructor for the celestial data manager.
      *
-     * @param mainStage the main stage of the program.
+     * @param mainStage     the main stage of the program.
+     * @param celestialData the lines of the celestial object file, as returned by the loadCelestialData method.
      */
-    public CelestialDataManager(Stage mainStage) throws IOException {
-        // Loads the information from the celestial object file.
-        buildCelestialObjectsList();
+    public CelestialDataManager(Stage mainStage, List<String[]> celestialData) {
+        buildCelestialObjectsList(celestialData);
         scene = new Scene(new GridPane());
 
         // Bind the close request of the main stage with the information windows close request.
@@ -57,25 +57,41 @@ public final class CelestialDataManager {
 
 
     /**
-     * Loads the celestial information from the celestial file.
+     * Reads the celestial information from the celestial file.
+     * Does not depend on JavaFX, so that the file can be read on any thread.
      *
+     * @return the lines of the file, comments excluded, split into their fields.
      * @throws IOException if there is an input error.
      */
-    private void buildCelestialObjectsList() throws IOException {
+    public static List<String[]> loadCelestialData() throws IOException {
+        List<String[]> lines = new ArrayList<>();
         String line;
         try (BufferedReader r = new BufferedReader(new InputStreamReader(CelestialDataManager.class.getResourceAsStream(CELESTIAL_FILE_NAME), C))) {
 
             while ((line = r.readLine()) != null) {
                 if (line.charAt(0) != '#') {
-                    if (!line.startsWith("Nom"))
-                        celestObjectData.add(line.split(","));
-                    else {
-                        // Caption for each information is added to the infoLabels list.
-                        INFO_LABELS.addAll(List.of(line.split(",")));
-                    }
+                    lines.add(line.split(","));
                 }
             }
         }
+        return lines;
+    }
+
+
+    /**
+     * Builds the celestial objects list from the lines of the celestial file.
+     *
+     * @param celestialData the lines of the celestial file, split into their fields.
+     */
+    private void buildCelestialObjectsList(List<String[]> celestialData) {
+        for (String[] fields : celestialData) {
+            if (!fields[0].startsWith("Nom"))
+                celestObjectData.add(fields);
+            else {
+                // Caption for each information is added to the infoLabels list.
+                INFO_LABELS.addAll(List.of(fields));
+            }
+        }
     }
 
 
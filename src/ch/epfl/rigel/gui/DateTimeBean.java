@@ -1,7 +1,6 @@
 package ch.epfl.rigel.gui;
 
 import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -9,7 +8,7 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 
 /**
- * JavaFX Bean representing a zoned date time property.
+ * JavaFX Bean representing a zoned date time property, as a view over the observation instant of the sky state.
  *
  * @author Victor Nazianzeno -- Le Jamtel(312075)
  * @author Javier García Arredondo(311166)
@@ -20,14 +19,23 @@ public final class DateTimeBean {
     private final ObjectProperty<LocalTime> time;
     private final ObjectProperty<ZoneId> zoneId;
 
+    private final SkyStateBean skyState;
+
 
     /**
-     * Constructor, initializes the values as null.
+     * Constructor, the properties following the observation instant of the given sky state.
+     * Setting the date, the time or the zone keeps the two others, like the local date time of a zoned date time.
+     *
+     * @param skyState the sky state bean.
      */
-    public DateTimeBean() {
-        date = new SimpleObjectProperty<>(null);
-        time = new SimpleObjectProperty<>(null);
-        zoneId = new SimpleObjectProperty<>(null);
+    public DateTimeBean(SkyStateBean skyState) {
+        this.skyState = skyState;
+        date = skyState.view(s -> s.zonedDateTime().toLocalDate(),
+                (s, d) -> s.withZonedDateTime(ZonedDateTime.of(d, s.zonedDateTime().toLocalTime(), s.zone())));
+        time = skyState.view(s -> s.zonedDateTime().toLocalTime(),
+                (s, t) -> s.withZonedDateTime(ZonedDateTime.of(s.zonedDateTime().toLocalDate(), t, s.zone())));
+        zoneId = skyState.view(SkyState::zone,
+                (s, z) -> s.withZonedDateTime(ZonedDateTime.of(s.zonedDateTime().toLocalDateTime(), z)));
     }
 
 
@@ -116,23 +124,21 @@ public final class DateTimeBean {
 
 
     /**
-     * Computes the zoned date time based on the class properties.
+     * Getter for the zoned date time of the sky state.
      *
-     * @return a new zoned date time.
+     * @return the zoned date time.
      */
     public ZonedDateTime getZonedDateTime() {
-        return ZonedDateTime.of(getDate(), getTime(), getZoneId());
+        return skyState.getState().zonedDateTime();
     }
 
 
     /**
-     * Setter for the zoned date time, i.e the three properties.
+     * Setter for the zoned date time, i.e the three properties, updated at once through the sky state.
      *
      * @param zdt the given zoned date time.
      */
     public void setZonedDateTime(ZonedDateTime zdt) {
-        setDate(zdt.toLocalDate());
-        setTime(zdt.toLocalTime());
-        setZoneId(zdt.getZone());
+        skyState.update(s -> s.withZonedDateTime(zdt));
     }
 }
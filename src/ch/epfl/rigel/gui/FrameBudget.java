@@ -0,0 +1,154 @@
+package ch.epfl.rigel.gui;
+
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+
+import java.util.Arrays;
+
+/**
+ * Frame budget controller of the animation: measures the time spent computing and painting the sky at each pulse,
+ * and lowers the quality of the drawing step by step while the budget is exceeded, raising it back when there
+ * is enough headroom, so that the animation keeps a steady frame rate on the slower machines.
+ * <p>
+ * The durations are smoothed over the last pulses, and the quality is only changed again once the pulses following
+ * a change have been measured. A level left for being over the budget is only tried again after a while,
+ * so that the quality does not oscillate between two levels.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class FrameBudget {
+
+    // Time left to the computation and the painting at each pulse of 60 Hz, the rest being used to render the scene.
+    private final static long BUDGET = 10_000_000L;
+    // Fraction of the budget under which the quality is raised back.
+    private final static double HEADROOM = 0.5;
+    // Weight of the last pulse in the smoothed duration.
+    private final static double SMOOTHING = 0.2;
+    // Numbers of pulses over or under the budget before a change of quality, and of pulses ignored after a change.
+    private final static int LOWER_PULSES = 3, RAISE_PULSES = 60, SETTLE_PULSES = 10;
+    // Number of pulses before a level left for being over the budget is tried again.
+    private final static long RETRY_PULSES = 600;
+
+    private final ObjectProperty<RenderQuality> quality = new SimpleObjectProperty<>(RenderQuality.FULL);
+
+    // Durations measured since the last pulse, in nanoseconds.
+    private long computeNanos, paintNanos;
+    private double smoothedNanos;
+    private int pulsesOver, pulsesUnder, pulsesToSettle;
+
+    // Number of pulses so far, and pulse at which each level was last left for being over the budget.
+    private long pulseCount;
+    private final long[] overBudgetPulses = new long[RenderQuality.values().length];
+
+
+    /**
+     * Constructor, starts at the full quality.
+     */
+    public FrameBudget() {
+        reset();
+    }
+
+
+    /**
+     * Getter for the quality property.
+     *
+     * @return quality as a read-only property.
+     */
+    public ReadOnlyObjectProperty<RenderQuality> qualityProperty() {
+        return quality;
+    }
+
+
+    /**
+     * Getter for the quality.
+     *
+     * @return the current quality of the drawing.
+     */
+    public RenderQuality getQuality() {
+        return quality.get();
+    }
+
+
+    /**
+     * Records the duration of a computation of the sky.
+     *
+     * @param nanos the duration, in nanoseconds.
+     */
+    public void recordCompute(long nanos) {
+        computeNanos += nanos;
+    }
+
+
+    /**
+     * Records the duration of a painting of the sky.
+     *
+     * @param nanos the duration, in nanoseconds.
+     */
+    public void recordPaint(long nanos) {
+        paintNanos += nanos;
+    }
+
+
+    /**
+     * Ends a pulse of the animation: the durations recorded since the previous pulse are compared to the budget,
+     * and the quality is lowered or raised if needed.
+     */
+    public void pulseCompleted() {
+        long pulseNanos = computeNanos + paintNanos;
+        ++pulseCount;
+        computeNanos = 0;
+        paintNanos = 0;
+
+        if (pulsesToSettle > 0) {
+            // The first pulse at the new quality starts the smoothing again.
+            if (pulsesToSettle-- == SETTLE_PULSES) smoothedNanos = pulseNanos;
+            smoothedNanos += SMOOTHING * (pulseNanos - smoothedNanos);
+            return;
+        }
+        smoothedNanos += SMOOTHING * (pulseNanos - smoothedNanos);
+
+        pulsesOver = (smoothedNanos > BUDGET) ? pulsesOver + 1 : 0;
+        pulsesUnder = (smoothedNanos < HEADROOM * BUDGET) ? pulsesUnder + 1 : 0;
+
+        RenderQuality current = getQuality();
+        if (pulsesOver >= LOWER_PULSES && current != current.lower()) {
+            overBudgetPulses[current.ordinal()] = pulseCount;
+            setQuality(current.lower());
+        } else if (pulsesUnder >= RAISE_PULSES && current != current.higher()
+                && pulseCount - overBudgetPulses[current.higher().ordinal()] >= RETRY_PULSES) {
+            setQuality(current.higher());
+        }
+    }
+
+
+    /**
+     * Restores the full quality and drops the durations measured, e.g when the animation starts or stops.
+     */
+    public void reset() {
+        computeNanos = 0;
+        paintNanos = 0;
+        smoothedNanos = 0;
+        pulsesOver = 0;
+        pulsesUnder = 0;
+        pulsesToSettle = 0;
+        pulseCount = RETRY_PULSES;
+        Arrays.fill(overBudgetPulses, 0);
+        quality.set(RenderQuality.FULL);
+    }
+
+
+    /**
+     * Changes the quality, and waits for the pulses at the new quality to be measured before changing it again.
+     *
+     * @param newQuality the new quality.
+     */
+    private void setQuality(RenderQuality newQuality) {
+        pulsesOver = 0;
+        pulsesUnder = 0;
+        pulsesToSettle = SETTLE_PULSES;
+        quality.set(newQuality);
+    }
+
+}
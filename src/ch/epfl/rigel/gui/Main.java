@@ -1,8 +1,5 @@
 package ch.epfl.rigel.gui;
 
-import ch.epfl.rigel.astronomy.AsterismLoader;
-import ch.epfl.rigel.astronomy.HygDatabaseLoader;
-import ch.epfl.rigel.astronomy.StarCatalogue;
 import ch.epfl.rigel.coordinates.GeographicCoordinates;
 import ch.epfl.rigel.coordinates.HorizontalCoordinates;
 import ch.epfl.rigel.sound.SkySoundManager;
@@ -38,6 +35,7 @@ import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
 
@@ -62,7 +60,7 @@ public class Main extends Application {
 
     // Numerical constants.
     private final static int TIMELINE_PERIOD = 100;
-    private final static double CREDIT_HEIGHT = 330d, CREDIT_WIDTH = 480d, OPTION_HEIGHT = 189d, OPTION_WIDTH = 245d, PAD_SIZE = 100d;
+    private final static double CREDIT_HEIGHT = 330d, CREDIT_WIDTH = 480d, OPTION_HEIGHT = 225d, OPTION_WIDTH = 245d, PAD_SIZE = 100d;
 
     // Coordinate constants
     private final static GeographicCoordinates INIT_GEO_COORD = GeographicCoordinates.ofDeg(6.57, 46.52);
@@ -107,61 +105,55 @@ public class Main extends Application {
     @Override
     public void start(Stage primaryStage) throws IOException {
 
-        // Building of the Star Catalogue.
-        StarCatalogue.Builder builder;
-        StarCatalogue catalogue;
+        // The independent startup steps run concurrently, the application thread only waits for what the first frame needs.
+        StartupOrchestrator startup = new StartupOrchestrator();
 
-        // Loading the stars.
-        try (InputStream hygStream = getClass().getResourceAsStream(HYG_CATALOGUE_NAME)) {
-            builder = new StarCatalogue.Builder()
-                    .loadFrom(hygStream, HygDatabaseLoader.INSTANCE);
-        }
+        // The star catalogue is loaded in the background, the brightest stars first, while the welcome screen is displayed.
+        ProgressiveCatalogueLoader catalogueLoader = new ProgressiveCatalogueLoader(HYG_CATALOGUE_NAME, AST_CATALOGUE_NAME);
+        startup.background("Star catalogue", () -> {
+            catalogueLoader.load();
+            return null;
+        });
 
-        // Loading the asterisms.
-        try (InputStream astStream = getClass().getResourceAsStream(AST_CATALOGUE_NAME)) {
-            catalogue = builder
-                    .loadFrom(astStream, AsterismLoader.INSTANCE)
-                    .build();
-        }
+        // Loading the font, the celestial data and the welcome screen images.
+        CompletableFuture<Font> font = startup.submit("Font", () -> {
+            try (InputStream fontStream = getClass().getResourceAsStream(AWESOME_FONT_NAME)) {
+                return Font.loadFont(fontStream, 15);
+            }
+        });
+        CompletableFuture<List<String[]>> celestialData = startup.submit("Celestial data", CelestialDataManager::loadCelestialData);
+        CompletableFuture<Image> hollowHomeImage = startup.submit("Welcome image", () -> loadImage("/welcome1.png"));
+        CompletableFuture<Image> homeImage = startup.submit("Home image", () -> loadImage("/welcome2.png"));
+        CompletableFuture<Image> speakerImage = startup.submit("Speaker image", () -> loadImage("/speaker.png", 15));
 
-        // Loading the font.
-        try (InputStream fontStream = getClass()
-                .getResourceAsStream(AWESOME_FONT_NAME)) {
-            fontAwesome = Font.loadFont(fontStream, 15);
-        }
+        fontAwesome = startup.await(font);
 
         // Initialization of the Celestial data box loader.
-        final CelestialDataManager celestialDataManager = new CelestialDataManager(primaryStage);
+        final CelestialDataManager celestialDataManager = new CelestialDataManager(primaryStage, startup.await(celestialData));
 
+        // The sounds are only loaded when first played.
         SkySoundManager skySoundManager = new SkySoundManager();
 
-        // Zoned date time setup.
+        // Sky state setup: the zoned date time, the observer location and the viewing parameters, updated at once.
         ZonedDateTime when = ZonedDateTime.now();
-        DateTimeBean dateTimeBean = new DateTimeBean();
-        dateTimeBean.setZonedDateTime(when);
+        SkyStateBean skyStateBean = new SkyStateBean(SkyState.of(when, INIT_GEO_COORD, INIT_HORIZON_COORD, 100));
 
-        // Observer location setup.
-        ObserverLocationBean observerLocationBean = new ObserverLocationBean();
-        observerLocationBean.setCoordinates(
-               INIT_GEO_COORD);
+        // Zoned date time, observer location and viewing parameters beans, views over the sky state.
+        DateTimeBean dateTimeBean = new DateTimeBean(skyStateBean);
+        ObserverLocationBean observerLocationBean = new ObserverLocationBean(skyStateBean);
+        ViewingParametersBean viewingParametersBean = new ViewingParametersBean(skyStateBean);
 
-        // Viewing parameters setup.
-        ViewingParametersBean viewingParametersBean = new ViewingParametersBean();
-        viewingParametersBean.setCenter(
-               INIT_HORIZON_COORD);
-        viewingParametersBean.setFieldOfViewDeg(100);
-
-        // Time animator setup.
-        TimeAnimator timeAnimator = new TimeAnimator(dateTimeBean);
+        // Time animator setup, the quality of the drawing adapting to the time spent at each of its pulses.
+        FrameBudget frameBudget = new FrameBudget();
+        TimeAnimator timeAnimator = new TimeAnimator(dateTimeBean, frameBudget);
 
         // Construction of the Sky canvas manager.
         SkyCanvasManager canvasManager = new SkyCanvasManager(
-                                                    catalogue,
-                                                    dateTimeBean,
-                                                    observerLocationBean,
-                                                    viewingParametersBean,
+                                                    catalogueLoader.catalogueProperty(),
+                                                    skyStateBean,
                                                     celestialDataManager,
-                                                    skySoundManager);
+                                                    skySoundManager,
+                                                    frameBudget);
 
         // Stage setup.
         primaryStage.setTitle("Rigel");
@@ -193,9 +185,11 @@ public class Main extends Application {
         setupControlBar(controlBar, observerLocationBean, dateTimeBean, timeAnimator, stackPane, sky, canvasManager, skySoundManager);
         setupInfoBar(infoBar, canvasManager, viewingParametersBean);
 
-        launchWelcomeScreen(primaryStage, bp, sky, skySoundManager);
+        launchWelcomeScreen(primaryStage, bp, sky, skySoundManager,
+                startup.await(hollowHomeImage), startup.await(homeImage), startup.await(speakerImage));
         primaryStage.show();
         sky.requestFocus();
+        startup.finish();
     }
 
 
@@ -206,26 +200,13 @@ public class Main extends Application {
      * @param bp              the border pane.
      * @param sky             the canvas.
      * @param skySoundManager the sky sound manager.
-     * @throws IOException if there is an import error related to the pictures.
+     * @param hollowHomeImage the image displayed during the fade-in.
+     * @param homeImage       the image displayed after the fade-in.
+     * @param speaker         the speaker icon of the volume slider.
      */
-    private void launchWelcomeScreen(Stage primaryStage, BorderPane bp, Canvas sky, SkySoundManager skySoundManager) throws IOException {
+    private void launchWelcomeScreen(Stage primaryStage, BorderPane bp, Canvas sky, SkySoundManager skySoundManager, Image hollowHomeImage, Image homeImage, Image speaker) {
         AnchorPane startAP = new AnchorPane();
 
-        Image hollowHomeImage;
-        Image homeImage;
-        Image speaker;
-
-        // Loading the images.
-        try (InputStream hollowHomeImageStream = getClass().getResourceAsStream("/welcome1.png")) {
-            hollowHomeImage = new Image(hollowHomeImageStream);
-        }
-        try (InputStream homeImageStream = getClass().getResourceAsStream("/welcome2.png")) {
-            homeImage = new Image(homeImageStream);
-        }
-        try (InputStream speakerImageStream = getClass().getResourceAsStream("/speaker.png")) {
-            speaker = new Image(speakerImageStream, 15, 15, true, false);
-        }
-
         // Creating the ImageViews.
         ImageView mainImageView = new ImageView(hollowHomeImage);
         ImageView speakerView = new ImageView(speaker);
@@ -291,6 +272,35 @@ public class Main extends Application {
     }
 
 
+    /**
+     * Loads an image of the application resources.
+     *
+     * @param name the resource name.
+     * @return the image.
+     * @throws IOException if there is an input error.
+     */
+    private Image loadImage(String name) throws IOException {
+        try (InputStream imageStream = getClass().getResourceAsStream(name)) {
+            return new Image(imageStream);
+        }
+    }
+
+
+    /**
+     * Loads an image of the application resources, scaled to fit in a square while preserving its ratio.
+     *
+     * @param name the resource name.
+     * @param size the side of the square.
+     * @return the image.
+     * @throws IOException if there is an input error.
+     */
+    private Image loadImage(String name, double size) throws IOException {
+        try (InputStream imageStream = getClass().getResourceAsStream(name)) {
+            return new Image(imageStream, size, size, true, false);
+        }
+    }
+
+
     /**
      * Sets up the control bar.
      *
@@ -668,18 +678,35 @@ public class Main extends Application {
         drawingAsterisms.setOnAction(event -> skyManager.setDrawConstellation(false));
         drawingConstellations.setOnAction(event -> skyManager.setDrawConstellation(true));
 
+        // Setting up the frame metrics overlay check box.
+        CheckBox metricsOverlay = new CheckBox("Performance overlay");
+        metricsOverlay.setStyle("-fx-text-fill: azure");
+        metricsOverlay.setOnAction(event -> skyManager.setShowMetricsOverlay(metricsOverlay.isSelected()));
+
+        // Setting up the keyframe interpolation check box, for the high time accelerations.
+        CheckBox keyframeInterpolation = new CheckBox("Keyframe interpolation");
+        keyframeInterpolation.setStyle("-fx-text-fill: azure");
+        keyframeInterpolation.setOnAction(event -> skyManager.setKeyframeInterpolation(keyframeInterpolation.isSelected()));
+
+        // Setting up the star rasterization check box.
+        CheckBox rasterizedStars = new CheckBox("Rasterized stars");
+        rasterizedStars.setStyle("-fx-text-fill: azure");
+        rasterizedStars.setOnAction(event -> skyManager.setRasterizedStars(rasterizedStars.isSelected()));
+
         // Creation of the separators.
         Separator separator1 = new Separator();
         separator1.setOrientation(Orientation.HORIZONTAL);
         Separator separator2 = new Separator();
         separator2.setOrientation(Orientation.HORIZONTAL);
+        Separator separator3 = new Separator();
+        separator3.setOrientation(Orientation.HORIZONTAL);
 
         //  Setting up the buttons inside the option pane.
         HBox drawingBox = new HBox(drawingAsterisms, drawingConstellations);
         drawingBox.setSpacing(5);
 
         // Adding all the children nodes inside the option vertical box.
-        optionPane.getChildren().addAll(notifText, notifSlider, separator1, ambientText, ambientSlider, separator2, drawingText, drawingBox);
+        optionPane.getChildren().addAll(notifText, notifSlider, separator1, ambientText, ambientSlider, separator2, drawingText, drawingBox, separator3, metricsOverlay, keyframeInterpolation, rasterizedStars);
     }
 
 
@@ -6,7 +6,7 @@ import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.SimpleDoubleProperty;
 
 /**
- * JavaFX bean containing the observer location parameters.
+ * JavaFX bean containing the observer location parameters, as a view over the observer location of the sky state.
  *
  * @author Victor Nazianzeno -- Le Jamtel(312075)
  * @author Javier García Arredondo(311166)
@@ -17,16 +17,22 @@ public final class ObserverLocationBean {
     private final SimpleDoubleProperty latDeg;
     private final ObjectBinding<GeographicCoordinates> coordinates;
 
+    private final SkyStateBean skyState;
+
 
     /**
-     * Constructor, which initializes the longitude and the latitude at 0.
-     * The coordinates (composite) depends on the current longitude and latitude.
+     * Constructor, the longitude and the latitude following the observer location of the given sky state.
+     * The coordinates (composite) are the ones of the sky state.
+     *
+     * @param skyState the sky state bean.
      */
-    public ObserverLocationBean() {
-        lonDeg = new SimpleDoubleProperty(0);
-        latDeg = new SimpleDoubleProperty(0);
-        coordinates = Bindings.createObjectBinding(() -> GeographicCoordinates.ofDeg(getLonDeg(), getLatDeg()), lonDeg, latDeg);
-
+    public ObserverLocationBean(SkyStateBean skyState) {
+        this.skyState = skyState;
+        lonDeg = skyState.doubleView(s -> s.location().lonDeg(),
+                (s, lon) -> s.withLocation(GeographicCoordinates.ofDeg(lon, s.location().latDeg())));
+        latDeg = skyState.doubleView(s -> s.location().latDeg(),
+                (s, lat) -> s.withLocation(GeographicCoordinates.ofDeg(s.location().lonDeg(), lat)));
+        coordinates = Bindings.createObjectBinding(() -> skyState.getState().location(), skyState.stateProperty());
     }
 
 
@@ -105,13 +111,13 @@ public final class ObserverLocationBean {
     }
 
     /**
-     * Setter for the geographic coordinates of the observer location, in degrees.
+     * Setter for the geographic coordinates of the observer location, in degrees, i.e the longitude and the latitude
+     * updated at once through the sky state.
      *
      * @param coordinates the new geographic coordinates of the observer location, in degrees.
      */
     public void setCoordinates(GeographicCoordinates coordinates) {
-        setLonDeg(coordinates.lonDeg());
-        setLatDeg(coordinates.latDeg());
+        skyState.update(s -> s.withLocation(coordinates));
     }
 
 }
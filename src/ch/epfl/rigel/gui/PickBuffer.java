@@ -0,0 +1,132 @@
+package ch.epfl.rigel.gui;
+
+import ch.epfl.rigel.astronomy.CelestialObject;
+import ch.epfl.rigel.monitoring.PickEvent;
+import jdk.jfr.EventType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Offscreen buffer of the celestial objects drawn on each pixel of the canvas, filled while the sky is painted,
+ * so that finding the object under the cursor is a single read of the buffer.
+ * <p>
+ * Each object covers its drawn disk, dilated to the pick distance around its center. The objects are added in their
+ * drawing order: the drawn disk of an object hides the objects added before it, as on the canvas, while on the rest
+ * of its dilated disk, a pixel goes to the closest object.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class PickBuffer {
+
+    // Type of the pick events, enabled while a recording asks for them.
+    private final static EventType PICK_EVENT_TYPE = EventType.getEventType(PickEvent.class);
+
+    private final double pickDistance;
+    private final List<CelestialObject> objects = new ArrayList<>();
+
+    private int width, height;
+    // Index of the object of each pixel, plus one, 0 if none, and its squared distance to the center of the pixel,
+    // 0 in the drawn disk of the object. The distance is only meaningful if there is an object.
+    private int[] ids = new int[0];
+    private float[] distances = new float[0];
+
+
+    /**
+     * Constructor.
+     *
+     * @param pickDistance the distance from its center up to which an object is picked, in pixels.
+     */
+    public PickBuffer(double pickDistance) {
+        this.pickDistance = pickDistance;
+    }
+
+
+    /**
+     * Empties the buffer, before the objects of a new frame are added.
+     *
+     * @param width  the width of the canvas, in pixels.
+     * @param height the height of the canvas, in pixels.
+     */
+    public void clear(double width, double height) {
+        this.width = Math.max((int) Math.ceil(width), 0);
+        this.height = Math.max((int) Math.ceil(height), 0);
+        if (ids.length != this.width * this.height) {
+            ids = new int[this.width * this.height];
+            distances = new float[this.width * this.height];
+        } else {
+            Arrays.fill(ids, 0);
+        }
+        objects.clear();
+    }
+
+
+    /**
+     * Adds an object, drawn over the objects already added.
+     *
+     * @param object  the object.
+     * @param centerX the x coordinate of the center of the object in the canvas.
+     * @param centerY the y coordinate of the center of the object in the canvas.
+     * @param radius  the radius of the drawn disk of the object, in pixels.
+     */
+    public void add(CelestialObject object, double centerX, double centerY, double radius) {
+        double pickRadius = Math.max(radius, pickDistance);
+        if (!(centerX + pickRadius >= 0 && centerX - pickRadius < width && centerY + pickRadius >= 0 && centerY - pickRadius < height)) {
+            return;
+        }
+        int firstRow = Math.max((int) Math.ceil(centerY - pickRadius - 0.5), 0);
+        int lastRow = Math.min((int) Math.floor(centerY + pickRadius - 0.5), height - 1);
+
+        objects.add(object);
+        int id = objects.size();
+        double squaredRadius = radius * radius, squaredPickRadius = pickRadius * pickRadius;
+
+        for (int row = firstRow; row <= lastRow; ++row) {
+            double dy = row + 0.5 - centerY;
+            // Columns of the pixels of the row whose centers lie in the dilated disk.
+            double halfChord = Math.sqrt(Math.max(squaredPickRadius - dy * dy, 0));
+            int firstColumn = Math.max((int) Math.ceil(centerX - halfChord - 0.5), 0);
+            int lastColumn = Math.min((int) Math.floor(centerX + halfChord - 0.5), width - 1);
+            int pixelRow = row * width;
+            for (int column = firstColumn; column <= lastColumn; ++column) {
+                double dx = column + 0.5 - centerX;
+                double squaredDistance = dx * dx + dy * dy;
+
+                int pixel = pixelRow + column;
+                if (squaredDistance <= squaredRadius) {
+                    ids[pixel] = id;
+                    distances[pixel] = 0;
+                } else if (ids[pixel] == 0 || squaredDistance < distances[pixel]) {
+                    ids[pixel] = id;
+                    distances[pixel] = (float) squaredDistance;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Gives the object picked at the given point of the canvas.
+     *
+     * @param x the x coordinate of the point in the canvas.
+     * @param y the y coordinate of the point in the canvas.
+     * @return the object, or null if there is none at this point.
+     */
+    public CelestialObject objectAt(double x, double y) {
+        // The event is only created, and the name of the object only materialized, while a recording asks for them.
+        PickEvent event = PICK_EVENT_TYPE.isEnabled() ? new PickEvent() : null;
+        if (event != null) event.begin();
+
+        CelestialObject object = null;
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            int id = ids[(int) y * width + (int) x];
+            if (id != 0) object = objects.get(id - 1);
+        }
+
+        if (event != null && event.shouldCommit()) event.complete(object == null ? null : object.name());
+        return object;
+    }
+
+}
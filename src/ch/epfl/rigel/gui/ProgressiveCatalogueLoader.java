@@ -0,0 +1,245 @@
+package ch.epfl.rigel.gui;
+
+import ch.epfl.rigel.astronomy.AsterismLoader;
+import ch.epfl.rigel.astronomy.CatalogueSnapshot;
+import ch.epfl.rigel.astronomy.HygDatabaseLoader;
+import ch.epfl.rigel.astronomy.StarCatalogue;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.jar.JarEntry;
+
+/**
+ * Loads the star catalogue and publishes it progressively, the brightest stars first.
+ * The catalogue property initially contains an empty catalogue, so that the sky can be drawn immediately,
+ * and then successive catalogues containing the stars up to increasing magnitudes.
+ * The asterisms are included in a catalogue as soon as all their stars are.
+ * <p>
+ * The whole catalogue is kept as a snapshot in the user cache directory, read instead of the catalogue files
+ * as long as their sizes and versions, i.e their modification times or the checksums of their jar entries,
+ * do not change, so that the files are not even read. The snapshot storing the stars by increasing magnitude,
+ * the catalogue of each tier is published as soon as its stars are read. Without a snapshot, the tiers are cut
+ * from the parsed stars before the whole catalogue is built. A tier is skipped if the previous catalogue is not
+ * displayed yet, the next one then replacing it.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class ProgressiveCatalogueLoader {
+
+    // Limiting magnitudes of the successive catalogues, before the one containing all the stars.
+    private final static double[] MAGNITUDE_TIERS = {2, 4, 5};
+
+    private final static System.Logger LOGGER = System.getLogger(ProgressiveCatalogueLoader.class.getName());
+
+    // Name of the snapshot of the whole catalogue, in the user cache directory.
+    private final static String SNAPSHOT_FILE_NAME = "catalogue.snapshot";
+
+    private final String starsResource, asterismsResource;
+    private final SimpleObjectProperty<StarCatalogue> catalogue;
+    // Catalogue waiting to be set on the JavaFX application thread, null if there is none.
+    private final AtomicReference<StarCatalogue> pendingCatalogue = new AtomicReference<>();
+
+
+    /**
+     * Constructor, takes the names of the resources to load.
+     *
+     * @param starsResource     the name of the HYG database resource.
+     * @param asterismsResource the name of the asterisms resource.
+     */
+    public ProgressiveCatalogueLoader(String starsResource, String asterismsResource) {
+        this.starsResource = starsResource;
+        this.asterismsResource = asterismsResource;
+        catalogue = new SimpleObjectProperty<>(new StarCatalogue(List.of(), List.of()));
+    }
+
+
+    /**
+     * Getter for the catalogue property, only updated on the JavaFX application thread.
+     *
+     * @return the catalogue property.
+     */
+    public ReadOnlyObjectProperty<StarCatalogue> catalogueProperty() {
+        return catalogue;
+    }
+
+
+    /**
+     * Getter for the catalogue currently published.
+     *
+     * @return the catalogue.
+     */
+    public StarCatalogue getCatalogue() {
+        return catalogue.get();
+    }
+
+
+    /**
+     * Loads the stars and the asterisms, and publishes the catalogue of each magnitude tier read before the others.
+     * Meant to be called on a background thread, the catalogues being published on the JavaFX application thread.
+     *
+     * @throws IOException if there is an input error.
+     */
+    public void load() throws IOException {
+        // The snapshot is only used if it was built from the same files, the catalogue is parsed otherwise.
+        long checksum = CatalogueSnapshot.checksum(stamp(starsResource), stamp(asterismsResource));
+        Path snapshot = snapshotFile();
+        StarCatalogue full = readSnapshot(snapshot, checksum);
+
+        if (full == null) {
+            StarCatalogue.Builder builder = new StarCatalogue.Builder();
+            try (InputStream hygStream = resource(starsResource);
+                 InputStream astStream = resource(asterismsResource)) {
+                builder.loadFrom(hygStream, HygDatabaseLoader.INSTANCE)
+                        .loadFrom(astStream, AsterismLoader.INSTANCE);
+            }
+            full = builder.buildTiers(MAGNITUDE_TIERS, this::publishTier).build();
+            writeSnapshot(snapshot, full, checksum);
+        }
+
+        publish(full);
+    }
+
+
+    /**
+     * Publishes the catalogue of a magnitude tier, only building it if the previous catalogue is already set.
+     *
+     * @param limitingMagnitude the limiting magnitude of the tier.
+     * @param tier              the builder of the catalogue of the tier.
+     */
+    private void publishTier(double limitingMagnitude, Supplier<StarCatalogue> tier) {
+        if (pendingCatalogue.get() == null) publish(tier.get());
+    }
+
+
+    /**
+     * Publishes a catalogue on the JavaFX application thread. If the previous catalogue is not set yet,
+     * it is replaced by the given one, so that the catalogues published faster than they are displayed are skipped.
+     *
+     * The sky partition of the catalogue is built before, on the loading thread, so that the first frame culling
+     * its stars does not wait for it on the JavaFX application thread.
+     *
+     * @param published the catalogue.
+     */
+    private void publish(StarCatalogue published) {
+        published.partition();
+        if (pendingCatalogue.getAndSet(published) == null) {
+            Platform.runLater(() -> catalogue.set(pendingCatalogue.getAndSet(null)));
+        }
+    }
+
+
+    /**
+     * Reads the catalogue snapshot, publishing the catalogue of each magnitude tier as soon as it is read,
+     * unless the previous catalogue is not set yet. A snapshot that cannot be read is ignored.
+     *
+     * @param snapshot the snapshot file.
+     * @param checksum the checksum of the current catalogue files.
+     * @return the catalogue, or null if there is no valid snapshot.
+     */
+    private StarCatalogue readSnapshot(Path snapshot, long checksum) {
+        try {
+            return CatalogueSnapshot.read(snapshot, checksum, MAGNITUDE_TIERS, this::publishTier).orElse(null);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Cannot read the catalogue snapshot " + snapshot, e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Writes the catalogue snapshot, failing silently as the snapshot is only an optimization.
+     *
+     * @param snapshot  the snapshot file.
+     * @param catalogue the catalogue.
+     * @param checksum  the checksum of the catalogue files.
+     */
+    private static void writeSnapshot(Path snapshot, StarCatalogue catalogue, long checksum) {
+        try {
+            CatalogueSnapshot.write(snapshot, catalogue, checksum);
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Cannot write the catalogue snapshot " + snapshot, e);
+        }
+    }
+
+
+    /**
+     * Getter for the location of the catalogue snapshot, in the user cache directory.
+     *
+     * @return the snapshot file.
+     */
+    private static Path snapshotFile() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        Path cacheDirectory = (cacheHome == null || cacheHome.isEmpty())
+                ? Path.of(System.getProperty("user.home"), ".cache")
+                : Path.of(cacheHome);
+        return cacheDirectory.resolve("rigel").resolve(SNAPSHOT_FILE_NAME);
+    }
+
+
+    /**
+     * Gives the stamp of a resource, changing with its content: its size and its modification time if it is a file,
+     * its size and its checksum if it is a jar entry, or its content otherwise.
+     *
+     * @param name the resource name.
+     * @return the bytes of the stamp.
+     * @throws IOException if the resource does not exist, or if there is an input error.
+     */
+    private byte[] stamp(String name) throws IOException {
+        URL url = getClass().getResource(name);
+        if (url == null) throw new IOException("Missing resource " + name);
+
+        long size = -1, version = -1;
+        if (url.getProtocol().equals("file")) {
+            try {
+                Path file = Path.of(url.toURI());
+                size = Files.size(file);
+                version = Files.getLastModifiedTime(file).toMillis();
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // Not a local file path, the content is used instead.
+            }
+        } else {
+            URLConnection connection = url.openConnection();
+            if (connection instanceof JarURLConnection) {
+                JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+                size = entry.getSize();
+                version = entry.getCrc();
+            }
+        }
+
+        if (size < 0 || version < 0) {
+            try (InputStream stream = resource(name)) {
+                return stream.readAllBytes();
+            }
+        }
+        return ByteBuffer.allocate(2 * Long.BYTES).putLong(size).putLong(version).array();
+    }
+
+
+    /**
+     * Opens a resource of the application.
+     *
+     * @param name the resource name.
+     * @return the input stream of the resource.
+     * @throws IOException if the resource does not exist.
+     */
+    private InputStream resource(String name) throws IOException {
+        InputStream stream = getClass().getResourceAsStream(name);
+        if (stream == null) throw new IOException("Missing resource " + name);
+        return stream;
+    }
+
+}
@@ -0,0 +1,87 @@
+package ch.epfl.rigel.gui;
+
+/**
+ * Quality levels of the drawing of the sky, from the full quality to the cheapest one.
+ * Each level observes fewer stars, or draws fewer labels or grid lines, than the previous one.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public enum RenderQuality {
+
+    FULL(Double.POSITIVE_INFINITY, true, 1),
+    MAGNITUDE_5(5, true, 1),
+    MAGNITUDE_4(4, true, 1),
+    NO_LABELS(4, false, 1),
+    SPARSE_GRID(4, false, 2),
+    MINIMAL(3, false, 3);
+
+    private final double limitingMagnitude;
+    private final boolean constellationLabels;
+    private final int gridStep;
+
+
+    /**
+     * Constructor for the enum.
+     *
+     * @param limitingMagnitude   the magnitude of the faintest stars observed.
+     * @param constellationLabels true if the names of the constellations are drawn.
+     * @param gridStep            the number of grid steps between two drawn parallels or meridians.
+     */
+    RenderQuality(double limitingMagnitude, boolean constellationLabels, int gridStep) {
+        this.limitingMagnitude = limitingMagnitude;
+        this.constellationLabels = constellationLabels;
+        this.gridStep = gridStep;
+    }
+
+
+    /**
+     * Getter for the magnitude of the faintest stars observed.
+     *
+     * @return the limiting magnitude.
+     */
+    public double limitingMagnitude() {
+        return limitingMagnitude;
+    }
+
+
+    /**
+     * Getter for the drawing of the names of the constellations.
+     *
+     * @return true if the names are drawn.
+     */
+    public boolean constellationLabels() {
+        return constellationLabels;
+    }
+
+
+    /**
+     * Getter for the number of grid steps between two drawn parallels or meridians, 1 if they are all drawn.
+     *
+     * @return the grid step.
+     */
+    public int gridStep() {
+        return gridStep;
+    }
+
+
+    /**
+     * Getter for the next cheaper level.
+     *
+     * @return the next level, or this one if it is the cheapest.
+     */
+    public RenderQuality lower() {
+        return values()[Math.min(ordinal() + 1, values().length - 1)];
+    }
+
+
+    /**
+     * Getter for the previous better level.
+     *
+     * @return the previous level, or this one if it is the full quality.
+     */
+    public RenderQuality higher() {
+        return values()[Math.max(ordinal() - 1, 0)];
+    }
+
+}
@@ -2,6 +2,8 @@ package ch.epfl.rigel.gui;
 
 import ch.epfl.rigel.astronomy.CelestialObject;
 import ch.epfl.rigel.astronomy.ObservedSky;
+import ch.epfl.rigel.astronomy.ObservedSkyCache;
+import ch.epfl.rigel.astronomy.SkyInterpolator;
 import ch.epfl.rigel.astronomy.StarCatalogue;
 import ch.epfl.rigel.coordinates.CartesianCoordinates;
 import ch.epfl.rigel.coordinates.HorizontalCoordinates;
@@ -9,7 +11,15 @@ import ch.epfl.rigel.coordinates.StereographicProjection;
 import ch.epfl.rigel.math.Angle;
 import ch.epfl.rigel.math.ClosedInterval;
 import ch.epfl.rigel.math.RightOpenInterval;
+import ch.epfl.rigel.monitoring.FrameMetrics;
+import ch.epfl.rigel.monitoring.FramePhaseEvent;
+import ch.epfl.rigel.monitoring.Phase;
 import ch.epfl.rigel.sound.SkySoundManager;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
 import javafx.beans.binding.Bindings;
 import javafx.beans.binding.DoubleBinding;
 import javafx.beans.binding.IntegerBinding;
@@ -18,12 +28,23 @@ import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ObservableValue;
 import javafx.geometry.Point2D;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.canvas.Canvas;
+import javafx.scene.image.Image;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.NonInvertibleTransformException;
 import javafx.scene.transform.Transform;
+import javafx.util.Duration;
 
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Canvas manager, creates the canvas, handles the user interactions and paints the sky in consequence.
@@ -41,14 +62,25 @@ public final class SkyCanvasManager {
     private final IntegerBinding roundedViewAltDeg;
 
     private final SkyCanvasPainter painter;
+    // Objects drawn on each pixel of the canvas, recorded by the painter.
+    private final PickBuffer pickBuffer;
 
     private final ObjectBinding<StereographicProjection> projection;
-    private final ObjectBinding<ObservedSky> observedSky;
+    // Last projection built, and its center.
+    private HorizontalCoordinates projectionCenter;
+    private StereographicProjection currentProjection;
+    // The painted sky, computed again when the inputs of the sky change.
+    private final ObjectProperty<ObservedSky> observedSky;
     private final ObjectBinding<Transform> planeToCanvas;
+    private final DoubleBinding viewRadius;
+    private final ObservableValue<StarCatalogue> catalogue;
 
-    // Maximum distance for the closest object method, expressed in the stereographic plane.
+    // Maximum distance at which an object is picked, in pixels.
     private final static int MAX_DISTANCE = 10, CANVAS_INIT_WIDTH = 1100, CANVAS_INIT_HEIGHT = 600, AZIMUTH_SHIFT = 10, ALTITUDE_SHIFT = 5;
 
+    // Margin added to the radius of the visible part of the sky, so that the disks of the stars on the border are drawn.
+    private final static double VIEW_RADIUS_MARGIN = Angle.ofDeg(1);
+
     // Field of view interval.
     private final static ClosedInterval ZOOM_INTERVAL = ClosedInterval.of(30, 150);
     // Interval for the Horizontal coordinates azimuth.
@@ -61,52 +93,132 @@ public final class SkyCanvasManager {
     private final SkySoundManager skySoundManager;
 
     private final BooleanProperty drawConstellation;
-    private final ViewingParametersBean viewingParametersBean;
+    private final SkyStateBean skyState;
+
+    // Keyframe interpolation of the sky, used while the time flows quickly.
+    private final SkyInterpolator interpolator;
+    private final BooleanProperty keyframeInterpolation;
+    // Software rasterization of the stars, instead of a fill command per star on the canvas.
+    private final BooleanProperty rasterizedStars;
+
+    private final FrameBudget frameBudget;
+
+    // Last observed skies, found again when the state comes back to a previous one.
+    private final ObservedSkyCache frameCache;
+    // Maximum number of skies kept by the cache.
+    private final static int FRAME_CACHE_CAPACITY = 32;
+
+    // Maximum error of the positions interpolated between two keyframes, in pixels.
+    private final static double MAX_INTERPOLATION_ERROR = 0.5;
+
+    // Frame metrics, only recorded while the overlay is shown.
+    private final FrameMetrics metrics;
+    private final BooleanProperty showMetricsOverlay;
+    private FrameMetrics.Report metricsReport;
+    // Refresh of the metrics overlay, running while the overlay is shown, so that it is updated even if the sky is still.
+    private final Timeline metricsRefresh;
+
+    // Period of the metrics overlay refresh.
+    private final static Duration METRICS_REPORT_PERIOD = Duration.seconds(1);
+
+    // Depth of the interactive changes of the view, whose skies are computed in the background.
+    private int interacting;
+    private final Executor skyComputer;
+    // Number of the last requested sky, the computation of the next background sky, if any, and true while
+    // a sky is computed in the background.
+    private long skyRequest;
+    private Supplier<ObservedSky> pendingSky;
+    private boolean computingInBackground;
+
+    // Projection and scale factor of the last painted frame.
+    private StereographicProjection paintedProjection;
+    private double paintedDilatation;
+    // Last painted frame and its view, shown transformed while the sky of an interactive change is computed; null if none.
+    private Image previewImage;
+    private StereographicProjection previewProjection;
+    private double previewDilatation;
+    // Transformation of the last painted frame to the canvas, while a preview is shown.
+    private Affine previewTransform;
+    // Distance between the points whose images give the transformation of the preview, in pixels.
+    private final static double PREVIEW_SAMPLE_DISTANCE = 50;
+
+    // Panning of the view by dragging the sky, and number of the last sky prefetched for it, read by the background thread.
+    private final ViewPanner viewPanner;
+    private final AtomicLong prefetchRequest = new AtomicLong();
+    // Projection, scale factor and center of the view when the drag began, and position of the grabbed point; null if none.
+    private StereographicProjection grabProjection;
+    private double grabDilatation;
+    private HorizontalCoordinates grabCenter, grabPosition;
 
 
     /**
      * Class constructor, initializes the bindings between all the properties and the listeners.
      *
-     * @param catalogue             the stars and asterisms catalogue.
-     * @param dateTimeBean          the bean representing the zoned date time.
-     * @param observerLocationBean  bean describing the observer's position.
-     * @param viewingParametersBean bean determining the visible portion of the sky, i.e the field of view.
+     * @param catalogue             the stars and asterisms catalogue, the sky being repainted when it changes.
+     * @param skyState              bean publishing the observation instant, the observer's position and the viewing
+     *                              parameters, the sky being computed once per change.
      * @param celestialDataLoader the celestial data loader used for launching the information windows.
      * @param skySoundManager the sky sound manager.
+     * @param frameBudget the frame budget controller, measuring the computation and the painting of the sky and
+     *                    giving the quality of the drawing.
      */
-    public SkyCanvasManager(StarCatalogue catalogue, DateTimeBean dateTimeBean, ObserverLocationBean observerLocationBean, ViewingParametersBean viewingParametersBean, CelestialDataManager celestialDataLoader, SkySoundManager skySoundManager) {
+    public SkyCanvasManager(ObservableValue<StarCatalogue> catalogue, SkyStateBean skyState, CelestialDataManager celestialDataLoader, SkySoundManager skySoundManager, FrameBudget frameBudget) {
 
-        this.viewingParametersBean = viewingParametersBean;
+        this.skyState = skyState;
+        this.catalogue = catalogue;
         this.celestialDataManager = celestialDataLoader;
         names = celestialDataLoader.getCelestialNames();
         // Initialization of the canvas.
         canvas = new Canvas(CANVAS_INIT_WIDTH, CANVAS_INIT_HEIGHT);
         // Initialization of the sky painter given the created canvas.
-        painter = new SkyCanvasPainter(canvas);
+        metrics = new FrameMetrics();
+        pickBuffer = new PickBuffer(MAX_DISTANCE);
+        painter = new SkyCanvasPainter(canvas, metrics, pickBuffer);
 
         this.skySoundManager = skySoundManager;
+        this.frameBudget = frameBudget;
 
         // Mouse position, described as a point on a plane.
         ObjectProperty<Point2D> mousePosition = new SimpleObjectProperty<>();
 
         drawConstellation = new SimpleBooleanProperty(true);
+        showMetricsOverlay = new SimpleBooleanProperty(false);
+        // A preview is not painted over, the refresh waiting for the next exact frame.
+        metricsRefresh = new Timeline(new KeyFrame(METRICS_REPORT_PERIOD, event -> {
+            metricsReport = metrics.report();
+            if (previewImage == null) updatePainter();
+        }));
+        metricsRefresh.setCycleCount(Animation.INDEFINITE);
+        interpolator = new SkyInterpolator(MAX_INTERPOLATION_ERROR);
+        keyframeInterpolation = new SimpleBooleanProperty(false);
+        rasterizedStars = new SimpleBooleanProperty(false);
+        frameCache = new ObservedSkyCache(FRAME_CACHE_CAPACITY);
+        skyComputer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Rigel sky computation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        viewPanner = new ViewPanner(AZ_INTERVAL_DEG, ALT_INTERVAL_DEG,
+                center -> skyState.update(s -> s.withCenter(center)), this::prefetchSky);
 
 
         /* CREATION OF THE DIFFERENT BINDINGS */
 
         // Projection binding, depends on the coordinates of the projection center.
-        projection = Bindings.createObjectBinding(() ->
-                        new StereographicProjection(viewingParametersBean.getCenter()), viewingParametersBean.centerProperty());
-
-        // The observed sky, depends on the date time bean, the coordinates of the observer, the stereographic projection, and the stars and asterisms catalogue.
-        observedSky = Bindings.createObjectBinding(() ->
-                        new ObservedSky(dateTimeBean.getZonedDateTime(), observerLocationBean.getCoordinates(), projection.get(), catalogue),
-                        dateTimeBean.dateProperty(), dateTimeBean.timeProperty(), dateTimeBean.zoneIdProperty(), observerLocationBean.coordinatesProperty(), projection);
+        // The projection is only built again when the center changes, the other changes of the state keeping it.
+        projection = Bindings.createObjectBinding(() -> {
+                            HorizontalCoordinates center = skyState.getState().center();
+                            if (center != projectionCenter) {
+                                projectionCenter = center;
+                                currentProjection = new StereographicProjection(center);
+                            }
+                            return currentProjection;
+                        }, skyState.stateProperty());
 
         // Scaling factor used by the Transform object.
         dilatationFactor = Bindings.createDoubleBinding(() ->
-                            canvas.getWidth() / projection.get().applyToAngle(Angle.ofDeg(viewingParametersBean.getFieldOfViewDeg())),
-                            projection, viewingParametersBean.fieldOfViewDegProperty());
+                            canvas.getWidth() / projection.get().applyToAngle(Angle.ofDeg(skyState.getState().fieldOfViewDeg())),
+                            projection, canvas.widthProperty());
 
         // Transform object, link between the projection coordinates and the canvas coordinates.
         // Represents a scaling and a translation.
@@ -115,6 +227,26 @@ public final class SkyCanvasManager {
                                      canvas.getWidth() / 2, canvas.getHeight() / 2),
                           dilatationFactor, canvas.widthProperty(), canvas.heightProperty());
 
+        // Angular radius of the visible part of the sky, the cone around the projection center containing the whole canvas.
+        viewRadius = Bindings.createDoubleBinding(() -> {
+                            double halfDiagonal = Math.hypot(canvas.getWidth(), canvas.getHeight()) / 2 / dilatationFactor.get();
+                            return projection.get().angularDistanceOf(halfDiagonal) + VIEW_RADIUS_MARGIN;
+                        },
+                        projection, dilatationFactor, canvas.widthProperty(), canvas.heightProperty());
+
+        // The observed sky, depends on the sky state (the instant, the coordinates of the observer and the viewing parameters,
+        // giving the stereographic projection), the size of the canvas (giving the visible part of the sky), the stars and
+        // asterisms catalogue, the keyframe interpolation mode and the drawing quality. It is computed once per change of
+        // these inputs, in the background for the interactive changes of the view.
+        observedSky = new SimpleObjectProperty<>(computeSky());
+        InvalidationListener skyInputsListener = o -> skyInputsInvalidated();
+        skyState.stateProperty().addListener(skyInputsListener);
+        canvas.widthProperty().addListener(skyInputsListener);
+        canvas.heightProperty().addListener(skyInputsListener);
+        catalogue.addListener(skyInputsListener);
+        keyframeInterpolation.addListener(skyInputsListener);
+        frameBudget.qualityProperty().addListener(skyInputsListener);
+
 
         // Positions of the mouse in the horizontal coordinates system, non null.
         ObjectBinding<HorizontalCoordinates> mouseHorizontalPosition =
@@ -136,29 +268,16 @@ public final class SkyCanvasManager {
         mouseAltDeg = Bindings.createDoubleBinding(() -> mouseHorizontalPosition.get().altDeg(), mouseHorizontalPosition);
 
 
-        // Describe the nearest celestial object to non-null mouse coordinates.
-        objectUnderMouse = Bindings.createObjectBinding(() -> {
-            //Avoiding NullPointerException when using inverseTransform
-            if (mousePosition.get() != null) {
-                // Applying the inverse transformation from the canvas coordinates to the stereographic ones.
-                double maxDistance = Math.abs(planeToCanvas.get().inverseDeltaTransform(MAX_DISTANCE, 0).getX());
-
-                Optional<CelestialObject> closestObject =
-                        observedSky.get().objectClosestTo(CartesianCoordinates.of(
-                                                                planeToCanvas.get().inverseTransform(mousePosition.get())), maxDistance);
-
-                return closestObject.orElse(null);
-            } else {
-                return null;
-            }
-        }, observedSky, mousePosition, planeToCanvas);
+        // Describe the celestial object drawn under non-null mouse coordinates, read in the pick buffer.
+        // The binding is invalidated each time the buffer is filled again, or the preview transformed again.
+        objectUnderMouse = Bindings.createObjectBinding(() -> pickedObject(mousePosition.get()), mousePosition);
 
 
         // The current altitude of the viewing parameters, in degrees, and rounded by steps of 5 integers.
         roundedViewAltDeg = Bindings.createIntegerBinding(() -> {
-                                double currentViewAltDeg = Angle.toDeg(viewingParametersBean.getCenter().alt());
+                                double currentViewAltDeg = Angle.toDeg(projection.get().getCenter().alt());
                                 return (currentViewAltDeg >= 0) ? (int)(currentViewAltDeg + 0.5) : (int) (currentViewAltDeg - 0.5);
-                            }, viewingParametersBean.centerProperty(), viewingParametersBean.fieldOfViewDegProperty());
+                            }, projection);
 
 
         // Initialization of the different keyboard and mouse listeners.
@@ -166,22 +285,240 @@ public final class SkyCanvasManager {
 
 
         // Creates the different listeners in order to be able to update the sky painter.
-        createListeners(observedSky, dilatationFactor, planeToCanvas);
+        createListeners();
     }
 
 
     /**
      * Initializes the different listeners, in order to call the sky painter after any change.
-     *
-     * @param observedSky      the property containing the sky that can be observed by the user.
-     * @param dilatationFactor the scale factor property.
-     * @param planeToCanvas    the transform property.
+     * The scale factor, the transform and the drawing quality only change with the inputs of the sky,
+     * which already compute and paint the sky again.
      */
-    private void createListeners(ObjectBinding<ObservedSky> observedSky, DoubleBinding dilatationFactor, ObjectBinding<Transform> planeToCanvas) {
-        observedSky.addListener((p, o, n) -> updatePainter());
-        dilatationFactor.addListener((p, o, n) -> updatePainter());
-        planeToCanvas.addListener((p, o, n) -> updatePainter());
+    private void createListeners() {
         drawConstellation.addListener((p,o,n) -> updatePainter());
+        rasterizedStars.addListener((p, o, n) -> updatePainter());
+        showMetricsOverlay.addListener((p, o, n) -> {
+            metrics.setEnabled(n);
+            metricsReport = metrics.report();
+            if (n) {
+                metricsRefresh.play();
+            } else {
+                metricsRefresh.stop();
+            }
+            updatePainter();
+        });
+    }
+
+
+    /**
+     * Handles a change of the inputs of the sky. During an interactive change of the view, the last painted frame is
+     * shown transformed to the new view, while the sky is computed in the background. Otherwise, e.g while the time
+     * flows, the sky is computed and painted at once.
+     */
+    private void skyInputsInvalidated() {
+        // The interpolator keeps the state of the animation, and is only used by this thread.
+        if (interacting > 0 && !keyframeInterpolation.get() && paintedProjection != null) {
+            requestSkyInBackground();
+            paintPreview();
+        } else {
+            cancelPreview();
+            observedSky.set(computeSky());
+            updatePainter();
+        }
+    }
+
+
+    /**
+     * Computes the sky from its inputs, which become valid again.
+     *
+     * @return the observed sky.
+     */
+    private ObservedSky computeSky() {
+        FramePhaseEvent skyPhase = metrics.start(Phase.OBSERVED_SKY);
+        long start = System.nanoTime();
+        double limitingMagnitude = frameBudget.getQuality().limitingMagnitude();
+        SkyState state = skyState.getState();
+        // In the keyframe interpolation mode, the frames between two keyframes are interpolated instead of computed,
+        // otherwise the skies are found in the frame cache when the state comes back to a previous one, or when
+        // the sky of a center less than a pixel away has been prefetched.
+        ObservedSky sky = keyframeInterpolation.get()
+                ? interpolator.frameAt(state.zonedDateTime(), state.location(),
+                        projection.get(), catalogue.getValue(), limitingMagnitude, viewRadius.get(), dilatationFactor.get())
+                : frameCache.observedSky(state.zonedDateTime(), state.location(),
+                        projection.get(), catalogue.getValue(), limitingMagnitude, viewRadius.get(), pixelAngle());
+        frameBudget.recordCompute(System.nanoTime() - start);
+        metrics.stop(skyPhase);
+        return sky;
+    }
+
+
+    /**
+     * Computes the angular size of a pixel at the center of the view, up to which a cached sky may be drawn
+     * instead of the sky of the current center.
+     *
+     * @return the angular size, in radians.
+     */
+    private double pixelAngle() {
+        return projection.get().angularDistanceOf(1 / dilatationFactor.get());
+    }
+
+
+    /**
+     * Requests the sky of the current inputs, computed in the background and painted when ready.
+     * The inputs are read at once, and only the last requested sky is computed once the current computation is over.
+     */
+    private void requestSkyInBackground() {
+        ++skyRequest;
+        SkyState state = skyState.getState();
+        StereographicProjection stereoProj = projection.get();
+        StarCatalogue stars = catalogue.getValue();
+        double limitingMagnitude = frameBudget.getQuality().limitingMagnitude();
+        double radius = viewRadius.get();
+
+        pendingSky = () -> frameCache.observedSky(state.zonedDateTime(), state.location(), stereoProj, stars, limitingMagnitude, radius);
+        if (!computingInBackground) computeSkyInBackground();
+    }
+
+
+    /**
+     * Computes the pending sky in the background, then paints it if no other sky has been requested since,
+     * or computes the next pending sky otherwise.
+     */
+    private void computeSkyInBackground() {
+        long request = skyRequest;
+        Supplier<ObservedSky> computation = pendingSky;
+        pendingSky = null;
+        computingInBackground = true;
+
+        CompletableFuture.supplyAsync(computation, skyComputer).whenCompleteAsync((sky, e) -> {
+            computingInBackground = false;
+            if (request != skyRequest) {
+                if (pendingSky != null) computeSkyInBackground();
+                return;
+            }
+            previewImage = null;
+            // The sky is computed again on this thread if its computation failed, so that its exception is reported.
+            observedSky.set(e == null ? sky : computeSky());
+            updatePainter();
+        }, Platform::runLater);
+    }
+
+
+    /**
+     * Computes in the background the sky of the current inputs with the given center, so that it is found in the frame
+     * cache when the view reaches it. Only the last requested sky is computed, the previous ones being dropped.
+     * The view radius does not depend on the center, hence the one of the current view is kept.
+     *
+     * @param center the center of the view.
+     */
+    private void prefetchSky(HorizontalCoordinates center) {
+        if (keyframeInterpolation.get()) return;
+        long request = prefetchRequest.incrementAndGet();
+        SkyState state = skyState.getState();
+        StereographicProjection stereoProj = new StereographicProjection(center);
+        StarCatalogue stars = catalogue.getValue();
+        double limitingMagnitude = frameBudget.getQuality().limitingMagnitude();
+        double radius = viewRadius.get();
+
+        skyComputer.execute(() -> {
+            if (request == prefetchRequest.get()) {
+                frameCache.observedSky(state.zonedDateTime(), state.location(), stereoProj, stars, limitingMagnitude, radius);
+            }
+        });
+    }
+
+
+    /**
+     * Paints the last painted frame transformed to the current view, taking it first if the preview has just begun.
+     * The transformation is the affine one matching the exact change of view around the center of the canvas.
+     */
+    private void paintPreview() {
+        double width = canvas.getWidth(), height = canvas.getHeight();
+        if (previewImage == null) {
+            previewImage = canvas.snapshot(null, null);
+            previewProjection = paintedProjection;
+            previewDilatation = paintedDilatation;
+        }
+
+        StereographicProjection newProjection = projection.get();
+        double newDilatation = dilatationFactor.get();
+
+        // Point of the last frame at the center of the new view, and two points close to it.
+        CartesianCoordinates center = previewProjection.apply(newProjection.getCenter());
+        double x0 = width / 2 + previewDilatation * center.x(), y0 = height / 2 - previewDilatation * center.y();
+        double[] p0 = previewToCanvas(x0, y0, newProjection, newDilatation, width, height);
+        double[] p1 = previewToCanvas(x0 + PREVIEW_SAMPLE_DISTANCE, y0, newProjection, newDilatation, width, height);
+        double[] p2 = previewToCanvas(x0, y0 + PREVIEW_SAMPLE_DISTANCE, newProjection, newDilatation, width, height);
+
+        double mxx = (p1[0] - p0[0]) / PREVIEW_SAMPLE_DISTANCE, myx = (p1[1] - p0[1]) / PREVIEW_SAMPLE_DISTANCE;
+        double mxy = (p2[0] - p0[0]) / PREVIEW_SAMPLE_DISTANCE, myy = (p2[1] - p0[1]) / PREVIEW_SAMPLE_DISTANCE;
+        previewTransform = new Affine(mxx, mxy, p0[0] - mxx * x0 - mxy * y0, myx, myy, p0[1] - myx * x0 - myy * y0);
+        painter.drawPreview(previewImage, previewTransform);
+        objectUnderMouse.invalidate();
+    }
+
+
+    /**
+     * Finds the object drawn under the mouse in the pick buffer. While a preview is shown, the buffer is the one of
+     * the last painted frame, hence the mouse position is mapped back to this frame.
+     *
+     * @param position the position of the mouse in the canvas, null if the mouse is not over it.
+     * @return the object, or null if there is none, or if the mouse is not over the canvas.
+     */
+    private CelestialObject pickedObject(Point2D position) {
+        if (position == null) return null;
+        if (previewImage != null && previewTransform != null) {
+            try {
+                position = previewTransform.inverseTransform(position);
+            } catch (NonInvertibleTransformException e) {
+                return null;
+            }
+        }
+        return pickBuffer.objectAt(position.getX(), position.getY());
+    }
+
+
+    /**
+     * Maps a point of the last painted frame to the canvas of the current view.
+     *
+     * @param x             the x coordinate of the point in the last frame.
+     * @param y             the y coordinate of the point in the last frame.
+     * @param newProjection the projection of the current view.
+     * @param newDilatation the scale factor of the current view.
+     * @param width         the width of the canvas.
+     * @param height        the height of the canvas.
+     * @return the coordinates of the point in the canvas, x then y.
+     */
+    private double[] previewToCanvas(double x, double y, StereographicProjection newProjection, double newDilatation, double width, double height) {
+        HorizontalCoordinates position = previewProjection.inverseApply(CartesianCoordinates.of(
+                (x - width / 2) / previewDilatation, -(y - height / 2) / previewDilatation));
+        CartesianCoordinates projected = newProjection.apply(position);
+        return new double[]{width / 2 + newDilatation * projected.x(), height / 2 - newDilatation * projected.y()};
+    }
+
+
+    /**
+     * Drops the preview and the sky requested in the background, if any.
+     */
+    private void cancelPreview() {
+        ++skyRequest;
+        pendingSky = null;
+        previewImage = null;
+    }
+
+
+    /**
+     * Runs an interactive change of the view, whose sky is computed in the background.
+     *
+     * @param change the change.
+     */
+    private void interactively(Runnable change) {
+        ++interacting;
+        try {
+            change.run();
+        } finally {
+            --interacting;
+        }
     }
 
 
@@ -189,17 +526,51 @@ public final class SkyCanvasManager {
      * Calls to all the sky canvas painter methods, update of the drawn sky.
      */
     public void updatePainter() {
+        // The sky has been computed before the painting, its own duration being recorded separately.
+        ObservedSky sky = observedSky.get();
+        // A preview being shown is replaced by this frame.
+        previewImage = null;
+        paintedProjection = projection.get();
+        paintedDilatation = dilatationFactor.get();
+        FramePhaseEvent paintPhase = metrics.start(Phase.PAINT);
+        long paintStart = System.nanoTime();
+        RenderQuality quality = frameBudget.getQuality();
+
         // Reset of the canvas.
         painter.clear();
 
         //Drawing of the sky on the canvas.
-        painter.drawParallels(projection.get(), planeToCanvas.get(), canvas.getWidth());
-        painter.drawMeridians(projection.get(), planeToCanvas.get(), roundedViewAltDeg.get(), canvas.getWidth(), canvas.getHeight());
-        painter.drawStars(observedSky.get(), planeToCanvas.get(),drawConstellation.get());
-        painter.drawPlanets(observedSky.get(), planeToCanvas.get());
-        painter.drawMoon(observedSky.get(), projection.get(), planeToCanvas.get());
-        painter.drawSun(observedSky.get(), projection.get(), planeToCanvas.get());
+        FramePhaseEvent phase = metrics.start(Phase.GRID);
+        painter.drawParallels(projection.get(), planeToCanvas.get(), canvas.getWidth(), quality.gridStep());
+        painter.drawMeridians(projection.get(), planeToCanvas.get(), roundedViewAltDeg.get(), canvas.getWidth(), canvas.getHeight(), quality.gridStep());
+        metrics.stop(phase);
+
+        // The stars painting records the duration of the asterisms and of the stars themselves.
+        painter.drawStars(sky, planeToCanvas.get(), drawConstellation.get(), quality.constellationLabels(), rasterizedStars.get());
+
+        phase = metrics.start(Phase.PLANETS);
+        painter.drawPlanets(sky, planeToCanvas.get());
+        metrics.stop(phase);
+
+        phase = metrics.start(Phase.MOON_AND_SUN);
+        painter.drawMoon(sky, projection.get(), planeToCanvas.get());
+        painter.drawSun(sky, projection.get(), planeToCanvas.get());
+        metrics.stop(phase);
+
+        phase = metrics.start(Phase.HORIZON);
         painter.drawHorizon(projection.get(), planeToCanvas.get(), roundedViewAltDeg.get(), canvas.getWidth());
+        metrics.stop(phase);
+        // The pick buffer has been filled with the drawn objects.
+        objectUnderMouse.invalidate();
+
+        metrics.stop(paintPhase);
+        metrics.frameCompleted();
+        frameBudget.recordPaint(System.nanoTime() - paintStart);
+
+        if (showMetricsOverlay.get()) {
+            // The report is refreshed periodically, by the overlay refresh, so that the displayed values stay readable.
+            painter.drawMetricsOverlay(metricsReport, frameCache.hitRate());
+        }
     }
 
 
@@ -213,6 +584,9 @@ public final class SkyCanvasManager {
         // Mouse left click listener, allow keyboard event.
         setMouseClickEvent(canvas);
 
+        // Mouse drag event, panning implementation.
+        setMouseDragEvents(canvas);
+
         // Keys event, sky rotation implementation.
         setKeyEvent(canvas);
 
@@ -243,8 +617,12 @@ public final class SkyCanvasManager {
      */
     private void setMouseClickEvent(Canvas canvas) {
         canvas.setOnMousePressed(event -> {
-            if (event.isPrimaryButtonDown()) {
-                canvas.requestFocus();
+            if (event.isPrimaryButtonDown()) canvas.requestFocus();
+        });
+
+        // The information window is only opened by a click, not by the release of a drag.
+        canvas.setOnMouseClicked(event -> {
+            if (event.getButton() == MouseButton.PRIMARY && event.isStillSincePress()) {
                 if (getObjectUnderMouse() != null) {
                     if (names.contains(getObjectUnderMouse().name())) {
                         skySoundManager.launchNotifSound(celestialDataManager.hasLaunched());
@@ -257,6 +635,52 @@ public final class SkyCanvasManager {
     }
 
 
+    /**
+     * Initializes the mouse drag listeners in order to implement the panning functionality: the grabbed point of the
+     * sky follows the cursor, and the view keeps moving after a flick.
+     *
+     * @param canvas the canvas.
+     */
+    private void setMouseDragEvents(Canvas canvas) {
+        canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, event -> {
+            if (event.getButton() != MouseButton.PRIMARY) return;
+            grabProjection = projection.get();
+            grabDilatation = dilatationFactor.get();
+            grabCenter = grabProjection.getCenter();
+            grabPosition = grabbedPosition(event.getX(), event.getY());
+            viewPanner.dragStarted();
+        });
+
+        canvas.setOnMouseDragged(event -> {
+            if (grabPosition == null || event.isStillSincePress()) return;
+            // The center moves by the angles between the grabbed point and the point under the cursor, both taken in
+            // the view of the beginning of the drag, so that the grabbed point stays under the cursor.
+            HorizontalCoordinates position = grabbedPosition(event.getX(), event.getY());
+            viewPanner.dragTo(grabCenter.azDeg() + ViewPanner.azDifference(grabPosition.azDeg(), position.azDeg()),
+                    grabCenter.altDeg() + grabPosition.altDeg() - position.altDeg(), System.nanoTime());
+        });
+
+        canvas.setOnMouseReleased(event -> {
+            if (event.getButton() != MouseButton.PRIMARY || grabPosition == null) return;
+            grabPosition = null;
+            viewPanner.dragEnded(System.nanoTime());
+        });
+    }
+
+
+    /**
+     * Gives the position in the sky of a point of the canvas, in the view of the beginning of the drag.
+     *
+     * @param x the x coordinate of the point in the canvas.
+     * @param y the y coordinate of the point in the canvas.
+     * @return the horizontal coordinates of the point.
+     */
+    private HorizontalCoordinates grabbedPosition(double x, double y) {
+        return grabProjection.inverseApply(CartesianCoordinates.of(
+                (x - canvas.getWidth() / 2) / grabDilatation, -(y - canvas.getHeight() / 2) / grabDilatation));
+    }
+
+
     /**
      * Initializes the keys listener in order to implement the sky rotation functionality.
      *
@@ -302,11 +726,8 @@ public final class SkyCanvasManager {
             double deltaY = event.getDeltaY();
             double maxAbs = Math.max(Math.abs(deltaX), Math.abs(deltaY));
 
-            if (maxAbs == Math.abs(deltaX)) {
-                viewingParametersBean.setFieldOfViewDeg(ZOOM_INTERVAL.clip(viewingParametersBean.getFieldOfViewDeg() - deltaX));
-            } else {
-                viewingParametersBean.setFieldOfViewDeg(ZOOM_INTERVAL.clip(viewingParametersBean.getFieldOfViewDeg() - deltaY));
-            }
+            double delta = (maxAbs == Math.abs(deltaX)) ? deltaX : deltaY;
+            interactively(() -> skyState.update(s -> s.withFieldOfViewDeg(ZOOM_INTERVAL.clip(s.fieldOfViewDeg() - delta))));
         });
     }
 
@@ -367,41 +788,76 @@ public final class SkyCanvasManager {
     }
 
 
+    /**
+     * Setter for the display of the frame metrics overlay.
+     * The metrics are only recorded while the overlay is displayed.
+     *
+     * @param value true if the overlay has to be displayed.
+     */
+    public void setShowMetricsOverlay(boolean value) {
+        showMetricsOverlay.setValue(value);
+    }
+
+
+    /**
+     * Setter for the keyframe interpolation mode, meant for the high time accelerations: the models are only run at
+     * keyframes, whose rate adapts to the error of the interpolation, and the frames between them are interpolated.
+     *
+     * @param value true if the frames have to be interpolated.
+     */
+    public void setKeyframeInterpolation(boolean value) {
+        keyframeInterpolation.setValue(value);
+    }
+
+
+    /**
+     * Setter for the software rasterization of the stars: the disks of the stars are blended into a pixel buffer,
+     * in parallel tiles, which is drawn on the canvas as a single image.
+     *
+     * @param value true if the stars have to be rasterized.
+     */
+    public void setRasterizedStars(boolean value) {
+        rasterizedStars.setValue(value);
+    }
+
+
     /**
      * Updates the direction shift depending on the given direction string.
      * @param newDirection direction string
      */
     public void updateDirection(String newDirection) {
+        // The changes of direction are interactive, their skies being computed in the background.
+        interactively(() -> {
+            switch (newDirection) {
+
+                case "LEFT":
+                    skyState.update(s -> s.withCenter(HorizontalCoordinates.ofDeg(
+                            AZ_INTERVAL_DEG.reduce(s.center().azDeg() - AZIMUTH_SHIFT),
+                            s.center().altDeg())));
+                    break;
 
-        switch (newDirection) {
-
-            case "LEFT":
-                viewingParametersBean.setCenter(HorizontalCoordinates.ofDeg(
-                        AZ_INTERVAL_DEG.reduce(viewingParametersBean.getCenter().azDeg() - AZIMUTH_SHIFT),
-                        viewingParametersBean.getCenter().altDeg()));
-                break;
-
-            case "RIGHT":
-                viewingParametersBean.setCenter(HorizontalCoordinates.ofDeg(
-                        AZ_INTERVAL_DEG.reduce(viewingParametersBean.getCenter().azDeg() + AZIMUTH_SHIFT),
-                        viewingParametersBean.getCenter().altDeg()));
-                break;
-
-            case "UP":
-                viewingParametersBean.setCenter(HorizontalCoordinates.ofDeg(
-                        viewingParametersBean.getCenter().azDeg(),
-                        ALT_INTERVAL_DEG.clip(viewingParametersBean.getCenter().altDeg() + ALTITUDE_SHIFT)));
-                break;
-
-            case "DOWN":
-                viewingParametersBean.setCenter(HorizontalCoordinates.ofDeg(
-                        viewingParametersBean.getCenter().azDeg(),
-                        ALT_INTERVAL_DEG.clip(viewingParametersBean.getCenter().altDeg() - ALTITUDE_SHIFT)));
-                break;
-
-                // Idle direction by default;
-            default:
-                break;
-        }
+                case "RIGHT":
+                    skyState.update(s -> s.withCenter(HorizontalCoordinates.ofDeg(
+                            AZ_INTERVAL_DEG.reduce(s.center().azDeg() + AZIMUTH_SHIFT),
+                            s.center().altDeg())));
+                    break;
+
+                case "UP":
+                    skyState.update(s -> s.withCenter(HorizontalCoordinates.ofDeg(
+                            s.center().azDeg(),
+                            ALT_INTERVAL_DEG.clip(s.center().altDeg() + ALTITUDE_SHIFT))));
+                    break;
+
+                case "DOWN":
+                    skyState.update(s -> s.withCenter(HorizontalCoordinates.ofDeg(
+                            s.center().azDeg(),
+                            ALT_INTERVAL_DEG.clip(s.center().altDeg() - ALTITUDE_SHIFT))));
+                    break;
+
+                    // Idle direction by default;
+                default:
+                    break;
+            }
+        });
     }
 }
@@ -6,15 +6,21 @@ import ch.epfl.rigel.coordinates.HorizontalCoordinates;
 import ch.epfl.rigel.coordinates.StereographicProjection;
 import ch.epfl.rigel.math.Angle;
 import ch.epfl.rigel.math.ClosedInterval;
+import ch.epfl.rigel.monitoring.FrameMetrics;
+import ch.epfl.rigel.monitoring.FramePhaseEvent;
+import ch.epfl.rigel.monitoring.LatencyHistogram;
+import ch.epfl.rigel.monitoring.Phase;
 
-import javafx.geometry.Bounds;
 import javafx.geometry.VPos;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
 import javafx.scene.paint.Color;
+import javafx.scene.transform.Affine;
 import javafx.scene.transform.Transform;
 
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Class allowing the celestial objects and the horizon to be drawn on a canvas.
@@ -27,36 +33,92 @@ public final class SkyCanvasPainter {
     private final static double STANDARD_ANG_SIZE = Math.tan(Angle.ofDeg(0.5) / 4);
     private final Canvas canvas;
     private final GraphicsContext ctx;
+    private final FrameMetrics metrics;
+    private final StarRasterizer starRasterizer = new StarRasterizer();
+    // Buffer of the objects drawn on each pixel, filled while painting, null if the drawn objects are not recorded.
+    private final PickBuffer pickBuffer;
+
+    // Coordinates of the asterism segment being clipped, reused from one segment to the next.
+    private final double[] segment = new double[4];
 
     private final static double SUN_OPACITY = 0.25;
     private final static HorizontalCoordinates ZERO_COORDINATES = HorizontalCoordinates.of(0, 0);
     private final static double OCTANT_ALTITUDE_SHIFT = -0.5;
 
     private final static double PARALLEL_MERIDIAN_LINE_WIDTH = 0.25;
+    private final static double ASTERISM_LINE_WIDTH = 1.0;
 
     // Used for ovals.
     private final static Color PARALLEL_MERIDIAN_COLOUR_OVALS = Color.LAVENDERBLUSH.deriveColor(0, 1, 1, 0.25);
     // Used for lines. Sets a bigger opacity factor in order to counteract the visual effect of the brighter ovals.
     private final static Color PARALLEL_MERIDIAN_COLOUR_LINES = Color.LAVENDERBLUSH.deriveColor(0, 1, 1, 0.5);
 
+    // Metrics overlay layout: background, margin, line height and the x offsets of the columns.
+    private final static Color OVERLAY_BACKGROUND = Color.rgb(32, 32, 32, 0.7);
+    private final static double OVERLAY_MARGIN = 10, OVERLAY_LINE_HEIGHT = 16, OVERLAY_WIDTH = 260,
+            OVERLAY_P50_OFFSET = 110, OVERLAY_P99_OFFSET = 185;
+
 
     /**
-     * Constructor of the class.
+     * Constructor of the class, the painting phases are not measured.
      *
      * @param canvas the canvas on which the sky is drawn.
      */
     public SkyCanvasPainter(Canvas canvas) {
+        this(canvas, new FrameMetrics());
+    }
+
+
+    /**
+     * Constructor of the class.
+     *
+     * @param canvas  the canvas on which the sky is drawn.
+     * @param metrics the registry in which the duration of the stars and asterisms painting is recorded.
+     */
+    public SkyCanvasPainter(Canvas canvas, FrameMetrics metrics) {
+        this(canvas, metrics, null);
+    }
+
+
+    /**
+     * Constructor of the class, recording the drawn celestial objects.
+     *
+     * @param canvas     the canvas on which the sky is drawn.
+     * @param metrics    the registry in which the duration of the stars and asterisms painting is recorded.
+     * @param pickBuffer the buffer in which the drawn celestial objects are recorded, emptied by each clearing
+     *                   of the canvas, or null if they are not recorded.
+     */
+    public SkyCanvasPainter(Canvas canvas, FrameMetrics metrics, PickBuffer pickBuffer) {
         this.canvas = canvas;
         this.ctx = this.canvas.getGraphicsContext2D();
+        this.metrics = metrics;
+        this.pickBuffer = pickBuffer;
     }
 
 
     /**
-     * Clear method, draws a black rectangle on the whole canvas.
+     * Clear method, draws a black rectangle on the whole canvas, and empties the pick buffer.
      */
     public void clear() {
         ctx.setFill(Color.BLACK);
         ctx.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (pickBuffer != null) pickBuffer.clear(canvas.getWidth(), canvas.getHeight());
+    }
+
+
+    /**
+     * Draws a preview of the sky: clears the canvas, and draws the given image of a previous frame transformed.
+     * No object is recorded in the pick buffer, the objects of the image not being at their exact position.
+     *
+     * @param image     the image of the previous frame.
+     * @param transform the transformation from the previous frame to the canvas.
+     */
+    public void drawPreview(Image image, Affine transform) {
+        clear();
+        ctx.save();
+        ctx.setTransform(transform);
+        ctx.drawImage(image, 0, 0);
+        ctx.restore();
     }
 
 
@@ -80,6 +142,7 @@ public final class SkyCanvasPainter {
         ctx.setFill(Color.WHITE);
         // We have to subtract by the radius as the x and y coordinates correspond to the upper left bound.
         drawOval(canvasCoords.x(), canvasCoords.y(), canvasRadius, true);
+        pick(sky.moon(), canvasCoords.x(), canvasCoords.y(), canvasRadius);
     }
 
 
@@ -113,6 +176,8 @@ public final class SkyCanvasPainter {
 
         ctx.setFill(Color.WHITE);
         drawOval(canvasCoords.x(), canvasCoords.y(), canvasRadius, true);
+        // The translucent halo does not hide the objects behind it, only the opaque disks do.
+        pick(sky.sun(), canvasCoords.x(), canvasCoords.y(), radiusMediumDisc);
     }
 
 
@@ -138,7 +203,7 @@ public final class SkyCanvasPainter {
 
             ctx.setFill(Color.LIGHTGRAY);
             drawOval(planetsCoords[2 * i], planetsCoords[2 * i + 1], finalRadius, true);
-
+            pick(planets.get(i), planetsCoords[2 * i], planetsCoords[2 * i + 1], finalRadius);
         }
     }
 
@@ -149,8 +214,11 @@ public final class SkyCanvasPainter {
      * @param sky                the observed sky at a given zoned date time.
      * @param planeToCanvas      the affine transformation from the stereographic projection to the canvas.
      * @param drawConstellations boolean that indicates whether the constellations or the asterisms should  by drawn.
+     * @param drawLabels         boolean that indicates whether the names of the constellations should be drawn.
+     * @param rasterized         boolean that indicates whether the stars should be rasterized by the star rasterizer,
+     *                           instead of being filled one by one on the canvas.
      */
-    public void drawStars(ObservedSky sky, Transform planeToCanvas, boolean drawConstellations) {
+    public void drawStars(ObservedSky sky, Transform planeToCanvas, boolean drawConstellations, boolean drawLabels, boolean rasterized) {
 
         double[] starsCoords = sky.starsPosition();
         // The given array in the observed sky allow us to perform a simultaneous transformation of all the planets.
@@ -158,33 +226,56 @@ public final class SkyCanvasPainter {
 
         List<Star> stars = sky.stars();
         // Before drawing the stars, we draw the asterisms to prevent them to obstruct the star thereafter.
-        drawAsterismsOrConstellations(sky, starsCoords, drawConstellations);
-
-        for (int i = 0; i < stars.size(); ++i) {
-            Star star = stars.get(i);
-            double canvasRadius = RadiusOf(star);
-            // We get the absolute value of the delta transform x component as it corresponds to the magnitude of the resulting vector.
-            double finalRadius = Math.abs(planeToCanvas.deltaTransform(canvasRadius, 0).getX());
-            // We compute the stars color using the BlackBodyColor class.
-            ctx.setFill(BlackBodyColor.colorForTemperature(star.colorTemperature()));
-            drawOval(starsCoords[2 * i], starsCoords[2 * i + 1], finalRadius, true);
+        FramePhaseEvent phase = metrics.start(Phase.ASTERISMS);
+        drawAsterismsOrConstellations(sky, starsCoords, drawConstellations, drawLabels);
+        metrics.stop(phase);
+
+        phase = metrics.start(Phase.STARS);
+        if (rasterized) {
+            double[] radii = new double[stars.size()];
+            int[] colors = new int[stars.size()];
+            for (int i = 0; i < stars.size(); ++i) {
+                Star star = stars.get(i);
+                radii[i] = Math.abs(planeToCanvas.deltaTransform(RadiusOf(star), 0).getX());
+                colors[i] = StarRasterizer.argb(BlackBodyColor.colorForTemperature(star.colorTemperature()));
+            }
+            starRasterizer.paint(ctx, (int) canvas.getWidth(), (int) canvas.getHeight(), starsCoords, radii, colors, stars.size());
+            for (int i = 0; i < stars.size(); ++i) {
+                pick(stars.get(i), starsCoords[2 * i], starsCoords[2 * i + 1], radii[i]);
+            }
+        } else {
+            for (int i = 0; i < stars.size(); ++i) {
+                Star star = stars.get(i);
+                double canvasRadius = RadiusOf(star);
+                // We get the absolute value of the delta transform x component as it corresponds to the magnitude of the resulting vector.
+                double finalRadius = Math.abs(planeToCanvas.deltaTransform(canvasRadius, 0).getX());
+                // We compute the stars color using the BlackBodyColor class.
+                ctx.setFill(BlackBodyColor.colorForTemperature(star.colorTemperature()));
+                drawOval(starsCoords[2 * i], starsCoords[2 * i + 1], finalRadius, true);
+                pick(star, starsCoords[2 * i], starsCoords[2 * i + 1], finalRadius);
+            }
         }
+        metrics.stop(phase);
     }
 
 
     /**
      * Draws the asterisms or the constellations on the canvas.
+     * The asterisms whose bounding box lies outside of the canvas are skipped, the segments are clipped to the canvas,
+     * and each asterism is stroked as a single path.
      *
      * @param sky                the observed sky at a given zoned date time.
      * @param starsCoords        the star coordinates in the observed sky catalogue.
      * @param drawConstellations boolean that indicates whether the constellations or the asterisms should by drawn.
+     * @param drawLabels         boolean that indicates whether the names of the constellations should be drawn.
      */
-    private void drawAsterismsOrConstellations(ObservedSky sky, double[] starsCoords, boolean drawConstellations) {
-        // We get the bounds of the sky painter canvas.
-        Bounds b = canvas.getBoundsInLocal();
+    private void drawAsterismsOrConstellations(ObservedSky sky, double[] starsCoords, boolean drawConstellations, boolean drawLabels) {
+        // The clipping rectangle is the canvas, enlarged by the width of the lines.
+        double minX = -ASTERISM_LINE_WIDTH, minY = -ASTERISM_LINE_WIDTH;
+        double maxX = canvas.getWidth() + ASTERISM_LINE_WIDTH, maxY = canvas.getHeight() + ASTERISM_LINE_WIDTH;
 
         //We set the width and color of the asterisms lines.
-        ctx.setLineWidth(1.0);
+        ctx.setLineWidth(ASTERISM_LINE_WIDTH);
 
         if (drawConstellations) {
             ctx.setStroke(Color.LIGHTGREEN);
@@ -192,42 +283,103 @@ public final class SkyCanvasPainter {
             ctx.setStroke(Color.BLUE);
         }
 
-        List<Integer> indixes;
-        for (Asterism ast : sky.asterisms()) {
-
-
-            // We get the indexes of the stars in each asterism.
-            indixes = sky.asterismIndices(ast);
-            int firstIndex = 2 * indixes.get(0);
-            // Thus, we get a correspondence between the stars indexes in the asterisms and their coordinates in the array.
-            double x = starsCoords[firstIndex];
-            double y = starsCoords[firstIndex + 1];
+        AsterismPolylines polylines = sky.asterismPolylines();
+        for (int a = 0; a < polylines.size(); ++a) {
+            int start = polylines.start(a), end = polylines.end(a);
+
+            // Bounding box of the projected stars of the asterism.
+            double boxMinX = Double.POSITIVE_INFINITY, boxMinY = Double.POSITIVE_INFINITY;
+            double boxMaxX = Double.NEGATIVE_INFINITY, boxMaxY = Double.NEGATIVE_INFINITY;
+            for (int p = start; p < end; ++p) {
+                int index = 2 * polylines.starIndex(p);
+                boxMinX = Math.min(boxMinX, starsCoords[index]);
+                boxMaxX = Math.max(boxMaxX, starsCoords[index]);
+                boxMinY = Math.min(boxMinY, starsCoords[index + 1]);
+                boxMaxY = Math.max(boxMaxY, starsCoords[index + 1]);
+            }
+            if (boxMaxX < minX || boxMinX > maxX || boxMaxY < minY || boxMinY > maxY) continue;
 
-            // For each star in the asterism, we compute the next star coordinates and check if at least one of them is present on the canvas.
             // The textCoordX and textCoordY helps on placing the text of the constellation in a better way.
             double textCoordX = 0;
             double textCoordY = 0;
-
-            for (int i = 1; i < indixes.size(); ++i) {
-                int index = 2 * indixes.get(i);
-                double x1 = starsCoords[index];
-                double y1 = starsCoords[index + 1];
-                if (b.contains(x, y) || b.contains(x1, y1)) {
-                    ctx.strokeLine(x, y, x1, y1);
+            // End of the path drawn so far, NaN while the path is empty.
+            double pathX = Double.NaN, pathY = Double.NaN;
+
+            ctx.beginPath();
+            for (int p = start + 1; p < end; ++p) {
+                int index0 = 2 * polylines.starIndex(p - 1);
+                int index1 = 2 * polylines.starIndex(p);
+                segment[0] = starsCoords[index0];
+                segment[1] = starsCoords[index0 + 1];
+                segment[2] = starsCoords[index1];
+                segment[3] = starsCoords[index1 + 1];
+                textCoordX = (segment[0] + segment[2]) / 2;
+                textCoordY = (segment[1] + segment[3]) / 2;
+
+                if (clip(segment, minX, minY, maxX, maxY)) {
+                    // The path is only interrupted when the previous segment was clipped at its end.
+                    if (segment[0] != pathX || segment[1] != pathY) ctx.moveTo(segment[0], segment[1]);
+                    ctx.lineTo(segment[2], segment[3]);
+                    pathX = segment[2];
+                    pathY = segment[3];
                 }
-                textCoordX = (x + x1) / 2;
-                textCoordY = (y + y1) / 2;
-                x = x1;
-                y = y1;
             }
+            ctx.stroke();
 
-            String currentConstellation = ast.getConstellationName();
-            if (!currentConstellation.equals("-") && drawConstellations)
+            String currentConstellation = polylines.asterism(a).getConstellationName();
+            if (drawConstellations && drawLabels && !currentConstellation.equals("-")
+                    && textCoordX >= minX && textCoordX <= maxX && textCoordY >= minY && textCoordY <= maxY)
                 ctx.strokeText(currentConstellation, textCoordX, textCoordY);
         }
     }
 
 
+    /**
+     * Clips a segment to a rectangle, with the Liang-Barsky algorithm.
+     *
+     * @param segment the coordinates x0, y0, x1 and y1 of the segment, replaced by the ones of the clipped segment.
+     * @param minX    the smallest abscissa of the rectangle.
+     * @param minY    the smallest ordinate of the rectangle.
+     * @param maxX    the largest abscissa of the rectangle.
+     * @param maxY    the largest ordinate of the rectangle.
+     * @return true if a part of the segment lies in the rectangle, false otherwise or if a coordinate is not finite.
+     */
+    private static boolean clip(double[] segment, double minX, double minY, double maxX, double maxY) {
+        double x0 = segment[0], y0 = segment[1];
+        double dx = segment[2] - x0, dy = segment[3] - y0;
+        if (!Double.isFinite(dx) || !Double.isFinite(dy)) return false;
+
+        double t0 = 0, t1 = 1;
+        // Left, right, bottom and top edges: the segment enters or leaves the rectangle at t = q / p.
+        for (int edge = 0; edge < 4; ++edge) {
+            double p = (edge < 2) ? dx : dy;
+            if ((edge & 1) == 0) p = -p;
+            double q = (edge == 0) ? x0 - minX : (edge == 1) ? maxX - x0 : (edge == 2) ? y0 - minY : maxY - y0;
+
+            if (p == 0) {
+                if (q < 0) return false;
+            } else {
+                double t = q / p;
+                if (p < 0) {
+                    if (t > t1) return false;
+                    t0 = Math.max(t0, t);
+                } else {
+                    if (t < t0) return false;
+                    t1 = Math.min(t1, t);
+                }
+            }
+        }
+
+        segment[0] = (t0 == 0) ? x0 : x0 + t0 * dx;
+        segment[1] = (t0 == 0) ? y0 : y0 + t0 * dy;
+        if (t1 != 1) {
+            segment[2] = x0 + t1 * dx;
+            segment[3] = y0 + t1 * dy;
+        }
+        return true;
+    }
+
+
     /**
      * Draws the horizon and the 8 octants on the canvas.
      *
@@ -284,13 +436,14 @@ public final class SkyCanvasPainter {
      * @param projection    the given stereographic projection of the coordinates onto a plane.
      * @param planeToCanvas the affine transformation from the stereographic projection to the canvas.
      * @param canvasWidth   the current width of the canvas.
+     * @param gridStep      the number of steps of 5 degrees between two drawn parallels.
      */
-    public void drawParallels(StereographicProjection projection, Transform planeToCanvas, double canvasWidth) {
+    public void drawParallels(StereographicProjection projection, Transform planeToCanvas, double canvasWidth, int gridStep) {
         ctx.setLineWidth(PARALLEL_MERIDIAN_LINE_WIDTH);
         ctx.setStroke(PARALLEL_MERIDIAN_COLOUR_OVALS);
 
-        // Draws all the parallels.
-        for (int i = -18; i <= 18; ++i) {
+        // Draws the parallels, the horizon being always drawn.
+        for (int i = -18; i <= 18; i += gridStep) {
             CartesianCoordinates center = projection.circleCenterForParallelAltDeg(5 * i);
             double radius = projection.circleRadiusForParallelAltDeg(5 * i);
 
@@ -318,8 +471,9 @@ public final class SkyCanvasPainter {
      * @param roundedViewAltDeg the current viewing altitude parameter, rounded, in degrees.
      * @param canvasWidth       the current width of the canvas.
      * @param canvasHeight      the current height of the canvas.
+     * @param gridStep          the number of steps of 10 degrees between two drawn meridians.
      */
-    public void drawMeridians(StereographicProjection projection, Transform planeToCanvas, int roundedViewAltDeg, double canvasWidth, double canvasHeight) {
+    public void drawMeridians(StereographicProjection projection, Transform planeToCanvas, int roundedViewAltDeg, double canvasWidth, double canvasHeight, int gridStep) {
         ctx.setLineWidth(PARALLEL_MERIDIAN_LINE_WIDTH);
         double halfCanvasHeight = canvasHeight / 2;
         double halfCanvasWidth = canvasWidth / 2;
@@ -327,7 +481,7 @@ public final class SkyCanvasPainter {
         // Draws all the meridians when the projection center is not at 90º of altitude.
         if (roundedViewAltDeg != 90) {
             ctx.setStroke(PARALLEL_MERIDIAN_COLOUR_OVALS);
-            for (int i = 0; i <= 35; ++i) {
+            for (int i = 0; i <= 35; i += gridStep) {
                 CartesianCoordinates center = projection.circleCenterForMeridianAzDeg(10 * i);
                 double radius = projection.circleRadiusForMeridianAzDeg(10 * i);
 
@@ -339,7 +493,7 @@ public final class SkyCanvasPainter {
         } else {
 
             ctx.setStroke(PARALLEL_MERIDIAN_COLOUR_LINES);
-            for (int i = 1; i <= 8; ++i) {
+            for (int i = gridStep; i <= 8; i += gridStep) {
                 // Height representing the distance between the point of the meridian intersecting the canvas limit and
                 // the horizontal line which is in the middle of the canvas.
                 double height = Math.tan(Angle.ofDeg(10 * i)) * canvasWidth / 2;
@@ -360,6 +514,48 @@ public final class SkyCanvasPainter {
     }
 
 
+    /**
+     * Draws the frame metrics overlay in the bottom left corner of the canvas:
+     * the frame rate, the median and 99th percentile of the duration of each phase, and the hit rates of the frame
+     * cache and of the shared ephemeris cache.
+     *
+     * @param report            the frame metrics report to display.
+     * @param frameCacheHitRate the hit rate of the cache of the observed skies.
+     */
+    public void drawMetricsOverlay(FrameMetrics.Report report, double frameCacheHitRate) {
+        Phase[] phases = Phase.values();
+        double height = (phases.length + 4) * OVERLAY_LINE_HEIGHT;
+        double left = OVERLAY_MARGIN;
+        double top = canvas.getHeight() - OVERLAY_MARGIN - height;
+
+        ctx.setFill(OVERLAY_BACKGROUND);
+        ctx.fillRect(left, top, OVERLAY_WIDTH, height);
+
+        ctx.setFill(Color.AZURE);
+        ctx.setTextBaseline(VPos.TOP);
+        double x = left + OVERLAY_MARGIN / 2;
+        double y = top + OVERLAY_LINE_HEIGHT / 2;
+        ctx.fillText(String.format(Locale.ROOT, "%.1f fps", report.framesPerSecond()), x, y);
+        ctx.fillText("p50", x + OVERLAY_P50_OFFSET, y);
+        ctx.fillText("p99", x + OVERLAY_P99_OFFSET, y);
+
+        for (Phase phase : phases) {
+            y += OVERLAY_LINE_HEIGHT;
+            LatencyHistogram.Snapshot durations = report.durations(phase);
+            ctx.fillText(phase.getName(), x, y);
+            ctx.fillText(String.format(Locale.ROOT, "%.2f ms", durations.percentileMillis(50)), x + OVERLAY_P50_OFFSET, y);
+            ctx.fillText(String.format(Locale.ROOT, "%.2f ms", durations.percentileMillis(99)), x + OVERLAY_P99_OFFSET, y);
+        }
+
+        y += OVERLAY_LINE_HEIGHT;
+        ctx.fillText("Frame cache", x, y);
+        ctx.fillText(String.format(Locale.ROOT, "%.0f %% hits", 100 * frameCacheHitRate), x + OVERLAY_P50_OFFSET, y);
+        y += OVERLAY_LINE_HEIGHT;
+        ctx.fillText("Ephemeris cache", x, y);
+        ctx.fillText(String.format(Locale.ROOT, "%.0f %% hits", 100 * EphemerisCache.SHARED.hitRate()), x + OVERLAY_P50_OFFSET, y);
+    }
+
+
     /**
      * Transforms the stereographic projection coordinates of the center and the radius
      * into the canvas coordinates of these elements.
@@ -398,6 +594,19 @@ public final class SkyCanvasPainter {
     }
 
 
+    /**
+     * Records a drawn celestial object in the pick buffer, if any.
+     *
+     * @param object  the celestial object.
+     * @param centerX x-coordinate of the center of the object on the canvas.
+     * @param centerY y-coordinate of the center of the object on the canvas.
+     * @param radius  radius of the drawn disk of the object.
+     */
+    private void pick(CelestialObject object, double centerX, double centerY, double radius) {
+        if (pickBuffer != null) pickBuffer.add(object, centerX, centerY, radius);
+    }
+
+
     /**
      * Generalization of the strokeOval and fillOval methods.
      *
@@ -0,0 +1,167 @@
+package ch.epfl.rigel.gui;
+
+import ch.epfl.rigel.coordinates.GeographicCoordinates;
+import ch.epfl.rigel.coordinates.HorizontalCoordinates;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+
+/**
+ * Immutable state of the observed sky: the observation instant and its zone, the observer location,
+ * and the viewing parameters (the projection center and the field of view).
+ * A change of several of these values is a single new state, the sky being then computed once.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class SkyState {
+
+    private final Instant instant;
+    private final ZoneId zone;
+    private final GeographicCoordinates location;
+    private final HorizontalCoordinates center;
+    private final double fieldOfViewDeg;
+
+
+    /**
+     * Private constructor.
+     *
+     * @param instant        the observation instant.
+     * @param zone           the zone of the observation instant.
+     * @param location       the observer location.
+     * @param center         the projection center.
+     * @param fieldOfViewDeg the field of view, in degrees.
+     */
+    private SkyState(Instant instant, ZoneId zone, GeographicCoordinates location, HorizontalCoordinates center, double fieldOfViewDeg) {
+        this.instant = Objects.requireNonNull(instant);
+        this.zone = Objects.requireNonNull(zone);
+        this.location = Objects.requireNonNull(location);
+        this.center = Objects.requireNonNull(center);
+        this.fieldOfViewDeg = fieldOfViewDeg;
+    }
+
+
+    /**
+     * Builds a state of the observed sky.
+     *
+     * @param when           the observation zoned date time.
+     * @param location       the observer location.
+     * @param center         the projection center.
+     * @param fieldOfViewDeg the field of view, in degrees.
+     * @return the state.
+     * @throws NullPointerException if one of the values is null.
+     */
+    public static SkyState of(ZonedDateTime when, GeographicCoordinates location, HorizontalCoordinates center, double fieldOfViewDeg) {
+        return new SkyState(when.toInstant(), when.getZone(), location, center, fieldOfViewDeg);
+    }
+
+
+    /**
+     * Getter for the observation instant.
+     *
+     * @return the instant.
+     */
+    public Instant instant() {
+        return instant;
+    }
+
+
+    /**
+     * Getter for the zone of the observation instant.
+     *
+     * @return the zone ID.
+     */
+    public ZoneId zone() {
+        return zone;
+    }
+
+
+    /**
+     * Getter for the observation zoned date time.
+     *
+     * @return the instant in its zone.
+     */
+    public ZonedDateTime zonedDateTime() {
+        return instant.atZone(zone);
+    }
+
+
+    /**
+     * Getter for the observer location.
+     *
+     * @return the geographic coordinates of the observer.
+     */
+    public GeographicCoordinates location() {
+        return location;
+    }
+
+
+    /**
+     * Getter for the projection center.
+     *
+     * @return the projection center.
+     */
+    public HorizontalCoordinates center() {
+        return center;
+    }
+
+
+    /**
+     * Getter for the field of view, in degrees.
+     *
+     * @return the field of view, in degrees.
+     */
+    public double fieldOfViewDeg() {
+        return fieldOfViewDeg;
+    }
+
+
+    /**
+     * Builds the state with another observation zoned date time.
+     *
+     * @param when the new zoned date time.
+     * @return the new state, or this one if the instant and the zone are unchanged.
+     */
+    public SkyState withZonedDateTime(ZonedDateTime when) {
+        return (when.toInstant().equals(instant) && when.getZone().equals(zone))
+                ? this : new SkyState(when.toInstant(), when.getZone(), location, center, fieldOfViewDeg);
+    }
+
+
+    /**
+     * Builds the state with another observer location.
+     *
+     * @param newLocation the new observer location.
+     * @return the new state, or this one if the location is unchanged.
+     */
+    public SkyState withLocation(GeographicCoordinates newLocation) {
+        return (newLocation.lon() == location.lon() && newLocation.lat() == location.lat())
+                ? this : new SkyState(instant, zone, newLocation, center, fieldOfViewDeg);
+    }
+
+
+    /**
+     * Builds the state with another projection center.
+     *
+     * @param newCenter the new projection center.
+     * @return the new state, or this one if the center is unchanged.
+     */
+    public SkyState withCenter(HorizontalCoordinates newCenter) {
+        return (newCenter.az() == center.az() && newCenter.alt() == center.alt())
+                ? this : new SkyState(instant, zone, location, newCenter, fieldOfViewDeg);
+    }
+
+
+    /**
+     * Builds the state with another field of view.
+     *
+     * @param newFieldOfViewDeg the new field of view, in degrees.
+     * @return the new state, or this one if the field of view is unchanged.
+     */
+    public SkyState withFieldOfViewDeg(double newFieldOfViewDeg) {
+        return (newFieldOfViewDeg == fieldOfViewDeg) ? this : new SkyState(instant, zone, location, center, newFieldOfViewDeg);
+    }
+
+}
@@ -0,0 +1,130 @@
+package ch.epfl.rigel.gui;
+
+import javafx.beans.Observable;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * JavaFX bean publishing the state of the observed sky through a single property.
+ * Each update replaces the whole state at once, so that the bindings depending on it are invalidated once.
+ * The other beans are views over this one: their properties follow the state, and setting them updates it.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class SkyStateBean {
+
+    private final ObjectProperty<SkyState> state;
+    // Depth of the publications of the state to the views, during which the views do not update the state back.
+    private int publishing;
+
+
+    /**
+     * Constructor.
+     *
+     * @param initialState the initial state.
+     */
+    public SkyStateBean(SkyState initialState) {
+        state = new SimpleObjectProperty<>(initialState);
+    }
+
+
+    /**
+     * Getter for the state property.
+     *
+     * @return state as a read-only property.
+     */
+    public ReadOnlyObjectProperty<SkyState> stateProperty() {
+        return state;
+    }
+
+    /**
+     * Getter for the state.
+     *
+     * @return the current state.
+     */
+    public SkyState getState() {
+        return state.get();
+    }
+
+    /**
+     * Setter for the state.
+     *
+     * @param newState the new state.
+     */
+    public void setState(SkyState newState) {
+        state.set(newState);
+    }
+
+
+    /**
+     * Updates the state atomically.
+     *
+     * @param update the function computing the new state from the current one.
+     */
+    public void update(UnaryOperator<SkyState> update) {
+        state.set(update.apply(state.get()));
+    }
+
+
+    /**
+     * Creates a property which is a view over a value of the state.
+     * The null values given to the view are ignored, the state keeping its value.
+     *
+     * @param getter the function extracting the value from a state.
+     * @param setter the function building a state with a new value.
+     * @param <T>    the type of the value.
+     * @return the property.
+     */
+    <T> ObjectProperty<T> view(Function<SkyState, T> getter, BiFunction<SkyState, T, SkyState> setter) {
+        ObjectProperty<T> view = new SimpleObjectProperty<>(getter.apply(getState()));
+        state.addListener((Observable o) -> publish(() -> view.set(getter.apply(getState()))));
+        // The values are not compared with equals, which some coordinates do not support.
+        view.addListener((Observable o) -> {
+            T value = view.get();
+            if (publishing == 0 && value != null) update(s -> setter.apply(s, value));
+        });
+        return view;
+    }
+
+
+    /**
+     * Creates a double property which is a view over a value of the state.
+     *
+     * @param getter the function extracting the value from a state.
+     * @param setter the function building a state with a new value.
+     * @return the property.
+     */
+    SimpleDoubleProperty doubleView(ToDoubleFunction<SkyState> getter, BiFunction<SkyState, Double, SkyState> setter) {
+        SimpleDoubleProperty view = new SimpleDoubleProperty(getter.applyAsDouble(getState()));
+        state.addListener((Observable o) -> publish(() -> view.set(getter.applyAsDouble(getState()))));
+        view.addListener((Observable o) -> {
+            double value = view.get();
+            if (publishing == 0) update(s -> setter.apply(s, value));
+        });
+        return view;
+    }
+
+
+    /**
+     * Publishes the state to a view.
+     *
+     * @param publication the update of the view.
+     */
+    private void publish(Runnable publication) {
+        ++publishing;
+        try {
+            publication.run();
+        } finally {
+            --publishing;
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+package ch.epfl.rigel.gui;
+
+import ch.epfl.rigel.Parallelism;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Software rasterizer of the stars: the anti-aliased disks of the stars are blended into a buffer of premultiplied
+ * ARGB pixels, which is then written to an image in a single call and drawn on the canvas, instead of recording
+ * a fill command per star in the canvas.
+ * <p>
+ * The coverage of the disks is precomputed in kernels, one per radius (in quarters of a pixel) and per position of
+ * the center inside a pixel (in quarters of a pixel on each axis), built when first needed.
+ * The buffer is split into horizontal tiles, rasterized in parallel when several processors are available.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class StarRasterizer {
+
+    // Number of horizontal tiles, a few per processor so that the tiles crowded with stars are balanced.
+    private final static int TILE_COUNT = Parallelism.ENABLED ? 4 * Runtime.getRuntime().availableProcessors() : 1;
+
+    // Steps per pixel of the radii and of the positions of the kernels, and largest radius, in pixels.
+    private final static int RADIUS_STEPS = 4, PHASES = 4, MAX_RADIUS = 32;
+    // Number of samples per pixel on each axis, used to compute the coverage of the kernels.
+    private final static int SUPERSAMPLING = 8;
+
+    // Kernels by radius and position, null until first needed.
+    private final Kernel[][] kernels = new Kernel[MAX_RADIUS * RADIUS_STEPS + 1][PHASES * PHASES];
+
+    private int width, height;
+    private int[] pixels = new int[0];
+    private WritableImage image;
+
+    // Kernel and position of the top left pixel of the kernel of each star, null if the star is outside the buffer.
+    private Kernel[] starKernels = new Kernel[0];
+    private int[] starOrigins = new int[0];
+
+
+    /**
+     * Rasterizes the given stars into the buffer.
+     *
+     * @param width  the width of the buffer, in pixels.
+     * @param height the height of the buffer, in pixels.
+     * @param coords the coordinates of the centers of the stars, x then y for each star, in pixels.
+     * @param radii  the radii of the stars, in pixels.
+     * @param colors the colors of the stars, in opaque ARGB.
+     * @param count  the number of stars.
+     * @return the buffer, in premultiplied ARGB, by rows, valid until the next rasterization.
+     */
+    public int[] rasterize(int width, int height, double[] coords, double[] radii, int[] colors, int count) {
+        this.width = width;
+        this.height = height;
+        if (pixels.length != width * height) pixels = new int[width * height];
+        if (starKernels.length < count) {
+            starKernels = new Kernel[count];
+            starOrigins = new int[2 * count];
+        }
+
+        // The kernels are chosen, and built if needed, before the tiles are rasterized in parallel.
+        for (int i = 0; i < count; ++i) {
+            double x = coords[2 * i], y = coords[2 * i + 1];
+            double radius = Math.min(radii[i], MAX_RADIUS);
+            if (!(x + radius >= 0 && x - radius < width && y + radius >= 0 && y - radius < height)) {
+                starKernels[i] = null;
+                continue;
+            }
+            int pixelX = (int) Math.floor(x), pixelY = (int) Math.floor(y);
+            int phaseX = Math.min((int) ((x - pixelX) * PHASES), PHASES - 1);
+            int phaseY = Math.min((int) ((y - pixelY) * PHASES), PHASES - 1);
+            Kernel kernel = kernel(Math.max((int) Math.round(radius * RADIUS_STEPS), 1), phaseX, phaseY);
+
+            starKernels[i] = kernel;
+            starOrigins[2 * i] = pixelX - kernel.center;
+            starOrigins[2 * i + 1] = pixelY - kernel.center;
+        }
+
+        int tileHeight = (height + TILE_COUNT - 1) / TILE_COUNT;
+        List<CompletableFuture<Void>> tiles = new ArrayList<>(TILE_COUNT);
+        for (int top = 0; top < height; top += tileHeight) {
+            int tileTop = top, tileBottom = Math.min(top + tileHeight, height);
+            tiles.add(Parallelism.supply(() -> rasterizeTile(tileTop, tileBottom, colors, count)));
+        }
+        for (CompletableFuture<Void> tile : tiles) {
+            Parallelism.join(tile);
+        }
+        return pixels;
+    }
+
+
+    /**
+     * Rasterizes the given stars, and draws them on the canvas at its origin, over what is already drawn.
+     * Must be called on the JavaFX application thread.
+     *
+     * @param ctx    the graphics context of the canvas.
+     * @param width  the width of the canvas, in pixels.
+     * @param height the height of the canvas, in pixels.
+     * @param coords the coordinates of the centers of the stars in the canvas, x then y for each star.
+     * @param radii  the radii of the stars, in pixels.
+     * @param colors the colors of the stars, in opaque ARGB.
+     * @param count  the number of stars.
+     */
+    public void paint(GraphicsContext ctx, int width, int height, double[] coords, double[] radii, int[] colors, int count) {
+        if (width <= 0 || height <= 0) return;
+        rasterize(width, height, coords, radii, colors, count);
+
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new WritableImage(width, height);
+        }
+        image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), pixels, 0, width);
+        ctx.drawImage(image, 0, 0);
+    }
+
+
+    /**
+     * Converts a color to an opaque ARGB value.
+     *
+     * @param color the color.
+     * @return the ARGB value.
+     */
+    public static int argb(Color color) {
+        return 0xFF00_0000 | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8 | (int) Math.round(color.getBlue() * 255);
+    }
+
+
+    /**
+     * Clears the rows of a tile, then blends the parts of the stars lying in it, in their order.
+     *
+     * @param top    the first row of the tile.
+     * @param bottom the row after the last one of the tile.
+     * @param colors the colors of the stars.
+     * @param count  the number of stars.
+     * @return null, so that the tile can be supplied as a task.
+     */
+    private Void rasterizeTile(int top, int bottom, int[] colors, int count) {
+        Arrays.fill(pixels, top * width, bottom * width, 0);
+
+        for (int i = 0; i < count; ++i) {
+            Kernel kernel = starKernels[i];
+            if (kernel == null) continue;
+            int originX = starOrigins[2 * i], originY = starOrigins[2 * i + 1];
+            int firstRow = Math.max(originY, top), lastRow = Math.min(originY + kernel.size, bottom);
+            if (firstRow >= lastRow) continue;
+            int firstColumn = Math.max(originX, 0), lastColumn = Math.min(originX + kernel.size, width);
+
+            int color = colors[i];
+            int red = (color >>> 16) & 0xFF, green = (color >>> 8) & 0xFF, blue = color & 0xFF;
+
+            for (int row = firstRow; row < lastRow; ++row) {
+                int kernelRow = (row - originY) * kernel.size - originX;
+                int pixelRow = row * width;
+                for (int column = firstColumn; column < lastColumn; ++column) {
+                    int coverage = kernel.coverage[kernelRow + column];
+                    if (coverage == 0) continue;
+                    pixels[pixelRow + column] = blend(pixels[pixelRow + column], red, green, blue, coverage);
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Blends a color over a premultiplied ARGB pixel.
+     *
+     * @param pixel    the pixel.
+     * @param red      the red component of the color.
+     * @param green    the green component of the color.
+     * @param blue     the blue component of the color.
+     * @param coverage the coverage of the pixel by the color, from 0 to 255.
+     * @return the blended pixel.
+     */
+    private static int blend(int pixel, int red, int green, int blue, int coverage) {
+        int remaining = 255 - coverage;
+        int a = coverage + ((pixel >>> 24) * remaining + 127) / 255;
+        int r = (red * coverage + ((pixel >>> 16) & 0xFF) * remaining + 127) / 255;
+        int g = (green * coverage + ((pixel >>> 8) & 0xFF) * remaining + 127) / 255;
+        int b = (blue * coverage + (pixel & 0xFF) * remaining + 127) / 255;
+        return a << 24 | r << 16 | g << 8 | b;
+    }
+
+
+    /**
+     * Gives the kernel of the given radius and position, building it if needed.
+     *
+     * @param radiusSteps the radius, in steps.
+     * @param phaseX      the position of the center inside its pixel along the x axis, in steps.
+     * @param phaseY      the position of the center inside its pixel along the y axis, in steps.
+     * @return the kernel.
+     */
+    private Kernel kernel(int radiusSteps, int phaseX, int phaseY) {
+        Kernel kernel = kernels[radiusSteps][phaseY * PHASES + phaseX];
+        if (kernel == null) {
+            kernel = new Kernel((double) radiusSteps / RADIUS_STEPS, (phaseX + 0.5) / PHASES, (phaseY + 0.5) / PHASES);
+            kernels[radiusSteps][phaseY * PHASES + phaseX] = kernel;
+        }
+        return kernel;
+    }
+
+
+    /**
+     * Square kernel of the coverage of a disk, the center of the disk lying in its center pixel.
+     */
+    private final static class Kernel {
+
+        private final int center, size;
+        // Coverage of each pixel, from 0 to 255, by rows.
+        private final int[] coverage;
+
+
+        /**
+         * Constructor, computes the coverage by supersampling each pixel.
+         *
+         * @param radius  the radius of the disk, in pixels.
+         * @param offsetX the position of the center of the disk inside the center pixel, along the x axis.
+         * @param offsetY the position of the center of the disk inside the center pixel, along the y axis.
+         */
+        private Kernel(double radius, double offsetX, double offsetY) {
+            center = (int) Math.ceil(radius) + 1;
+            size = 2 * center + 1;
+            coverage = new int[size * size];
+
+            double centerX = center + offsetX, centerY = center + offsetY;
+            double squaredRadius = radius * radius;
+            int samples = SUPERSAMPLING * SUPERSAMPLING;
+            for (int row = 0; row < size; ++row) {
+                for (int column = 0; column < size; ++column) {
+                    int inside = 0;
+                    for (int sy = 0; sy < SUPERSAMPLING; ++sy) {
+                        double dy = row + (sy + 0.5) / SUPERSAMPLING - centerY;
+                        for (int sx = 0; sx < SUPERSAMPLING; ++sx) {
+                            double dx = column + (sx + 0.5) / SUPERSAMPLING - centerX;
+                            if (dx * dx + dy * dy <= squaredRadius) ++inside;
+                        }
+                    }
+                    coverage[row * size + column] = (255 * inside + samples / 2) / samples;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package ch.epfl.rigel.gui;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the independent startup steps of the application concurrently, on a small pool of daemon threads.
+ * The JavaFX application thread only waits for the results it needs. The duration of every step,
+ * and the time the application thread spent waiting for it, are logged so that the startup regressions are visible.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class StartupOrchestrator {
+
+    private final static System.Logger LOGGER = System.getLogger(StartupOrchestrator.class.getName());
+
+    // Number of threads running the steps.
+    private final static int THREAD_COUNT = 3;
+
+    private final ExecutorService executor;
+    private final long startTime;
+
+
+    /**
+     * Constructor, creates the threads running the steps. The startup time is measured from this call.
+     */
+    public StartupOrchestrator() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+            Thread thread = new Thread(runnable, "Rigel startup " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        startTime = System.nanoTime();
+    }
+
+
+    /**
+     * Runs a step on the startup threads, its result being retrieved later by the await method.
+     *
+     * @param name the name of the step, used in the logs.
+     * @param step the step.
+     * @param <T>  the type of the result of the step.
+     * @return the future result of the step.
+     */
+    public <T> CompletableFuture<T> submit(String name, Callable<T> step) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                T result = step.call();
+                LOGGER.log(System.Logger.Level.INFO, "Startup step \"{0}\" took {1} ms", name, millisSince(start));
+                return result;
+            } catch (Exception e) {
+                LOGGER.log(System.Logger.Level.ERROR, "Startup step \"" + name + "\" failed", e);
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+
+    /**
+     * Runs a step on the startup threads whose result is never awaited.
+     * If the step fails, its exception is rethrown on the JavaFX application thread.
+     *
+     * @param name the name of the step, used in the logs.
+     * @param step the step.
+     */
+    public void background(String name, Callable<?> step) {
+        submit(name, step).whenComplete((result, e) -> {
+            if (e != null) {
+                Platform.runLater(() -> {
+                    throw unwrap(e);
+                });
+            }
+        });
+    }
+
+
+    /**
+     * Waits for the result of a step. The waiting time is logged.
+     *
+     * @param future the future result of the step.
+     * @param <T>    the type of the result.
+     * @return the result of the step.
+     * @throws IOException if the step failed because of an input error.
+     */
+    public <T> T await(CompletableFuture<T> future) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            RuntimeException cause = unwrap(e);
+            if (cause instanceof UncheckedIOException) throw ((UncheckedIOException) cause).getCause();
+            throw cause;
+        } finally {
+            LOGGER.log(System.Logger.Level.DEBUG, "Waited {0} ms for a startup step", millisSince(start));
+        }
+    }
+
+
+    /**
+     * Ends the startup, once the window is shown: no more steps can be submitted, the ones already submitted keep
+     * running. The time since the construction of the orchestrator is logged, then again at the first pulse,
+     * which renders the first frame of the window. Must be called on the JavaFX application thread.
+     */
+    public void finish() {
+        executor.shutdown();
+        LOGGER.log(System.Logger.Level.INFO, "Startup took {0} ms until the window was shown", millisSince(startTime));
+
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                LOGGER.log(System.Logger.Level.INFO, "Startup took {0} ms until the first frame pulse", millisSince(startTime));
+            }
+        }.start();
+    }
+
+
+    /**
+     * Unwraps the exception of a failed step.
+     *
+     * @param e the exception thrown by the future.
+     * @return the exception thrown by the step, an input error being wrapped in an unchecked exception.
+     */
+    private static RuntimeException unwrap(Throwable e) {
+        Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+        if (cause instanceof IOException) return new UncheckedIOException((IOException) cause);
+        if (cause instanceof RuntimeException) return (RuntimeException) cause;
+        return new CompletionException(cause);
+    }
+
+
+    /**
+     * Computes the number of milliseconds elapsed since the given time.
+     *
+     * @param start the time, in nanoseconds.
+     * @return the number of milliseconds.
+     */
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+}
@@ -26,14 +26,19 @@ public final class TimeAnimator extends AnimationTimer {
     // True if the animation is being executed.
     private final SimpleBooleanProperty running;
 
+    // Controller of the quality of the drawing, given the time spent computing and painting the sky at each pulse.
+    private final FrameBudget frameBudget;
+
 
     /**
      * Constructor, takes the initial zoned date time.
      *
-     * @param dtb the given zoned date time.
+     * @param dtb         the given zoned date time.
+     * @param frameBudget the frame budget controller, told about the end of each pulse.
      */
-    public TimeAnimator(DateTimeBean dtb) {
+    public TimeAnimator(DateTimeBean dtb, FrameBudget frameBudget) {
         this.dtb = dtb;
+        this.frameBudget = frameBudget;
         accelerator = new SimpleObjectProperty<>(null);
         running = new SimpleBooleanProperty(false);
     }
@@ -70,6 +75,7 @@ public final class TimeAnimator extends AnimationTimer {
 
     /**
      * Makes the animation progress using a timer.
+     * The sky is computed and painted as the date time changes, after which the frame budget adapts the quality.
      *
      * @param now the elapsed time since an unspecified starting time.
      */
@@ -80,6 +86,7 @@ public final class TimeAnimator extends AnimationTimer {
             isStarting = false;
         } else {
             dtb.setZonedDateTime(accelerator.get().adjust(startTime, now - initalTime));
+            frameBudget.pulseCompleted();
         }
     }
 
@@ -89,6 +96,7 @@ public final class TimeAnimator extends AnimationTimer {
      */
     public void start() {
         isStarting = true;
+        frameBudget.reset();
         startTime = dtb.getZonedDateTime();
         super.start();
         running.set(true);
@@ -96,11 +104,12 @@ public final class TimeAnimator extends AnimationTimer {
 
 
     /**
-     * Stop method, sets the running property at false.
+     * Stop method, sets the running property at false and restores the full quality of the drawing.
      */
     @Override
     public void stop() {
         super.stop();
+        frameBudget.reset();
         running.set(false);
     }
 }
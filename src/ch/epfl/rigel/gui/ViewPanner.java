@@ -0,0 +1,182 @@
+package ch.epfl.rigel.gui;
+
+import ch.epfl.rigel.coordinates.HorizontalCoordinates;
+import ch.epfl.rigel.math.ClosedInterval;
+import ch.epfl.rigel.math.RightOpenInterval;
+import javafx.animation.AnimationTimer;
+
+import java.util.function.Consumer;
+
+/**
+ * Moves the center of the view while the sky is dragged with the mouse, and keeps it moving after a flick,
+ * slowing it down until it stops.
+ * <p>
+ * The center is changed at most once per pulse, however many mouse events are received in between, and is always
+ * the one under the cursor. At each pulse, the center of the next pulse is also predicted from the speed of the drag,
+ * and its sky is computed in the background during the current frame, so that the sky of the next center is often
+ * already in the frame cache, exactly or less than a pixel away. The prediction never moves the view itself.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+final class ViewPanner extends AnimationTimer {
+
+    private final static double NANOS_PER_SECOND = 1e9;
+    // Expected duration of a pulse, in seconds, and weight of the last measure in the smoothed durations and speeds.
+    private final static double DEFAULT_PULSE = 1.0 / 60, SMOOTHING = 0.5;
+    // Time after which the cursor is considered still, in nanoseconds.
+    private final static long MOTION_TIMEOUT = 50_000_000L;
+    // Speeds above which a release is a flick, and under which the view stops, in degrees per second.
+    private final static double FLICK_SPEED = 30, STOP_SPEED = 1;
+    // Time constant of the slowdown of the view after a flick, in seconds.
+    private final static double INERTIA_TIME = 0.35;
+
+    private final RightOpenInterval azIntervalDeg;
+    private final ClosedInterval altIntervalDeg;
+    private final Consumer<HorizontalCoordinates> centerSetter, prefetcher;
+
+    private boolean dragging, inertia;
+    // Center under the cursor, and center predicted for the next pulse, or null if none.
+    private HorizontalCoordinates target, predicted;
+    // Speed of the center, in degrees per second, and time of the last move of the cursor, in nanoseconds.
+    private double azSpeed, altSpeed;
+    private long lastMove;
+    // Time of the last pulse, in nanoseconds, 0 before the first one, and smoothed duration of the pulses, in seconds.
+    private long lastPulse;
+    private double pulseDuration = DEFAULT_PULSE;
+
+
+    /**
+     * Constructor.
+     *
+     * @param azIntervalDeg  the interval of the azimuth of the center, in degrees.
+     * @param altIntervalDeg the interval of the altitude of the center, in degrees.
+     * @param centerSetter   the setter of the center of the view.
+     * @param prefetcher     the function starting the computation of the sky of a center in the background.
+     */
+    ViewPanner(RightOpenInterval azIntervalDeg, ClosedInterval altIntervalDeg,
+               Consumer<HorizontalCoordinates> centerSetter, Consumer<HorizontalCoordinates> prefetcher) {
+        this.azIntervalDeg = azIntervalDeg;
+        this.altIntervalDeg = altIntervalDeg;
+        this.centerSetter = centerSetter;
+        this.prefetcher = prefetcher;
+    }
+
+
+    /**
+     * Begins a drag, stopping the view if it is still moving after a flick.
+     */
+    void dragStarted() {
+        dragging = true;
+        inertia = false;
+        target = null;
+        predicted = null;
+        azSpeed = 0;
+        altSpeed = 0;
+        lastPulse = 0;
+        start();
+    }
+
+
+    /**
+     * Moves the center under the cursor, the view following it at the next pulse.
+     *
+     * @param azDeg  the azimuth of the center, in degrees, reduced to its interval.
+     * @param altDeg the altitude of the center, in degrees, clipped to its interval.
+     * @param nanos  the time of the move, in nanoseconds.
+     */
+    void dragTo(double azDeg, double altDeg, long nanos) {
+        if (!dragging) return;
+        HorizontalCoordinates center = centerOf(azDeg, altDeg);
+
+        if (target != null && nanos > lastMove) {
+            double seconds = (nanos - lastMove) / NANOS_PER_SECOND;
+            azSpeed += SMOOTHING * (azDifference(center.azDeg(), target.azDeg()) / seconds - azSpeed);
+            altSpeed += SMOOTHING * ((center.altDeg() - target.altDeg()) / seconds - altSpeed);
+        }
+        target = center;
+        lastMove = nanos;
+    }
+
+
+    /**
+     * Ends a drag: the view keeps moving if the cursor was moving fast enough, or stops on the cursor otherwise.
+     *
+     * @param nanos the time of the release, in nanoseconds.
+     */
+    void dragEnded(long nanos) {
+        if (!dragging) return;
+        dragging = false;
+
+        if (target != null && nanos - lastMove < MOTION_TIMEOUT && Math.hypot(azSpeed, altSpeed) >= FLICK_SPEED) {
+            inertia = true;
+            predicted = null;
+        } else {
+            stop();
+            if (target != null) centerSetter.accept(target);
+        }
+    }
+
+
+    /**
+     * Moves the view at each pulse, to the center under the cursor, or along its slowdown after a flick,
+     * and prefetches the sky of the center predicted for the next pulse.
+     *
+     * @param now the time of the pulse, in nanoseconds.
+     */
+    @Override
+    public void handle(long now) {
+        if (lastPulse != 0) pulseDuration += SMOOTHING * ((now - lastPulse) / NANOS_PER_SECOND - pulseDuration);
+        lastPulse = now;
+
+        if (dragging) {
+            if (target == null) return;
+            // The view always follows the cursor, the prediction only being prefetched while the cursor moves.
+            boolean moving = now - lastMove < MOTION_TIMEOUT;
+            centerSetter.accept(target);
+            predicted = moving ? centerOf(target.azDeg() + azSpeed * pulseDuration, target.altDeg() + altSpeed * pulseDuration) : null;
+        } else if (inertia) {
+            HorizontalCoordinates center = (predicted != null) ? predicted : target;
+            centerSetter.accept(center);
+
+            double decay = Math.exp(-pulseDuration / INERTIA_TIME);
+            azSpeed *= decay;
+            altSpeed *= decay;
+            if (Math.hypot(azSpeed, altSpeed) < STOP_SPEED) {
+                inertia = false;
+                predicted = null;
+                stop();
+                return;
+            }
+            target = center;
+            predicted = centerOf(center.azDeg() + azSpeed * pulseDuration, center.altDeg() + altSpeed * pulseDuration);
+        }
+
+        if (predicted != null) prefetcher.accept(predicted);
+    }
+
+
+    /**
+     * Builds a center, reducing its azimuth and clipping its altitude to their intervals.
+     *
+     * @param azDeg  the azimuth, in degrees.
+     * @param altDeg the altitude, in degrees.
+     * @return the center.
+     */
+    private HorizontalCoordinates centerOf(double azDeg, double altDeg) {
+        return HorizontalCoordinates.ofDeg(azIntervalDeg.reduce(azDeg), altIntervalDeg.clip(altDeg));
+    }
+
+
+    /**
+     * Computes the difference of two azimuths, the shortest way around the horizon.
+     *
+     * @param azDeg1 the first azimuth, in degrees.
+     * @param azDeg2 the second azimuth, in degrees.
+     * @return the difference, in degrees, between -180 and 180.
+     */
+    static double azDifference(double azDeg1, double azDeg2) {
+        return RightOpenInterval.symmetric(360).reduce(azDeg1 - azDeg2);
+    }
+
+}
@@ -3,12 +3,11 @@ package ch.epfl.rigel.gui;
 import ch.epfl.rigel.coordinates.HorizontalCoordinates;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleDoubleProperty;
-import javafx.beans.property.SimpleObjectProperty;
 
 
 
 /**
- * JavaFX bean containing properties of the viewing parameters.
+ * JavaFX bean containing properties of the viewing parameters, as a view over the viewing parameters of the sky state.
  *
  * @author Victor Nazianzeno -- Le Jamtel(312075)
  * @author Javier García Arredondo(311166)
@@ -20,11 +19,13 @@ public final class ViewingParametersBean {
 
 
     /**
-     * Constructor, initializes the properties with trivial and null values.
+     * Constructor, the properties following the viewing parameters of the given sky state.
+     *
+     * @param skyState the sky state bean.
      */
-    public ViewingParametersBean() {
-        fieldOfViewDeg = new SimpleDoubleProperty(0);
-        center = new SimpleObjectProperty<>();
+    public ViewingParametersBean(SkyStateBean skyState) {
+        fieldOfViewDeg = skyState.doubleView(SkyState::fieldOfViewDeg, SkyState::withFieldOfViewDeg);
+        center = skyState.view(SkyState::center, SkyState::withCenter);
     }
 
 
@@ -0,0 +1,55 @@
+package ch.epfl.rigel.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event covering the loading of a catalogue file, i.e the stars database or the asterisms.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@Name("ch.epfl.rigel.CatalogueLoad")
+@Label("Catalogue Load")
+@Category({"Rigel", "Catalogue"})
+@Description("Loading of a catalogue file into a star catalogue builder")
+public final class CatalogueLoadEvent extends jdk.jfr.Event {
+
+    @Label("Loader")
+    private final String loader;
+
+    @Label("Rows")
+    @Description("Number of stars or asterisms added to the builder")
+    private long rows;
+
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+
+
+    /**
+     * Constructor of the event.
+     *
+     * @param loader the name of the loader.
+     */
+    public CatalogueLoadEvent(String loader) {
+        this.loader = loader;
+    }
+
+
+    /**
+     * Ends the event and commits it, if enabled.
+     *
+     * @param rows  the number of stars or asterisms loaded.
+     * @param bytes the number of bytes read.
+     */
+    public void complete(long rows, long bytes) {
+        this.rows = rows;
+        this.bytes = bytes;
+        commit();
+    }
+
+}
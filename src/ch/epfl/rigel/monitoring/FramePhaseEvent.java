@@ -0,0 +1,63 @@
+package ch.epfl.rigel.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event covering a phase of a frame, see {@link Phase}.
+ * Created by {@link FrameMetrics#start(Phase)}, which also keeps what is needed for the frame metrics.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@Name("ch.epfl.rigel.FramePhase")
+@Label("Frame Phase")
+@Category({"Rigel", "Rendering"})
+@Description("Computation of the observed sky or painting step of a frame")
+@StackTrace(false)
+public final class FramePhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    private final String phaseName;
+
+    // Not recorded by the flight recorder, only used for the frame metrics.
+    private final transient Phase phase;
+    private final transient long startNanos;
+
+
+    /**
+     * Constructor of the event.
+     *
+     * @param phase      the phase.
+     * @param startNanos the beginning of the phase, in nanoseconds, or 0 if the frame metrics are disabled.
+     */
+    FramePhaseEvent(Phase phase, long startNanos) {
+        this.phaseName = phase.getName();
+        this.phase = phase;
+        this.startNanos = startNanos;
+    }
+
+
+    /**
+     * Getter for the phase.
+     *
+     * @return the phase.
+     */
+    Phase phase() {
+        return phase;
+    }
+
+
+    /**
+     * Getter for the beginning of the phase.
+     *
+     * @return the beginning of the phase, in nanoseconds, or 0 if the frame metrics were disabled.
+     */
+    long startNanos() {
+        return startNanos;
+    }
+
+}
@@ -0,0 +1,138 @@
+package ch.epfl.rigel.monitoring;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations, with a log-linear resolution of about 6%.
+ * Recording is a single atomic increment, hence it can be done from any thread.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public final class LatencyHistogram {
+
+    // Durations below this value, in microseconds, have their own bucket.
+    private final static int LINEAR_LIMIT = 32;
+    // Number of buckets per power of two above the linear limit.
+    private final static int SUB_BUCKETS = 16, SUB_BUCKETS_BITS = 4;
+    // The smallest exponent of the log-linear part, i.e log2(LINEAR_LIMIT).
+    private final static int FIRST_EXPONENT = 5;
+    // Enough buckets for durations of more than a minute.
+    private final static int BUCKET_COUNT = LINEAR_LIMIT + 22 * SUB_BUCKETS;
+
+    private final static double MICROS_PER_MILLI = 1e3;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration, in nanoseconds.
+     */
+    public void record(long nanos) {
+        buckets.incrementAndGet(bucketOf(Math.max(0, nanos) / 1000));
+    }
+
+
+    /**
+     * Empties the histogram, returning the durations recorded so far.
+     * The durations recorded concurrently are either included in the snapshot or kept for the next one, never lost.
+     *
+     * @return the snapshot of the histogram.
+     */
+    public Snapshot drain() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            counts[i] = buckets.getAndSet(i, 0);
+        }
+        return new Snapshot(counts);
+    }
+
+
+    /**
+     * Computes the bucket of a duration.
+     *
+     * @param micros the duration, in microseconds.
+     * @return the bucket index.
+     */
+    private static int bucketOf(long micros) {
+        if (micros < LINEAR_LIMIT) return (int) micros;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKETS_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKET_COUNT - 1, LINEAR_LIMIT + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + subBucket);
+    }
+
+
+    /**
+     * Computes the middle of the durations range of a bucket.
+     *
+     * @param bucket the bucket index.
+     * @return the duration, in microseconds.
+     */
+    private static double middleOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) return bucket + 0.5;
+
+        int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + FIRST_EXPONENT;
+        int subBucket = (bucket - LINEAR_LIMIT) % SUB_BUCKETS;
+        double width = 1L << (exponent - SUB_BUCKETS_BITS);
+        return (SUB_BUCKETS + subBucket + 0.5) * width;
+    }
+
+
+    /**
+     * Immutable content of a histogram at a given moment.
+     */
+    public final static class Snapshot {
+
+        private final long[] counts;
+        private final long total;
+
+
+        /**
+         * Constructor of the snapshot.
+         *
+         * @param counts the number of durations in each bucket.
+         */
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long sum = 0;
+            for (long count : counts) {
+                sum += count;
+            }
+            total = sum;
+        }
+
+
+        /**
+         * Getter for the number of recorded durations.
+         *
+         * @return the number of durations.
+         */
+        public long count() {
+            return total;
+        }
+
+
+        /**
+         * Computes a percentile of the recorded durations.
+         *
+         * @param percentile the percentile, in [0, 100].
+         * @return the duration, in milliseconds, or 0 if no duration was recorded.
+         */
+        public double percentileMillis(double percentile) {
+            if (total == 0) return 0;
+
+            // Rank of the wanted duration, at least the first one.
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank) return middleOf(i) / MICROS_PER_MILLI;
+            }
+            return middleOf(counts.length - 1) / MICROS_PER_MILLI;
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package ch.epfl.rigel.monitoring;
+
+/**
+ * The phases of a frame, i.e the computation of the observed sky and the different painting steps.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+public enum Phase {
+
+    OBSERVED_SKY("Sky"),
+    GRID("Grid"),
+    ASTERISMS("Asterisms"),
+    STARS("Stars"),
+    PLANETS("Planets"),
+    MOON_AND_SUN("Moon & Sun"),
+    HORIZON("Horizon"),
+    PAINT("Paint (total)");
+
+    private final String display;
+
+
+    /**
+     * Constructor for the enum.
+     *
+     * @param display the phase name, as shown on the overlay.
+     */
+    Phase(String display) {
+        this.display = display;
+    }
+
+
+    /**
+     * Getter for the phase name.
+     *
+     * @return the phase name.
+     */
+    public String getName() {
+        return display;
+    }
+
+
+    /**
+     * String including the name of the phase.
+     *
+     * @return the string.
+     * @see Object#toString()
+     */
+    @Override
+    public String toString() {
+        return display;
+    }
+
+}
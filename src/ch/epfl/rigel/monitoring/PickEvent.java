@@ -0,0 +1,41 @@
+package ch.epfl.rigel.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event covering a picking query, i.e the search of the celestial object closest to a point.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@Name("ch.epfl.rigel.Pick")
+@Label("Pick")
+@Category({"Rigel", "Interaction"})
+@Description("Search of the celestial object closest to a point of the sky")
+@StackTrace(false)
+public final class PickEvent extends jdk.jfr.Event {
+
+    @Label("Found")
+    private boolean found;
+
+    @Label("Object")
+    @Description("Name of the closest object, if any")
+    private String object;
+
+
+    /**
+     * Ends the event and commits it, if enabled.
+     *
+     * @param object the name of the closest object, or null if there is none.
+     */
+    public void complete(String object) {
+        this.found = object != null;
+        this.object = object;
+        commit();
+    }
+
+}
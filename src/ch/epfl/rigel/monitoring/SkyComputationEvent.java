@@ -0,0 +1,35 @@
+package ch.epfl.rigel.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event covering the construction of an observed sky.
+ *
+ * @author Victor Nazianzeno -- Le Jamtel(312075)
+ * @author Javier García Arredondo(311166)
+ */
+@Name("ch.epfl.rigel.SkyComputation")
+@Label("Sky Computation")
+@Category({"Rigel", "Astronomy"})
+@Description("Construction of an observed sky, i.e the models evaluation and the projection of all the objects")
+public final class SkyComputationEvent extends jdk.jfr.Event {
+
+    @Label("Object Count")
+    @Description("Number of projected celestial objects")
+    private int objectCount;
+
+
+    /**
+     * Ends the event and commits it, if enabled.
+     *
+     * @param objectCount the number of projected celestial objects.
+     */
+    public void complete(int objectCount) {
+        this.objectCount = objectCount;
+        commit();
+    }
+
+}
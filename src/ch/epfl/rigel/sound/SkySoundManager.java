@@ -4,40 +4,78 @@ import ch.epfl.rigel.Preconditions;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.scene.media.AudioClip;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
 import javafx.util.Duration;
 
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
 /**
  * Manager for the different sounds and musics in the program.
+ * The media are only loaded when they are first played, on a background thread, the playback requests
+ * being queued until they are ready. A muted sound is never loaded. The audio can be disabled as a whole,
+ * in which case no media is ever loaded; it is the case when the rigel.noAudio system property is true.
  *
  * @author Victor Nazianzeno -- Le Jamtel(312075)
  * @author Javier García Arredondo(311166)
  */
 public final class SkySoundManager {
 
-    // Notification sound clip.
-    private final static AudioClip NOTIF_PLAYER = new AudioClip(initMediaPath("/notif.mp3"));
+    private final static System.Logger LOGGER = System.getLogger(SkySoundManager.class.getName());
+
+    // True if the audio is enabled by default.
+    private final static boolean AUDIO_ENABLED = !Boolean.getBoolean("rigel.noAudio");
+
+    private final boolean audioEnabled;
+
+    // Thread loading the media, shared by all the sounds.
+    private final Executor loader;
 
-    // Home screen music media player.
-    private final static MediaPlayer WELCOME_PLAYER = new MediaPlayer(new Media(initMediaPath("/welcome_screen.mp3")));
+    // Notification sound clip.
+    private final Sound<AudioClip> notifSound;
 
-    // Ambient music media player.
-    private final static MediaPlayer AMBIENT_PLAYER = new MediaPlayer(new Media(initMediaPath("/ambient.mp3")));
+    // Home screen music.
+    private final Sound<MediaPlayer> welcomeMusic;
 
-    // Volume properties.
-    private final static DoubleProperty AMBIENT_VOLUME_PROPERTY = AMBIENT_PLAYER.volumeProperty();
-    private final static DoubleProperty NOTIF_VOLUME_PROPERTY = NOTIF_PLAYER.volumeProperty();
-    private final DoubleProperty HOME_SCREEN_VOLUME_PROPERTY = WELCOME_PLAYER.volumeProperty();
+    // Ambient music.
+    private final Sound<MediaPlayer> ambientMusic;
 
 
     /**
      * Constructor of the class, initializes the volumes.
+     * The audio is enabled unless the rigel.noAudio system property is true.
      */
     public SkySoundManager() {
-        init();
+        this(AUDIO_ENABLED);
+    }
+
+
+    /**
+     * Constructor of the class, initializes the volumes.
+     *
+     * @param audioEnabled false if no media must ever be loaded, e.g on a headless machine.
+     */
+    public SkySoundManager(boolean audioEnabled) {
+        this.audioEnabled = audioEnabled;
+        loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Rigel media loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        notifSound = new Sound<>("/notif.mp3", AudioClip::new, AudioClip::volumeProperty);
+        welcomeMusic = new Sound<>("/welcome_screen.mp3", SkySoundManager::loopingPlayer, MediaPlayer::volumeProperty);
+        ambientMusic = new Sound<>("/ambient.mp3", SkySoundManager::loopingPlayer, MediaPlayer::volumeProperty);
+
         setNotifVolume(0.4);
         setHomeScreenVolume(0.3);
         setAmbientVolume(0.3);
@@ -50,7 +88,7 @@ public final class SkySoundManager {
      * @return the ambient volume property.
      */
     public DoubleProperty getAmbientVolumeProperty() {
-        return AMBIENT_VOLUME_PROPERTY;
+        return ambientMusic.volume;
     }
 
 
@@ -61,7 +99,7 @@ public final class SkySoundManager {
      */
     public void setAmbientVolume(double value) {
         Preconditions.checkArgument(value < 1 && value >= 0);
-        AMBIENT_VOLUME_PROPERTY.setValue(value);
+        ambientMusic.volume.setValue(value);
     }
 
 
@@ -71,7 +109,7 @@ public final class SkySoundManager {
      * @return the notification sound volume property.
      */
     public DoubleProperty getNotifVolumeProperty() {
-        return NOTIF_VOLUME_PROPERTY;
+        return notifSound.volume;
     }
 
 
@@ -82,7 +120,7 @@ public final class SkySoundManager {
      */
     public void setNotifVolume(double value) {
         Preconditions.checkArgument(value < 1 && value >= 0);
-        NOTIF_VOLUME_PROPERTY.setValue(value);
+        notifSound.volume.setValue(value);
     }
 
 
@@ -92,7 +130,7 @@ public final class SkySoundManager {
      * @return the home screen volume property.
      */
     public DoubleProperty getHomeScreemVolumeProperty() {
-        return HOME_SCREEN_VOLUME_PROPERTY;
+        return welcomeMusic.volume;
     }
 
 
@@ -103,27 +141,18 @@ public final class SkySoundManager {
      */
     public void setHomeScreenVolume(double value) {
         Preconditions.checkArgument(value < 1 && value >= 0);
-        HOME_SCREEN_VOLUME_PROPERTY.setValue(value);
+        welcomeMusic.volume.setValue(value);
     }
 
 
     /**
      * Launches a notification sound.
+     * Contrary to the musics, a notification requested while muted is lost.
      *
      * @param windowHasLaunched check if the information windows has already been launched.
      */
     public void launchNotifSound(boolean windowHasLaunched) {
-        if (!windowHasLaunched) NOTIF_PLAYER.play();
-
-    }
-
-
-    /**
-     * Initializes the notification sound at the beginning of the program, avoiding lags.
-     */
-    private void init() {
-        NOTIF_PLAYER.setVolume(0);
-        NOTIF_PLAYER.play();
+        if (!windowHasLaunched && notifSound.isAudible()) notifSound.whenLoaded(AudioClip::play);
     }
 
 
@@ -131,45 +160,153 @@ public final class SkySoundManager {
      * Launches the home screen music.
      */
     public void launchHomeScreenMusic() {
-        // Setting up an infinite loop for the sound.
-        WELCOME_PLAYER.setOnEndOfMedia(() -> WELCOME_PLAYER.seek(Duration.ZERO));
-        WELCOME_PLAYER.play();
+        welcomeMusic.play(MediaPlayer::play);
     }
 
 
     /**
      * Implementation of a fade out for the home screen music.
+     * As soon as the home screen music has stopped, the ambient music starts.
      */
     public void endHomeMusic() {
         Timeline musicFadeOut = new Timeline(
                 new KeyFrame(Duration.seconds(4),
-                        new KeyValue(WELCOME_PLAYER.volumeProperty(), 0)));
+                        new KeyValue(welcomeMusic.volume, 0)));
         musicFadeOut.play();
-        musicFadeOut.setOnFinished(event -> WELCOME_PLAYER.stop());
-
-        // As soon as the home screen music has stopped, the ambient music starts.
-        WELCOME_PLAYER.setOnStopped(this::launchAmbientMusic);
+        musicFadeOut.setOnFinished(event -> {
+            welcomeMusic.stop(MediaPlayer::stop);
+            ambientMusic.play(MediaPlayer::play);
+        });
     }
 
 
     /**
-     * Launches the ambient music.
+     * Creates a media player repeating the given media indefinitely.
+     *
+     * @param url the URL of the media.
+     * @return the media player.
      */
-    private void launchAmbientMusic() {
-        if (!(WELCOME_PLAYER.getStatus() == MediaPlayer.Status.PLAYING)) {
-            AMBIENT_PLAYER.setOnEndOfMedia(() -> AMBIENT_PLAYER.seek(Duration.ZERO));
-            AMBIENT_PLAYER.play();
-        }
+    private static MediaPlayer loopingPlayer(String url) {
+        MediaPlayer player = new MediaPlayer(new Media(url));
+        player.setCycleCount(MediaPlayer.INDEFINITE);
+        return player;
     }
 
 
     /**
-     * Loading a sound given the resource name.
+     * Sound loaded on demand, on the media loader thread.
+     * Its volume property exists before the sound is loaded, the player's own volume being bound to it once loaded.
+     * A sound requested while muted is only loaded, and played, once its volume becomes positive.
      *
-     * @param music the music name.
-     * @return the string of the URL associated to the music name.
+     * @param <P> the type of the player of the sound.
      */
-    private static String initMediaPath(String music) {
-        return SkySoundManager.class.getResource(music).toExternalForm();
+    private final class Sound<P> {
+
+        private final String resource;
+        private final Function<String, P> factory;
+        private final Function<P, DoubleProperty> playerVolume;
+        private final DoubleProperty volume;
+
+        // Future player, null until the sound is first needed.
+        private CompletableFuture<P> player;
+        // Action to run once the sound becomes audible, null if the sound has not been requested.
+        private Consumer<P> pendingPlay;
+
+
+        /**
+         * Constructor of the sound, nothing is loaded.
+         *
+         * @param resource     the name of the media resource.
+         * @param factory      the factory creating the player from the URL of the media.
+         * @param playerVolume the getter for the volume property of the player.
+         */
+        private Sound(String resource, Function<String, P> factory, Function<P, DoubleProperty> playerVolume) {
+            this.resource = resource;
+            this.factory = factory;
+            this.playerVolume = playerVolume;
+            volume = new SimpleDoubleProperty();
+
+            volume.addListener((p, o, n) -> {
+                if (pendingPlay != null && isAudible()) {
+                    Consumer<P> action = pendingPlay;
+                    pendingPlay = null;
+                    whenLoaded(action);
+                }
+            });
+        }
+
+
+        /**
+         * Checks if the sound can be heard, i.e the audio is enabled and the volume is positive.
+         *
+         * @return true if the sound is audible.
+         */
+        private boolean isAudible() {
+            return audioEnabled && volume.get() > 0;
+        }
+
+
+        /**
+         * Plays the sound with the given action, as soon as it is loaded and audible.
+         *
+         * @param action the action starting the playback.
+         */
+        private void play(Consumer<P> action) {
+            if (isAudible()) {
+                whenLoaded(action);
+            } else if (audioEnabled) {
+                pendingPlay = action;
+            }
+        }
+
+
+        /**
+         * Stops the sound with the given action if it has been loaded, and cancels its pending playback.
+         *
+         * @param action the action stopping the playback.
+         */
+        private void stop(Consumer<P> action) {
+            pendingPlay = null;
+            if (player != null) whenLoaded(action);
+        }
+
+
+        /**
+         * Runs the given action on the JavaFX application thread once the sound is loaded, loading it if needed.
+         *
+         * @param action the action.
+         */
+        private void whenLoaded(Consumer<P> action) {
+            if (player == null) {
+                // The volume is bound before any action is run on the player.
+                player = CompletableFuture.supplyAsync(this::load, loader)
+                        .thenApplyAsync(p -> {
+                            playerVolume.apply(p).bind(volume);
+                            return p;
+                        }, Platform::runLater);
+            }
+            player.thenAcceptAsync(action, Platform::runLater);
+        }
+
+
+        /**
+         * Loads the media of the sound, on the media loader thread.
+         *
+         * @return the player.
+         */
+        private P load() {
+            long start = System.nanoTime();
+            try {
+                URL url = SkySoundManager.class.getResource(resource);
+                if (url == null) throw new IllegalStateException("Missing resource " + resource);
+                P loaded = factory.apply(url.toExternalForm());
+                LOGGER.log(System.Logger.Level.DEBUG, "Loaded {0} in {1} ms", resource, (System.nanoTime() - start) / 1_000_000);
+                return loaded;
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Cannot load " + resource + ", it will not be played", e);
+                throw e;
+            }
+        }
     }
-}
\ No newline at end of file
+
+}